@@ -2,9 +2,11 @@ package cn.mxst.sulkan;
 
 import cn.mxst.sulkan.client.input.SulkanDebugHotkeys;
 import cn.mxst.sulkan.config.SulkanConfig;
-import cn.mxst.sulkan.shaderpack.ShaderpackLoadResult;
 import cn.mxst.sulkan.shaderpack.ShaderpackManager;
+import cn.mxst.sulkan.shaderpack.ShaderpackPipelineCache;
+import cn.mxst.sulkan.shaderpack.ShaderpackRuntimeUniforms;
 import net.fabricmc.api.ClientModInitializer;
+import net.fabricmc.fabric.api.client.event.lifecycle.v1.ClientLifecycleEvents;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -21,15 +23,21 @@ public class Sulkan implements ClientModInitializer {
 	public void onInitializeClient() {
 		SulkanDebugHotkeys.register();
 		SulkanConfig.load();
+		ClientLifecycleEvents.CLIENT_STOPPING.register(client -> {
+			ShaderpackPipelineCache.save();
+			ShaderpackRuntimeUniforms.destroy();
+		});
 		SulkanConfig config = SulkanConfig.get();
 		if (config.enableShaderpack && config.selectedShaderpack != null && !config.selectedShaderpack.isBlank()) {
-			ShaderpackLoadResult result = ShaderpackManager.applySelectedShaderpack(config.selectedShaderpack);
-			if (!result.isValid()) {
-				LOGGER.warn("Failed to activate selected shaderpack '{}':", config.selectedShaderpack);
-				for (String error : result.errors()) {
-					LOGGER.warn("  {}", error);
+			String selected = config.selectedShaderpack;
+			ShaderpackManager.beginStartupActivation(selected).thenAccept(result -> {
+				if (!result.isValid()) {
+					LOGGER.warn("Failed to activate selected shaderpack '{}':", selected);
+					for (String error : result.errors()) {
+						LOGGER.warn("  {}", error);
+					}
 				}
-			}
+			});
 		}
 		LOGGER.info("Sulkan client initialized");
 	}
@@ -10,7 +10,7 @@ import net.vulkanmod.vulkan.util.ColorUtil;
 
 public final class SulkanShaderpackEntryWidget extends VAbstractWidget {
 	private final String id;
-	private final Text label;
+	private Text label;
 	private final Consumer<SulkanShaderpackEntryWidget> onSelect;
 	private boolean selected;
 
@@ -24,6 +24,10 @@ public final class SulkanShaderpackEntryWidget extends VAbstractWidget {
 		return id;
 	}
 
+	public void setLabel(Text label) {
+		this.label = label;
+	}
+
 	public void setSelected(boolean selected) {
 		this.selected = selected;
 	}
@@ -15,6 +15,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.screen.Screen;
@@ -34,8 +35,12 @@ public final class SulkanShaderpackScreen extends Screen {
 	private VButtonWidget applyButton;
 	private VButtonWidget backButton;
 	private String pendingSelection;
-	private List<ShaderpackCandidate> candidates = List.of();
+	private List<ShaderpackCandidate> candidates = new ArrayList<>();
 	private final Map<String, ShaderpackCandidate> candidateById = new HashMap<>();
+	private final Map<String, SulkanShaderpackEntryWidget> entryWidgets = new HashMap<>();
+	private final Map<String, CompletableFuture<ShaderpackCandidate>> pendingValidations = new HashMap<>();
+	private int validationGeneration;
+	private boolean applying;
 	private Text statusMessage;
 	private long statusUntil;
 	private int statusColor = -1;
@@ -77,6 +82,7 @@ public final class SulkanShaderpackScreen extends Screen {
 		this.packList = new SulkanShaderpackList(left, listTop, contentWidth, listHeight, 22);
 		this.refreshCandidates();
 		this.packList.setEntries(this.buildEntryWidgets());
+		this.startValidation();
 		this.addSelectableChild(this.packList);
 
 		this.addBottomButtons(buttonY, buttonHeight);
@@ -132,20 +138,61 @@ public final class SulkanShaderpackScreen extends Screen {
 
 	private List<SulkanShaderpackEntryWidget> buildEntryWidgets() {
 		List<SulkanShaderpackEntryWidget> widgets = new ArrayList<>();
+		this.entryWidgets.clear();
 		for (ShaderpackCandidate candidate : this.candidates) {
-			Text label = Text.literal(candidate.displayName());
-			if (!candidate.isValid()) {
-				label = Text.literal(candidate.displayName()).append(Text.translatable("sulkan.shaderpack_screen.invalid_suffix"));
-			}
-			SulkanShaderpackEntryWidget widget = new SulkanShaderpackEntryWidget(candidate.id(), label, this::onEntrySelected);
-			widget.setActive(candidate.isValid());
+			SulkanShaderpackEntryWidget widget = new SulkanShaderpackEntryWidget(candidate.id(), this.buildLabel(candidate), this::onEntrySelected);
+			widget.setActive(!candidate.isValidated() || candidate.isValid());
 			widgets.add(widget);
+			this.entryWidgets.put(candidate.id(), widget);
 		}
 		return widgets;
 	}
 
+	private Text buildLabel(ShaderpackCandidate candidate) {
+		if (!candidate.isValidated()) {
+			return Text.literal(candidate.displayName()).append(Text.translatable("sulkan.shaderpack_screen.pending_suffix"));
+		}
+		if (!candidate.isValid()) {
+			return Text.literal(candidate.displayName()).append(Text.translatable("sulkan.shaderpack_screen.invalid_suffix"));
+		}
+		return Text.literal(candidate.displayName());
+	}
+
+	// init() runs again on every resize, so packs already being validated are not resubmitted.
+	private void startValidation() {
+		int generation = this.validationGeneration;
+		MinecraftClient client = MinecraftClient.getInstance();
+		for (ShaderpackCandidate candidate : this.candidates) {
+			if (candidate.isValidated() || this.pendingValidations.containsKey(candidate.id())) {
+				continue;
+			}
+			CompletableFuture<ShaderpackCandidate> future = ShaderpackManager.validateShaderpackAsync(candidate);
+			this.pendingValidations.put(candidate.id(), future);
+			future.thenAccept(validated -> client.execute(() -> this.onValidated(generation, future, validated)));
+		}
+	}
+
+	private void onValidated(int generation, CompletableFuture<ShaderpackCandidate> future, ShaderpackCandidate validated) {
+		if (generation != this.validationGeneration) {
+			return;
+		}
+		String id = validated.id();
+		this.pendingValidations.remove(id, future);
+		if (!this.candidateById.containsKey(id)) {
+			return;
+		}
+		this.candidateById.put(id, validated);
+		this.candidates.replaceAll(existing -> existing.id().equals(id) ? validated : existing);
+		SulkanShaderpackEntryWidget widget = this.entryWidgets.get(id);
+		if (widget != null) {
+			widget.setLabel(this.buildLabel(validated));
+			widget.setActive(validated.isValid());
+		}
+		this.updateButtons();
+	}
+
 	private void refreshCandidates() {
-		this.candidates = ShaderpackManager.discoverShaderpacks();
+		this.candidates = new ArrayList<>(ShaderpackManager.discoverShaderpacks());
 		this.candidateById.clear();
 		for (ShaderpackCandidate candidate : this.candidates) {
 			this.candidateById.put(candidate.id(), candidate);
@@ -174,9 +221,9 @@ public final class SulkanShaderpackScreen extends Screen {
 		ShaderpackCandidate candidate = hasSelection ? this.candidateById.get(this.pendingSelection) : null;
 		boolean validSelection = candidate != null && candidate.isValid();
 		@SuppressWarnings("null")
-		boolean hasConfigOptions = validSelection && candidate.loadResult().metadata().features.sulkanConfigOptions();
+		boolean hasConfigOptions = validSelection && candidate.summary().configOptions();
 		this.settingsButton.active = hasConfigOptions;
-		this.applyButton.active = validSelection && !this.pendingSelection.equals(config.selectedShaderpack);
+		this.applyButton.active = validSelection && !this.applying && !this.pendingSelection.equals(config.selectedShaderpack);
 	}
 
 	private void applySelection() {
@@ -189,21 +236,31 @@ public final class SulkanShaderpackScreen extends Screen {
 			this.setStatus(Text.translatable("sulkan.shaderpack_screen.status.missing"), false);
 			return;
 		}
-		ShaderpackLoadResult result = ShaderpackManager.applyShaderpack(candidate.path());
+		String selection = this.pendingSelection;
+		MinecraftClient client = MinecraftClient.getInstance();
+		this.applying = true;
+		this.updateButtons();
+		ShaderpackManager.applyShaderpackAsync(candidate.path())
+			.thenAccept(result -> client.execute(() -> this.onApplied(selection, candidate, result)));
+	}
+
+	private void onApplied(String selection, ShaderpackCandidate candidate, ShaderpackLoadResult result) {
+		this.applying = false;
 		if (!result.isValid()) {
 			Sulkan.LOGGER.error("Shaderpack validation failed for {}:", candidate.path().getFileName());
 			for (String error : result.errors()) {
 				Sulkan.LOGGER.error("  {}", error);
 			}
 			this.setStatus(Text.translatable("sulkan.shaderpack_screen.status.invalid"), false);
+			this.updateButtons();
 			return;
 		}
 		SulkanConfig config = SulkanConfig.get();
-		config.selectedShaderpack = this.pendingSelection;
+		config.selectedShaderpack = selection;
 		SulkanConfig.save();
-		this.applyButton.active = false;
+		this.updateButtons();
 		this.setStatus(Text.translatable("sulkan.shaderpack_screen.status.applied"), true);
-		this.reloadResources();
+		this.reloadPipelines();
 	}
 
 	private void openShaderpackSettings() {
@@ -214,7 +271,8 @@ public final class SulkanShaderpackScreen extends Screen {
 		if (candidate == null || !candidate.isValid()) {
 			return;
 		}
-		ShaderpackMetadata metadata = candidate.loadResult().metadata();
+		ShaderpackLoadResult result = ShaderpackManager.loadShaderpack(candidate.path());
+		ShaderpackMetadata metadata = result.isValid() ? result.metadata() : null;
 		if (metadata == null || !metadata.features.sulkanConfigOptions()) {
 			return;
 		}
@@ -232,13 +290,13 @@ public final class SulkanShaderpackScreen extends Screen {
 		Util.getOperatingSystem().open(shaderpacksDir.toUri().toString());
 	}
 
-	private void reloadResources() {
+	private void reloadPipelines() {
 		MinecraftClient client = this.client;
 		if (client == null) {
 			return;
 		}
 		this.setStatus(Text.translatable("sulkan.shaderpack_screen.status.reloading"), true);
-		SulkanVulkanPipelineReloader.reloadResourcesAndPipelines(client).thenRun(() -> client.execute(() -> {
+		SulkanVulkanPipelineReloader.reloadShaderpackPipelines(client).thenRun(() -> client.execute(() -> {
 			if (this.client != null && this.client.currentScreen == this) {
 				this.setStatus(Text.translatable("sulkan.shaderpack_screen.status.reloaded"), true);
 			}
@@ -253,6 +311,13 @@ public final class SulkanShaderpackScreen extends Screen {
 			: ColorUtil.ARGB.pack(0.9f, 0.4f, 0.4f, 1.0f);
 	}
 
+	@Override
+	public void removed() {
+		this.validationGeneration++;
+		this.pendingValidations.clear();
+		super.removed();
+	}
+
 	@Override
 	public void render(DrawContext context, int mouseX, int mouseY, float delta) {
 		if (!this.initialized || this.packList == null || this.openFolderButton == null || this.settingsButton == null
@@ -269,7 +334,15 @@ public final class SulkanShaderpackScreen extends Screen {
 		this.applyButton.render(mouseX, mouseY);
 		this.backButton.render(mouseX, mouseY);
 		this.renderInvalidTooltip(mouseX, mouseY);
-		if (this.statusMessage != null && Util.getMeasuringTimeMs() < this.statusUntil) {
+		ShaderpackManager.ActivationStatus activation = ShaderpackManager.getActivationStatus();
+		if (activation != null) {
+			Text progress = Text.translatable(
+				"sulkan.shaderpack_screen.status.loading",
+				activation.packId(),
+				Text.translatable(activation.phase().translationKey())
+			);
+			GuiRenderer.drawCenteredString(this.textRenderer, progress, this.width / 2, this.buttonRowY - 12, -1);
+		} else if (this.statusMessage != null && Util.getMeasuringTimeMs() < this.statusUntil) {
 			GuiRenderer.drawCenteredString(this.textRenderer, this.statusMessage, this.width / 2, this.buttonRowY - 12, this.statusColor);
 		}
 	}
@@ -280,10 +353,10 @@ public final class SulkanShaderpackScreen extends Screen {
 			return;
 		}
 		ShaderpackCandidate candidate = this.candidateById.get(hovered.getId());
-		if (candidate == null || candidate.isValid() || candidate.loadResult() == null) {
+		if (candidate == null || candidate.isValid() || candidate.summary() == null) {
 			return;
 		}
-		List<String> errors = candidate.loadResult().errors();
+		List<String> errors = candidate.summary().errors();
 		if (errors.isEmpty()) {
 			return;
 		}
@@ -6,12 +6,14 @@ import cn.mxst.sulkan.shaderpack.ShaderpackConfigSession;
 import cn.mxst.sulkan.shaderpack.ShaderpackManager;
 import cn.mxst.sulkan.shaderpack.ShaderpackMetadata;
 import cn.mxst.sulkan.shaderpack.ShaderpackOptionDecl;
+import cn.mxst.sulkan.shaderpack.ShaderpackOptionDependencies;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.screen.Screen;
@@ -541,20 +543,22 @@ public final class SulkanShaderpackSettingsScreen extends Screen {
 			return;
 		}
 		this.session.config().save(this.metadata.sourcePath);
-		ShaderpackManager.refreshActiveConfig();
+		ShaderpackOptionDependencies.Impact impact = ShaderpackManager.refreshActiveConfig();
 		this.session.clearDirty();
 		this.updateButtons();
 		this.setStatus(Text.translatable("sulkan.shaderpack_settings.status.saved"), true);
-		this.reloadResources();
+		if (!impact.isEmpty()) {
+			this.reloadPipelines(impact.segments() ? null : impact.targets(), impact.specializedTargets());
+		}
 	}
 
-	private void reloadResources() {
+	private void reloadPipelines(Set<String> optionTargets, Set<String> specializedTargets) {
 		MinecraftClient client = this.client;
 		if (client == null) {
 			return;
 		}
 		this.setStatus(Text.translatable("sulkan.shaderpack_settings.status.reloading"), true);
-		SulkanVulkanPipelineReloader.reloadResourcesAndPipelines(client).thenRun(() -> client.execute(() -> {
+		SulkanVulkanPipelineReloader.reloadShaderpackPipelines(client, optionTargets, specializedTargets).thenRun(() -> client.execute(() -> {
 			if (this.client != null && this.client.currentScreen == this) {
 				this.setStatus(Text.translatable("sulkan.shaderpack_settings.status.reloaded"), true);
 			}
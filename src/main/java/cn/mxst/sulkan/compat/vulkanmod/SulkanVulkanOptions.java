@@ -5,6 +5,7 @@ import cn.mxst.sulkan.client.gui.SulkanShaderpackScreen;
 import cn.mxst.sulkan.config.SulkanConfig;
 import cn.mxst.sulkan.shaderpack.ShaderpackLoadResult;
 import cn.mxst.sulkan.shaderpack.ShaderpackManager;
+import java.util.concurrent.CompletableFuture;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.text.Text;
 import net.vulkanmod.config.gui.OptionBlock;
@@ -26,13 +27,13 @@ public final class SulkanVulkanOptions {
 					return;
 				}
 				config.enableShaderpack = value;
+				MinecraftClient client = MinecraftClient.getInstance();
 				if (value) {
-					activateSelectedShaderpack(config);
+					activateSelectedShaderpack(config).thenRun(() -> client.execute(() -> SulkanVulkanPipelineReloader.reloadShaderpackPipelines(client)));
 				} else {
 					ShaderpackManager.clearActiveShaderpack();
+					SulkanVulkanPipelineReloader.reloadShaderpackPipelines(client);
 				}
-				MinecraftClient client = MinecraftClient.getInstance();
-				SulkanVulkanPipelineReloader.reloadResourcesAndPipelines(client);
 			},
 			() -> config.enableShaderpack
 		);
@@ -53,14 +54,16 @@ public final class SulkanVulkanOptions {
 		};
 	}
 
-	private static void activateSelectedShaderpack(SulkanConfig config) {
-		ShaderpackLoadResult result = ShaderpackManager.applySelectedShaderpack(config.selectedShaderpack);
-		if (!result.isValid() && config.selectedShaderpack != null && !config.selectedShaderpack.isBlank()) {
-			Sulkan.LOGGER.warn("Failed to activate selected shaderpack '{}':", config.selectedShaderpack);
-			for (String error : result.errors()) {
-				Sulkan.LOGGER.warn("  {}", error);
+	private static CompletableFuture<ShaderpackLoadResult> activateSelectedShaderpack(SulkanConfig config) {
+		String selected = config.selectedShaderpack;
+		return ShaderpackManager.applySelectedShaderpackAsync(selected).whenComplete((result, throwable) -> {
+			if (result != null && !result.isValid() && selected != null && !selected.isBlank()) {
+				Sulkan.LOGGER.warn("Failed to activate selected shaderpack '{}':", selected);
+				for (String error : result.errors()) {
+					Sulkan.LOGGER.warn("  {}", error);
+				}
 			}
-		}
+		});
 	}
 
 }
@@ -1,16 +1,42 @@
 package cn.mxst.sulkan.compat.vulkanmod;
 
 import cn.mxst.sulkan.Sulkan;
+import cn.mxst.sulkan.shaderpack.ShaderpackShaderApplier;
 import com.mojang.blaze3d.systems.RenderSystem;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import net.minecraft.client.MinecraftClient;
 import net.vulkanmod.render.PipelineManager;
-import net.vulkanmod.vulkan.Vulkan;
 
 public final class SulkanVulkanPipelineReloader {
+	private static boolean rebuilding;
+
 	private SulkanVulkanPipelineReloader() {
 	}
 
+	public static boolean isRebuilding() {
+		return rebuilding;
+	}
+
+	public static CompletableFuture<Void> reloadShaderpackPipelines(MinecraftClient client) {
+		return reloadShaderpackPipelines(client, null, Set.of());
+	}
+
+	public static CompletableFuture<Void> reloadShaderpackPipelines(
+		MinecraftClient client,
+		Set<String> optionTargets,
+		Set<String> specializedTargets
+	) {
+		if (client == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		return CompletableFuture.supplyAsync(() -> ShaderpackShaderApplier.detectChangedShaders(optionTargets, specializedTargets), client).thenCompose(scope -> switch (scope) {
+			case NONE -> CompletableFuture.completedFuture(null);
+			case PIPELINES -> CompletableFuture.runAsync(SulkanVulkanPipelineReloader::rebuildPipelinesSafely, client);
+			case RESOURCES -> reloadResourcesAndPipelines(client);
+		});
+	}
+
 	public static CompletableFuture<Void> reloadResourcesAndPipelines(MinecraftClient client) {
 		if (client == null) {
 			return CompletableFuture.completedFuture(null);
@@ -21,11 +47,19 @@ public final class SulkanVulkanPipelineReloader {
 	public static void rebuildPipelinesSafely() {
 		Runnable task = () -> {
 			try {
-				Vulkan.waitIdle();
-				PipelineManager.destroyPipelines();
+				// VulkanMod owns its graphics pipelines, so they are still recreated synchronously here; only their
+				// destruction is deferred, since frames in flight may still reference the old ones.
+				rebuilding = true;
+				try {
+					PipelineManager.destroyPipelines();
+				} finally {
+					rebuilding = false;
+				}
 				PipelineManager.init();
 			} catch (Throwable t) {
 				Sulkan.LOGGER.warn("Failed to rebuild VulkanMod pipelines.", t);
+			} finally {
+				ShaderpackShaderApplier.setPipelineManagerLoading(false);
 			}
 		};
 		if (RenderSystem.isOnRenderThread()) {
@@ -21,7 +21,13 @@ public final class SulkanConfig {
 	public boolean enableShaderpack = false;
 	public String selectedShaderpack = "";
 	public Boolean enableHotReload = true;
+	public Boolean hotReloadWatchFiles = false;
 	public Boolean debugExportShaders = false;
+	public Boolean spirvCacheEnabled = true;
+	public Integer spirvCacheMaxMegabytes = 256;
+	public Integer vramImageBudgetMegabytes = 1024;
+	public Integer vramTextureBudgetMegabytes = 256;
+	public Boolean vramBudgetStrict = true;
 
 	private SulkanConfig() {
 	}
@@ -74,8 +80,26 @@ public final class SulkanConfig {
 		if (enableHotReload == null) {
 			enableHotReload = true;
 		}
+		if (hotReloadWatchFiles == null) {
+			hotReloadWatchFiles = false;
+		}
 		if (debugExportShaders == null) {
 			debugExportShaders = false;
 		}
+		if (spirvCacheEnabled == null) {
+			spirvCacheEnabled = true;
+		}
+		if (spirvCacheMaxMegabytes == null || spirvCacheMaxMegabytes < 1) {
+			spirvCacheMaxMegabytes = 256;
+		}
+		if (vramImageBudgetMegabytes == null || vramImageBudgetMegabytes < 0) {
+			vramImageBudgetMegabytes = 1024;
+		}
+		if (vramTextureBudgetMegabytes == null || vramTextureBudgetMegabytes < 0) {
+			vramTextureBudgetMegabytes = 256;
+		}
+		if (vramBudgetStrict == null) {
+			vramBudgetStrict = true;
+		}
 	}
 }
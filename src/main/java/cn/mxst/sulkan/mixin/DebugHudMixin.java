@@ -2,9 +2,12 @@ package cn.mxst.sulkan.mixin;
 
 import cn.mxst.sulkan.client.input.SulkanDebugHotkeys;
 import cn.mxst.sulkan.config.SulkanConfig;
+import cn.mxst.sulkan.shaderpack.ShaderpackComputeDispatcher;
 import cn.mxst.sulkan.shaderpack.ShaderpackManager;
 import cn.mxst.sulkan.shaderpack.ShaderpackMetadata;
 import cn.mxst.sulkan.shaderpack.ShaderpackShaderApplier;
+import cn.mxst.sulkan.shaderpack.ShaderpackSpirvCache;
+import cn.mxst.sulkan.shaderpack.ShaderpackVramLedger;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
@@ -55,6 +58,10 @@ public abstract class DebugHudMixin {
 		ShaderpackShaderApplier.CacheStats shaderCacheStats = ShaderpackShaderApplier.getCacheStats();
 		ShaderpackManager.CacheStats worldCacheStats = ShaderpackManager.getWorldCandidateCacheStats();
 		ShaderpackManager.PipelineLookupStats pipelineLookupStats = ShaderpackManager.getPipelineLookupStats();
+		ShaderpackManager.CacheStats spirvCacheStats = ShaderpackSpirvCache.getStats();
+		ShaderpackComputeDispatcher.CompileStats computeCompileStats = ShaderpackComputeDispatcher.getCompileStats();
+		ShaderpackComputeDispatcher.ImageStats computeImageStats = ShaderpackComputeDispatcher.getImageStats();
+		ShaderpackVramLedger.Usage vramUsage = ShaderpackVramLedger.getUsage();
 		String worldCandidates = String.join(", ", ShaderpackManager.getCachedWorldCandidates());
 		if (worldCandidates.isBlank()) {
 			worldCandidates = "any";
@@ -102,6 +109,15 @@ public abstract class DebugHudMixin {
 				sulkan$formatHitRate(shaderCacheStats.uriHits(), shaderCacheStats.uriReads())
 			).getString()
 		);
+		lines.add(
+			Text.translatable(
+				"sulkan.debug.info.cache.served_source",
+				shaderCacheStats.servedHits(),
+				shaderCacheStats.servedLookups(),
+				Math.max(0L, shaderCacheStats.servedLookups() - shaderCacheStats.servedHits()),
+				sulkan$formatHitRate(shaderCacheStats.servedHits(), shaderCacheStats.servedLookups())
+			).getString()
+		);
 		lines.add(
 			Text.translatable(
 				"sulkan.debug.info.cache.world_candidates",
@@ -120,6 +136,15 @@ public abstract class DebugHudMixin {
 				sulkan$formatHitRate(pipelineLookupStats.cacheHits(), pipelineLookupStats.requests())
 			).getString()
 		);
+		lines.add(
+			Text.translatable(
+				"sulkan.debug.info.cache.spirv",
+				spirvCacheStats.hits(),
+				spirvCacheStats.requests(),
+				Math.max(0L, spirvCacheStats.requests() - spirvCacheStats.hits()),
+				sulkan$formatHitRate(spirvCacheStats.hits(), spirvCacheStats.requests())
+			).getString()
+		);
 		lines.add(
 			Text.translatable(
 				"sulkan.debug.info.pipeline.resolve",
@@ -127,10 +152,51 @@ public abstract class DebugHudMixin {
 			).getString()
 		);
 		lines.add(Text.translatable("sulkan.debug.info.pipeline.world_candidates", worldCandidates).getString());
+		lines.add(
+			Text.translatable(
+				"sulkan.debug.info.compute.compile",
+				computeCompileStats.pending(),
+				computeCompileStats.failed(),
+				computeCompileStats.ready()
+			).getString()
+		);
+		lines.add(
+			Text.translatable(
+				"sulkan.debug.info.compute.images",
+				computeImageStats.logical(),
+				computeImageStats.physical()
+			).getString()
+		);
+		lines.add(
+			Text.translatable(
+				"sulkan.debug.info.vram",
+				ShaderpackVramLedger.formatBytes(vramUsage.imageBytes()),
+				sulkan$formatBudget(vramUsage.imageBudget()),
+				ShaderpackVramLedger.formatBytes(vramUsage.textureBytes()),
+				sulkan$formatBudget(vramUsage.textureBudget()),
+				ShaderpackVramLedger.formatBytes(vramUsage.bufferBytes())
+			).getString()
+		);
+		if (vramUsage.largestBytes() > 0L) {
+			lines.add(
+				Text.translatable(
+					"sulkan.debug.info.vram.largest",
+					vramUsage.largestOwner(),
+					ShaderpackVramLedger.formatBytes(vramUsage.largestBytes())
+				).getString()
+			);
+		}
 		lines.add(Text.translatable("sulkan.debug.info.hotkeys", modifierKey + "+R", modifierKey + "+" + openListKeyName).getString());
 		return lines;
 	}
 
+	@Unique
+	private static String sulkan$formatBudget(long budget) {
+		return budget <= 0L
+			? Text.translatable("sulkan.debug.info.vram.unlimited").getString()
+			: ShaderpackVramLedger.formatBytes(budget);
+	}
+
 	@Unique
 	private static String sulkan$formatHitRate(long hits, long requests) {
 		if (requests <= 0L) {
@@ -5,7 +5,6 @@ import cn.mxst.sulkan.client.gui.SulkanShaderpackScreen;
 import cn.mxst.sulkan.client.input.SulkanDebugHotkeys;
 import cn.mxst.sulkan.compat.vulkanmod.SulkanVulkanPipelineReloader;
 import cn.mxst.sulkan.config.SulkanConfig;
-import cn.mxst.sulkan.shaderpack.ShaderpackLoadResult;
 import cn.mxst.sulkan.shaderpack.ShaderpackManager;
 import net.minecraft.client.Keyboard;
 import net.minecraft.client.MinecraftClient;
@@ -70,21 +69,29 @@ public abstract class KeyboardMixin {
 			this.sulkan$showDebugMessage(Text.translatable("sulkan.debug.reload.disabled"), true);
 			return;
 		}
-		if (config.enableShaderpack) {
-			ShaderpackLoadResult result = ShaderpackManager.applySelectedShaderpack(config.selectedShaderpack);
-			if (!result.isValid() && config.selectedShaderpack != null && !config.selectedShaderpack.isBlank()) {
-				Sulkan.LOGGER.warn("Failed to reload selected shaderpack '{}':", config.selectedShaderpack);
+		if (!config.enableShaderpack) {
+			ShaderpackManager.clearActiveShaderpack();
+			this.sulkan$reloadPipelines();
+			return;
+		}
+		String selected = config.selectedShaderpack;
+		this.sulkan$showDebugMessage(Text.translatable("sulkan.debug.reload.loading"), false);
+		ShaderpackManager.applySelectedShaderpackAsync(selected).thenAccept(result -> this.client.execute(() -> {
+			if (!result.isValid() && selected != null && !selected.isBlank()) {
+				Sulkan.LOGGER.warn("Failed to reload selected shaderpack '{}':", selected);
 				for (String error : result.errors()) {
 					Sulkan.LOGGER.warn("  {}", error);
 				}
 				this.sulkan$showDebugMessage(Text.translatable("sulkan.debug.reload.invalid"), true);
 			}
-		} else {
-			ShaderpackManager.clearActiveShaderpack();
-		}
+			this.sulkan$reloadPipelines();
+		}));
+	}
 
+	@Unique
+	private void sulkan$reloadPipelines() {
 		this.sulkan$showDebugMessage(Text.translatable("sulkan.debug.reload.started"), false);
-		SulkanVulkanPipelineReloader.reloadResourcesAndPipelines(this.client).whenComplete((unused, throwable) -> this.client.execute(() -> {
+		SulkanVulkanPipelineReloader.reloadShaderpackPipelines(this.client).whenComplete((unused, throwable) -> this.client.execute(() -> {
 			if (throwable == null) {
 				this.sulkan$showDebugMessage(Text.translatable("sulkan.debug.reload.finished"), false);
 			} else {
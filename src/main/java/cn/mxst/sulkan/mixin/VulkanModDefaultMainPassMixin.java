@@ -2,6 +2,7 @@ package cn.mxst.sulkan.mixin;
 
 import cn.mxst.sulkan.Sulkan;
 import cn.mxst.sulkan.shaderpack.ShaderpackComputeDispatcher;
+import cn.mxst.sulkan.shaderpack.ShaderpackRetirementQueue;
 import net.vulkanmod.vulkan.pass.DefaultMainPass;
 import org.lwjgl.vulkan.VkCommandBuffer;
 import org.spongepowered.asm.mixin.Mixin;
@@ -21,6 +22,7 @@ public class VulkanModDefaultMainPassMixin {
 	)
 	private void sulkan$dispatchCompute(VkCommandBuffer commandBuffer, CallbackInfo ci) {
 		try {
+			ShaderpackRetirementQueue.advanceFrame();
 			ShaderpackComputeDispatcher.dispatch(commandBuffer);
 		} catch (Exception e) {
 			Sulkan.LOGGER.warn("Compute dispatch failed: {}", e.getMessage());
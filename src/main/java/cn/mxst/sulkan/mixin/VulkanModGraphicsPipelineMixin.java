@@ -0,0 +1,82 @@
+package cn.mxst.sulkan.mixin;
+
+import cn.mxst.sulkan.compat.vulkanmod.SulkanVulkanPipelineReloader;
+import cn.mxst.sulkan.shaderpack.ShaderpackPipelineCache;
+import cn.mxst.sulkan.shaderpack.ShaderpackRetirementQueue;
+import cn.mxst.sulkan.shaderpack.ShaderpackSpecialization;
+import com.llamalad7.mixinextras.injector.wrapoperation.Operation;
+import com.llamalad7.mixinextras.injector.wrapoperation.WrapOperation;
+import java.nio.LongBuffer;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.VkAllocationCallbacks;
+import org.lwjgl.vulkan.VkDevice;
+import org.lwjgl.vulkan.VkGraphicsPipelineCreateInfo;
+import org.lwjgl.vulkan.VkPipelineShaderStageCreateInfo;
+import org.lwjgl.vulkan.VkSpecializationInfo;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(targets = "net.vulkanmod.vulkan.shader.GraphicsPipeline")
+public abstract class VulkanModGraphicsPipelineMixin {
+	@Unique
+	private boolean sulkan$retired;
+
+	@Shadow
+	public abstract void cleanUp();
+
+	@Inject(method = "cleanUp", at = @At("HEAD"), cancellable = true, require = 0)
+	private void sulkan$retireOnFrameFence(CallbackInfo ci) {
+		if (this.sulkan$retired || !SulkanVulkanPipelineReloader.isRebuilding()) {
+			return;
+		}
+		this.sulkan$retired = true;
+		ShaderpackRetirementQueue.retire(this::cleanUp);
+		ci.cancel();
+	}
+
+	@WrapOperation(
+		method = "createGraphicsPipeline",
+		at = @At(
+			value = "INVOKE",
+			target = "Lorg/lwjgl/vulkan/VK10;vkCreateGraphicsPipelines(Lorg/lwjgl/vulkan/VkDevice;JLorg/lwjgl/vulkan/VkGraphicsPipelineCreateInfo$Buffer;Lorg/lwjgl/vulkan/VkAllocationCallbacks;Ljava/nio/LongBuffer;)I"
+		),
+		require = 0
+	)
+	private int sulkan$createWithShaderpackState(
+		VkDevice device,
+		long pipelineCache,
+		VkGraphicsPipelineCreateInfo.Buffer pipelineInfos,
+		VkAllocationCallbacks allocator,
+		LongBuffer pPipelines,
+		Operation<Integer> original
+	) {
+		// Held until vkCreateGraphicsPipelines returns so a pack switch cannot retire the cache mid-call.
+		long shaderpackCache = ShaderpackPipelineCache.acquire();
+		try {
+			sulkan$specializeShaderpackOptions(pipelineInfos);
+			return original.call(device, shaderpackCache != 0L ? shaderpackCache : pipelineCache, pipelineInfos, allocator, pPipelines);
+		} finally {
+			ShaderpackPipelineCache.release();
+		}
+	}
+
+	@Unique
+	private static void sulkan$specializeShaderpackOptions(VkGraphicsPipelineCreateInfo.Buffer pipelineInfos) {
+		// Allocated in the caller's stack frame, which stays open until vkCreateGraphicsPipelines returns.
+		VkSpecializationInfo specialization = ShaderpackSpecialization.activeInfo(MemoryStack.stackGet());
+		if (specialization == null) {
+			return;
+		}
+		for (VkGraphicsPipelineCreateInfo pipelineInfo : pipelineInfos) {
+			for (VkPipelineShaderStageCreateInfo stage : pipelineInfo.pStages()) {
+				if (stage.pSpecializationInfo() == null) {
+					stage.pSpecializationInfo(specialization);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package cn.mxst.sulkan.mixin;
+
+import cn.mxst.sulkan.shaderpack.ShaderpackShaderApplier;
+import net.vulkanmod.render.PipelineManager;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(PipelineManager.class)
+public class VulkanModPipelineManagerMixin {
+	@Inject(method = "init", at = @At("HEAD"), require = 0)
+	private static void sulkan$beginPipelineInit(CallbackInfo ci) {
+		ShaderpackShaderApplier.setPipelineManagerLoading(true);
+	}
+
+	@Inject(method = "init", at = @At("RETURN"), require = 0)
+	private static void sulkan$endPipelineInit(CallbackInfo ci) {
+		ShaderpackShaderApplier.setPipelineManagerLoading(false);
+	}
+}
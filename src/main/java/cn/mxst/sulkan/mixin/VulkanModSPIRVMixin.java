@@ -0,0 +1,31 @@
+package cn.mxst.sulkan.mixin;
+
+import java.nio.ByteBuffer;
+import net.vulkanmod.vulkan.shader.SPIRVUtils;
+import org.lwjgl.system.MemoryUtil;
+import org.spongepowered.asm.mixin.Final;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(SPIRVUtils.SPIRV.class)
+public class VulkanModSPIRVMixin {
+	@Shadow
+	@Final
+	private long handle;
+
+	@Shadow
+	@Final
+	private ByteBuffer bytecode;
+
+	@Inject(method = "free", at = @At("HEAD"), cancellable = true)
+	private void sulkan$freeCachedBytecode(CallbackInfo ci) {
+		// Cache hits carry no shaderc result; the bytecode was allocated by ShaderpackSpirvCache.
+		if (this.handle == 0L) {
+			MemoryUtil.memFree(this.bytecode);
+			ci.cancel();
+		}
+	}
+}
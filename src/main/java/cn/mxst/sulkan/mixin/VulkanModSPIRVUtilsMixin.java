@@ -0,0 +1,51 @@
+package cn.mxst.sulkan.mixin;
+
+import cn.mxst.sulkan.shaderpack.ShaderpackSpirvCache;
+import java.nio.ByteBuffer;
+import net.vulkanmod.vulkan.shader.SPIRVUtils;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.Unique;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfoReturnable;
+
+@Mixin(SPIRVUtils.class)
+public class VulkanModSPIRVUtilsMixin {
+	@Unique
+	private static final ThreadLocal<String> sulkan$pendingCacheKey = new ThreadLocal<>();
+
+	@Inject(method = "compileShader", at = @At("HEAD"), cancellable = true)
+	private static void sulkan$loadCachedSpirv(
+		String filename,
+		String source,
+		SPIRVUtils.ShaderKind kind,
+		CallbackInfoReturnable<SPIRVUtils.SPIRV> cir
+	) {
+		sulkan$pendingCacheKey.remove();
+		if (kind == null || !ShaderpackSpirvCache.isEnabled() || !ShaderpackSpirvCache.isCacheable(source)) {
+			return;
+		}
+		String key = ShaderpackSpirvCache.buildKey(source, kind.name());
+		ByteBuffer cached = ShaderpackSpirvCache.load(key);
+		if (cached != null) {
+			cir.setReturnValue(new SPIRVUtils.SPIRV(0L, cached));
+			return;
+		}
+		sulkan$pendingCacheKey.set(key);
+	}
+
+	@Inject(method = "compileShader", at = @At("RETURN"))
+	private static void sulkan$storeCompiledSpirv(
+		String filename,
+		String source,
+		SPIRVUtils.ShaderKind kind,
+		CallbackInfoReturnable<SPIRVUtils.SPIRV> cir
+	) {
+		String key = sulkan$pendingCacheKey.get();
+		sulkan$pendingCacheKey.remove();
+		SPIRVUtils.SPIRV spirv = cir.getReturnValue();
+		if (key != null && spirv != null) {
+			ShaderpackSpirvCache.store(key, spirv.bytecode());
+		}
+	}
+}
@@ -5,15 +5,24 @@ import java.nio.file.Path;
 public record ShaderpackCandidate(
 	String id,
 	Path path,
-	ShaderpackLoadResult loadResult
+	ShaderpackHeader header,
+	ShaderpackSummary summary
 ) {
+	public ShaderpackCandidate withSummary(ShaderpackSummary summary) {
+		return new ShaderpackCandidate(id, path, header, summary);
+	}
+
+	public boolean isValidated() {
+		return summary != null;
+	}
+
 	public boolean isValid() {
-		return loadResult != null && loadResult.isValid() && loadResult.metadata() != null;
+		return summary != null && summary.isValid();
 	}
 
 	public String displayName() {
-		if (isValid()) {
-			return loadResult.metadata().name;
+		if (header != null && header.name() != null && !header.name().isBlank()) {
+			return header.name();
 		}
 		return id;
 	}
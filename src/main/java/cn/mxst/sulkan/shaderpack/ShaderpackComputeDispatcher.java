@@ -2,21 +2,34 @@ package cn.mxst.sulkan.shaderpack;
 
 import cn.mxst.sulkan.Sulkan;
 import cn.mxst.sulkan.config.SulkanConfig;
+import java.nio.ByteBuffer;
 import java.nio.LongBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import net.minecraft.client.MinecraftClient;
+import net.vulkanmod.vulkan.Renderer;
 import net.vulkanmod.vulkan.Vulkan;
 import net.vulkanmod.vulkan.framebuffer.SwapChain;
-import net.vulkanmod.vulkan.shader.SPIRVUtils;
 import net.vulkanmod.vulkan.texture.VulkanImage;
 import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.util.shaderc.Shaderc;
 import org.lwjgl.vulkan.VK10;
+import org.lwjgl.vulkan.VkClearColorValue;
 import org.lwjgl.vulkan.VkComputePipelineCreateInfo;
 import org.lwjgl.vulkan.VkDescriptorImageInfo;
 import org.lwjgl.vulkan.VkDescriptorPoolCreateInfo;
@@ -24,7 +37,8 @@ import org.lwjgl.vulkan.VkDescriptorPoolSize;
 import org.lwjgl.vulkan.VkDescriptorSetAllocateInfo;
 import org.lwjgl.vulkan.VkDescriptorSetLayoutBinding;
 import org.lwjgl.vulkan.VkDescriptorSetLayoutCreateInfo;
-import org.lwjgl.vulkan.VkMemoryBarrier;
+import org.lwjgl.vulkan.VkImageMemoryBarrier;
+import org.lwjgl.vulkan.VkImageSubresourceRange;
 import org.lwjgl.vulkan.VkPipelineLayoutCreateInfo;
 import org.lwjgl.vulkan.VkPipelineShaderStageCreateInfo;
 import org.lwjgl.vulkan.VkShaderModuleCreateInfo;
@@ -36,19 +50,59 @@ public final class ShaderpackComputeDispatcher {
 	private static final Set<String> WARNED_SEGMENTS = ConcurrentHashMap.newKeySet();
 	private static final Set<String> WARNED_PIPELINES = ConcurrentHashMap.newKeySet();
 	private static final ImagePool IMAGE_POOL = new ImagePool();
+	private static final Map<VulkanImage, ImageState> IMAGE_STATES = new IdentityHashMap<>();
+	private static final ConcurrentMap<String, CompletableFuture<ComputePipeline>> PENDING_PIPELINES = new ConcurrentHashMap<>();
+	private static final Set<String> FAILED_PIPELINES = ConcurrentHashMap.newKeySet();
+	private static final Map<String, LastGoodPipeline> LAST_GOOD_PIPELINES = new HashMap<>();
 	private static final int MAX_PIPELINES = 64;
+	private static final String COMPUTE_SPIRV_KIND = "sulkan_compute";
+	private static final ExecutorService COMPILE_EXECUTOR = ShaderpackExecutors.newDaemonPool(
+		"Sulkan Compute Compile",
+		ShaderpackExecutors.BACKGROUND_THREADS
+	);
+	private static final ThreadLocal<ShadercContext> SHADERC = ThreadLocal.withInitial(ShadercContext::create);
+	private static volatile ComputeFramePlan framePlan;
+	private static volatile long compileEpoch;
+	private static volatile long compileGeneration;
+	private static final List<VulkanImage> PENDING_CLEARS = new ArrayList<>();
+	private static long historyFrame;
+	private static long historyValidFrom;
 
 	private ShaderpackComputeDispatcher() {
 	}
 
 	public static synchronized void invalidateCaches() {
+		framePlan = null;
+		compileEpoch++;
+		PENDING_PIPELINES.clear();
+		FAILED_PIPELINES.clear();
 		for (ComputePipeline pipeline : PIPELINES.values()) {
-			pipeline.free();
+			if (!isLastGood(pipeline)) {
+				retire(pipeline);
+			}
 		}
 		PIPELINES.clear();
 		WARNED_SEGMENTS.clear();
 		WARNED_PIPELINES.clear();
-		IMAGE_POOL.clear();
+		ShaderpackVramLedger.resetWarnings();
+		if (ShaderpackManager.getActiveShaderpack() == null) {
+			Set<ComputePipeline> retired = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (LastGoodPipeline entry : LAST_GOOD_PIPELINES.values()) {
+				if (retired.add(entry.pipeline())) {
+					retire(entry.pipeline());
+				}
+			}
+			LAST_GOOD_PIPELINES.clear();
+			IMAGE_POOL.clear();
+		} else {
+			IMAGE_POOL.invalidate();
+		}
+	}
+
+	static synchronized void requestReplan() {
+		framePlan = null;
+		WARNED_SEGMENTS.clear();
+		WARNED_PIPELINES.clear();
 	}
 
 	public static void dispatch(VkCommandBuffer commandBuffer) {
@@ -59,158 +113,649 @@ public final class ShaderpackComputeDispatcher {
 		if (config == null || !config.enableShaderpack) {
 			return;
 		}
-		List<ShaderpackPipelineProgram> programs = ShaderpackManager.resolveActivePipelinePrograms();
-		if (programs.isEmpty()) {
+		ShaderpackMetadata metadata = ShaderpackManager.getActiveShaderpack();
+		if (metadata == null) {
 			return;
 		}
-		List<ShaderpackPipelineProgram> computePrograms = new ArrayList<>();
-		for (ShaderpackPipelineProgram program : programs) {
-			if (program.compute() != null && !program.compute().isBlank()) {
-				computePrograms.add(program);
+		SwapChain swapChain = Renderer.getInstance().getSwapChain();
+		if (swapChain == null || swapChain.getWidth() <= 0 || swapChain.getHeight() <= 0) {
+			return;
+		}
+		Object worldKey = currentWorldKey();
+		ComputeFramePlan plan = framePlan;
+		if (plan == null || !plan.matches(metadata, worldKey, swapChain.getWidth(), swapChain.getHeight())) {
+			plan = rebuildFramePlan(metadata, worldKey, swapChain.getWidth(), swapChain.getHeight());
+			if (plan == null) {
+				return;
 			}
 		}
-		if (computePrograms.isEmpty()) {
+		ComputeLevel[] levels = plan.levels();
+		if (levels.length == 0) {
 			return;
 		}
-
-		SwapChain swapChain = net.vulkanmod.vulkan.Renderer.getInstance().getSwapChain();
-		if (swapChain == null || swapChain.getWidth() <= 0 || swapChain.getHeight() <= 0) {
+		int parity = (int) (historyFrame & 1L);
+		long runtimeSet = ShaderpackRuntimeUniforms.update(
+			ShaderpackManager.getActiveConfig(),
+			metadata,
+			swapChain.getWidth(),
+			swapChain.getHeight(),
+			historyFrame >= historyValidFrom
+		);
+		if (runtimeSet == 0L) {
+			// Every pipeline layout declares the runtime set, and programs may read it; never dispatch with it unbound.
 			return;
 		}
-		Map<String, Boolean> altStateByImage = new LinkedHashMap<>();
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			clearPendingImages(commandBuffer, stack);
+			for (ComputeLevel level : levels) {
+				try (MemoryStack levelStack = stack.push()) {
+					insertLevelBarrier(level.accesses(parity), commandBuffer, levelStack);
+					for (ComputeStep step : level.steps()) {
+						try {
+							recordStep(step, parity, runtimeSet, commandBuffer, levelStack);
+						} catch (Exception e) {
+							if (WARNED_SEGMENTS.add(step.key())) {
+								Sulkan.LOGGER.warn("Failed to dispatch compute segment '{}': {}", step.key(), e.getMessage());
+							}
+						}
+					}
+				}
+			}
+		}
+		historyFrame++;
+	}
+
+	private static void recordStep(ComputeStep step, int parity, long runtimeSet, VkCommandBuffer commandBuffer, MemoryStack stack) {
+		ComputePipeline pipeline = step.pipeline();
+		VK10.vkCmdBindPipeline(commandBuffer, VK10.VK_PIPELINE_BIND_POINT_COMPUTE, pipeline.pipeline());
+		long imageSet = pipeline.descriptorSetFor(Renderer.getCurrentFrame(), parity, step.images(parity));
+		VK10.vkCmdBindDescriptorSets(
+			commandBuffer,
+			VK10.VK_PIPELINE_BIND_POINT_COMPUTE,
+			pipeline.layout(),
+			0,
+			stack.longs(imageSet, runtimeSet),
+			null
+		);
+		VK10.vkCmdDispatch(commandBuffer, step.groupsX(), step.groupsY(), step.groupsZ());
+	}
+
+	public static CompileStats getCompileStats() {
+		return new CompileStats(PENDING_PIPELINES.size(), FAILED_PIPELINES.size(), PIPELINES.size());
+	}
+
+	public static ImageStats getImageStats() {
+		ComputeFramePlan plan = framePlan;
+		if (plan == null) {
+			return new ImageStats(0, 0);
+		}
+		return new ImageStats(plan.logicalImages(), plan.physicalImages());
+	}
 
-		for (ShaderpackPipelineProgram program : computePrograms) {
+	private static Object currentWorldKey() {
+		try {
+			MinecraftClient client = MinecraftClient.getInstance();
+			if (client != null && client.world != null) {
+				return client.world.getRegistryKey();
+			}
+		} catch (Exception ignored) {
+		}
+		return null;
+	}
+
+	private static synchronized ComputeFramePlan rebuildFramePlan(
+		ShaderpackMetadata metadata,
+		Object worldKey,
+		int width,
+		int height
+	) {
+		ComputeFramePlan current = framePlan;
+		if (current != null && current.matches(metadata, worldKey, width, height)) {
+			return current;
+		}
+		if (metadata != ShaderpackManager.getActiveShaderpack()) {
+			return null;
+		}
+		long generation = compileGeneration;
+		List<ShaderpackPipelineProgram> programs = ShaderpackManager.resolveActivePipelinePrograms();
+		Map<String, Boolean> altStateByImage = new LinkedHashMap<>();
+		List<PlannedStep> planned = new ArrayList<>();
+		for (ShaderpackPipelineProgram program : programs) {
+			if (program.compute() == null || program.compute().isBlank()) {
+				continue;
+			}
+			String key = program.stage() + ":" + program.segmentName() + "#" + program.index();
 			try {
-				dispatchProgram(program, commandBuffer, swapChain, altStateByImage);
+				PlannedStep step = planProgram(metadata, key, program, width, height, altStateByImage);
+				if (step != null) {
+					planned.add(step);
+				}
 			} catch (Exception e) {
-				String key = program.stage() + ":" + program.segmentName() + "#" + program.index();
 				if (WARNED_SEGMENTS.add(key)) {
 					Sulkan.LOGGER.warn("Failed to dispatch compute segment '{}': {}", key, e.getMessage());
 				}
 			}
 		}
+
+		List<List<ShaderpackFrameGraph.Access>> passes = new ArrayList<>(planned.size());
+		for (PlannedStep step : planned) {
+			passes.add(step.accesses());
+		}
+		ShaderpackFrameGraph graph = ShaderpackFrameGraph.build(passes);
+		ComputeStep[] steps = new ComputeStep[planned.size()];
+		Set<String> usedKeys = new HashSet<>();
+		for (int i = 0; i < planned.size(); i++) {
+			steps[i] = resolveStep(planned.get(i), graph, usedKeys);
+		}
+		IMAGE_POOL.releaseUnused(usedKeys);
+
+		List<ComputeStep> live = new ArrayList<>(steps.length);
+		for (ComputeStep step : steps) {
+			if (step == null) {
+				continue;
+			}
+			if (IMAGE_POOL.containsAll(step.images(0)) && IMAGE_POOL.containsAll(step.images(1))) {
+				live.add(step);
+			} else if (WARNED_SEGMENTS.add(step.key())) {
+				Sulkan.LOGGER.warn(
+					"Skipping compute segment '{}': its images were resized by a later segment in the same frame.",
+					step.key()
+				);
+			}
+		}
+		releaseStaleLastGood(metadata, live);
+		trimPipelines(live);
+		ComputeLevel[] levels = buildLevels(graph, steps, live);
+		pruneImageStates(levels);
+
+		ComputeFramePlan plan = new ComputeFramePlan(
+			metadata,
+			worldKey,
+			width,
+			height,
+			generation,
+			levels,
+			graph.logicalImages(),
+			graph.physicalImages()
+		);
+		framePlan = plan;
+		return plan;
 	}
 
-	private static void dispatchProgram(
+	private static PlannedStep planProgram(
+		ShaderpackMetadata metadata,
+		String key,
 		ShaderpackPipelineProgram program,
-		VkCommandBuffer commandBuffer,
-		SwapChain swapChain,
+		int swapWidth,
+		int swapHeight,
 		Map<String, Boolean> altStateByImage
 	) {
 		List<ImageBindingSpec> bindings = collectBindings(program);
 		if (bindings.isEmpty()) {
-			return;
+			return null;
 		}
 		ShaderpackShaderApplier.LoadedSource loaded = ShaderpackShaderApplier.loadPipelineSource(program, program.compute(), "compute");
 		if (loaded == null || loaded.source() == null || loaded.source().isBlank()) {
-			return;
+			return null;
 		}
 
-		String cacheKey = buildPipelineCacheKey(program, loaded.source(), bindings);
-		ComputePipeline pipeline = PIPELINES.get(cacheKey);
+		String cacheKey = buildPipelineCacheKey(program, ShaderpackSpirvCache.buildKey(loaded.source(), COMPUTE_SPIRV_KIND), bindings);
+		// Last-good fallbacks survive hot reloads of the same pack, never a switch to another one.
+		String segmentKey = packIdentity(metadata) + "|" + buildPipelineCacheKey(program, "", bindings);
+		ComputePipeline pipeline = acquirePipeline(metadata, cacheKey, segmentKey, loaded, bindings.size());
 		if (pipeline == null) {
-			ComputePipeline created = createPipeline(cacheKey, loaded.path(), loaded.source(), bindings.size());
-			if (created == null) {
-				return;
-			}
-			if (PIPELINES.size() >= MAX_PIPELINES) {
-				invalidateCaches();
-			}
-			ComputePipeline existing = PIPELINES.putIfAbsent(cacheKey, created);
-			pipeline = existing == null ? created : existing;
-			if (existing != null) {
-				created.free();
-			}
+			return null;
 		}
 
 		boolean defaultAlt = "alt".equalsIgnoreCase(program.pingPong());
-		List<VulkanImage> images = new ArrayList<>(bindings.size());
+		List<ShaderpackFrameGraph.Access> accesses = new ArrayList<>(bindings.size());
 		for (ImageBindingSpec binding : bindings) {
-			String name = normalizeImageBinding(binding.binding());
+			String name = ShaderpackImageResources.baseBinding(binding.binding());
 			boolean useAlt = altStateByImage.getOrDefault(name, defaultAlt);
-			ImageExtent extent = resolveImageExtent(program, name, swapChain.getWidth(), swapChain.getHeight());
-			if (extent.width() <= 0 || extent.height() <= 0) {
-				images.add(null);
+			ImageExtent extent = resolveImageExtent(program, name, swapWidth, swapHeight);
+			ShaderpackResourceDecl declaration = ShaderpackImageResources.find(metadata, name);
+			ShaderpackImageResources.ImageFormat format = ShaderpackImageResources.formatFor(declaration);
+			if (extent.width() <= 0 || extent.height() <= 0 || format.vkFormat() <= 0) {
+				return null;
+			}
+			ShaderpackFrameGraph.Resource resource = new ShaderpackFrameGraph.Resource(
+				name,
+				useAlt,
+				extent.width(),
+				extent.height(),
+				format.vkFormat(),
+				ShaderpackImageResources.lifetimeOf(declaration),
+				ShaderpackImageResources.isHistoryBinding(binding.binding())
+			);
+			accesses.add(new ShaderpackFrameGraph.Access(resource, binding.readable(), binding.writable()));
+		}
+
+		DispatchSize dispatch = resolveDispatchSize(program, swapWidth, swapHeight);
+		if (dispatch.x() <= 0 || dispatch.y() <= 0 || dispatch.z() <= 0) {
+			return null;
+		}
+
+		for (Map.Entry<String, Boolean> flip : program.flips().entrySet()) {
+			if (!Boolean.TRUE.equals(flip.getValue())) {
 				continue;
 			}
-			images.add(IMAGE_POOL.resolve(name, useAlt, extent.width(), extent.height(), VulkanImage.DefaultFormat));
+			String flipKey = normalizeImageBinding(mapFlipTargetToImageBinding(flip.getKey()));
+			boolean current = altStateByImage.getOrDefault(flipKey, defaultAlt);
+			altStateByImage.put(flipKey, !current);
+		}
+		return new PlannedStep(key, pipeline, List.copyOf(accesses), dispatch);
+	}
+
+	private static ComputeStep resolveStep(PlannedStep planned, ShaderpackFrameGraph graph, Set<String> usedKeys) {
+		List<ShaderpackFrameGraph.Access> accesses = planned.accesses();
+		VulkanImage[] even = new VulkanImage[accesses.size()];
+		VulkanImage[] odd = new VulkanImage[accesses.size()];
+		boolean[] writes = new boolean[accesses.size()];
+		boolean history = false;
+		for (int i = 0; i < accesses.size(); i++) {
+			ShaderpackFrameGraph.Resource resource = accesses.get(i).resource();
+			String physicalKey = graph.physicalKey(resource);
+			String currentKey = resource.history()
+				? physicalKey.substring(0, physicalKey.length() - ShaderpackFrameGraph.HISTORY_KEY_SUFFIX.length())
+				: physicalKey;
+			VulkanImage ring0 = resolvePooled(planned.key(), currentKey, resource, usedKeys);
+			if (ring0 == null) {
+				return null;
+			}
+			if (!graph.hasHistory(currentKey)) {
+				even[i] = ring0;
+				odd[i] = ring0;
+			} else {
+				VulkanImage ring1 = resolvePooled(
+					planned.key(),
+					currentKey + ShaderpackFrameGraph.HISTORY_KEY_SUFFIX,
+					resource,
+					usedKeys
+				);
+				if (ring1 == null) {
+					return null;
+				}
+				// Frame N writes ring[N & 1] and reads ring[(N + 1) & 1] as its history.
+				even[i] = resource.history() ? ring1 : ring0;
+				odd[i] = resource.history() ? ring0 : ring1;
+				history = true;
+			}
+			writes[i] = accesses.get(i).write();
 		}
-		if (images.stream().anyMatch(image -> image == null)) {
+		DispatchSize dispatch = planned.dispatch();
+		return new ComputeStep(
+			planned.key(),
+			planned.pipeline(),
+			even,
+			history ? odd : even,
+			writes,
+			dispatch.x(),
+			dispatch.y(),
+			dispatch.z()
+		);
+	}
+
+	private static VulkanImage resolvePooled(
+		String owner,
+		String key,
+		ShaderpackFrameGraph.Resource resource,
+		Set<String> usedKeys
+	) {
+		boolean transientImage = ShaderpackFrameGraph.isTransientKey(key);
+		boolean historyImage = key.endsWith(ShaderpackFrameGraph.HISTORY_KEY_SUFFIX);
+		boolean declared = resource.lifetime() == ShaderpackFrameGraph.Lifetime.PERSISTENT
+			|| resource.lifetime() == ShaderpackFrameGraph.Lifetime.TEMPORAL;
+		PooledImage pooled = IMAGE_POOL.resolve(
+			owner,
+			key,
+			resource.width(),
+			resource.height(),
+			resource.format(),
+			declared && !transientImage,
+			transientImage || historyImage
+		);
+		if (pooled == null) {
+			return null;
+		}
+		usedKeys.add(key);
+		if (pooled.fresh) {
+			pooled.fresh = false;
+			PENDING_CLEARS.add(pooled.image);
+			if (resource.lifetime() == ShaderpackFrameGraph.Lifetime.TEMPORAL) {
+				historyValidFrom = historyFrame + 1;
+			}
+		}
+		return pooled.image;
+	}
+
+	private static String packIdentity(ShaderpackMetadata metadata) {
+		return metadata.sourcePath == null ? String.valueOf(metadata.name) : metadata.sourcePath.toAbsolutePath().normalize().toString();
+	}
+
+	private static ComputePipeline acquirePipeline(
+		ShaderpackMetadata metadata,
+		String cacheKey,
+		String segmentKey,
+		ShaderpackShaderApplier.LoadedSource loaded,
+		int bindingCount
+	) {
+		ComputePipeline ready = PIPELINES.get(cacheKey);
+		if (ready != null) {
+			rememberLastGood(segmentKey, metadata, ready);
+			return ready;
+		}
+		if (!FAILED_PIPELINES.contains(cacheKey)) {
+			submitCompile(cacheKey, loaded.path(), loaded.source(), bindingCount);
+		}
+		LastGoodPipeline fallback = LAST_GOOD_PIPELINES.get(segmentKey);
+		if (fallback != null) {
+			return fallback.pipeline();
+		}
+		return null;
+	}
+
+	private static void submitCompile(String cacheKey, String sourcePath, String source, int bindingCount) {
+		if (PENDING_PIPELINES.containsKey(cacheKey)) {
+			return;
+		}
+		long epoch = compileEpoch;
+		CompletableFuture<ComputePipeline> future = new CompletableFuture<>();
+		if (PENDING_PIPELINES.putIfAbsent(cacheKey, future) != null) {
 			return;
 		}
+		future.whenComplete((created, error) -> publishCompiled(cacheKey, future, epoch, created));
+		try {
+			COMPILE_EXECUTOR.execute(() -> {
+				try {
+					future.complete(createPipeline(cacheKey, sourcePath, source, bindingCount));
+				} catch (Throwable t) {
+					if (WARNED_PIPELINES.add(cacheKey)) {
+						Sulkan.LOGGER.warn("Failed to compile compute shader '{}': {}", sourcePath, t.getMessage());
+					}
+					future.complete(null);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.complete(null);
+		}
+	}
 
-		DispatchSize dispatch = resolveDispatchSize(program, swapChain.getWidth(), swapChain.getHeight());
-		if (dispatch.x() <= 0 || dispatch.y() <= 0 || dispatch.z() <= 0) {
+	private static synchronized void publishCompiled(
+		String cacheKey,
+		CompletableFuture<ComputePipeline> future,
+		long epoch,
+		ComputePipeline created
+	) {
+		PENDING_PIPELINES.remove(cacheKey, future);
+		if (epoch != compileEpoch) {
+			if (created != null) {
+				created.free();
+			}
 			return;
 		}
+		if (created == null) {
+			FAILED_PIPELINES.add(cacheKey);
+		} else {
+			ComputePipeline previous = PIPELINES.put(cacheKey, created);
+			if (previous != null && previous != created && !isLastGood(previous)) {
+				retire(previous);
+			}
+		}
+		compileGeneration++;
+	}
 
-		try (MemoryStack stack = MemoryStack.stackPush()) {
-			for (VulkanImage image : images) {
-				transitionToGeneral(image, stack, commandBuffer);
+	private static void rememberLastGood(String segmentKey, ShaderpackMetadata metadata, ComputePipeline pipeline) {
+		LastGoodPipeline previous = LAST_GOOD_PIPELINES.put(segmentKey, new LastGoodPipeline(metadata, pipeline));
+		if (previous != null && previous.pipeline() != pipeline && !PIPELINES.containsValue(previous.pipeline()) && !isLastGood(previous.pipeline())) {
+			retire(previous.pipeline());
+		}
+	}
+
+	private static void releaseStaleLastGood(ShaderpackMetadata metadata, List<ComputeStep> live) {
+		Set<ComputePipeline> used = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (ComputeStep step : live) {
+			used.add(step.pipeline());
+		}
+		List<ComputePipeline> released = new ArrayList<>();
+		LAST_GOOD_PIPELINES.values().removeIf(entry -> {
+			if (entry.metadata() == metadata || used.contains(entry.pipeline())) {
+				return false;
+			}
+			released.add(entry.pipeline());
+			return true;
+		});
+		for (ComputePipeline pipeline : released) {
+			if (!PIPELINES.containsValue(pipeline) && !isLastGood(pipeline)) {
+				retire(pipeline);
 			}
-			pipeline.updateDescriptors(images, stack);
-			VK10.vkCmdBindPipeline(commandBuffer, VK10.VK_PIPELINE_BIND_POINT_COMPUTE, pipeline.pipeline());
-			VK10.vkCmdBindDescriptorSets(
-				commandBuffer,
-				VK10.VK_PIPELINE_BIND_POINT_COMPUTE,
-				pipeline.layout(),
-				0,
-				stack.longs(pipeline.descriptorSet()),
-				null
-			);
-			VK10.vkCmdDispatch(commandBuffer, dispatch.x(), dispatch.y(), dispatch.z());
-			insertComputeMemoryBarrier(commandBuffer, stack);
 		}
+	}
 
-		for (Map.Entry<String, Boolean> flip : program.flips().entrySet()) {
-			if (!Boolean.TRUE.equals(flip.getValue())) {
+	private static void retire(ComputePipeline pipeline) {
+		ShaderpackRetirementQueue.retire(pipeline::free);
+	}
+
+	private static void retire(VulkanImage image) {
+		ShaderpackVramLedger.release(image);
+		ShaderpackRetirementQueue.retire(image::free);
+	}
+
+	private static boolean isLastGood(ComputePipeline pipeline) {
+		for (LastGoodPipeline entry : LAST_GOOD_PIPELINES.values()) {
+			if (entry.pipeline() == pipeline) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void trimPipelines(List<ComputeStep> live) {
+		if (PIPELINES.size() <= MAX_PIPELINES) {
+			return;
+		}
+		Set<ComputePipeline> used = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (ComputeStep step : live) {
+			used.add(step.pipeline());
+		}
+		PIPELINES.entrySet().removeIf(entry -> {
+			if (used.contains(entry.getValue())) {
+				return false;
+			}
+			LAST_GOOD_PIPELINES.values().removeIf(lastGood -> lastGood.pipeline() == entry.getValue());
+			retire(entry.getValue());
+			return true;
+		});
+	}
+
+	private static ComputeLevel[] buildLevels(ShaderpackFrameGraph graph, ComputeStep[] steps, List<ComputeStep> live) {
+		Set<ComputeStep> liveSteps = Collections.newSetFromMap(new IdentityHashMap<>());
+		liveSteps.addAll(live);
+		List<ComputeLevel> levels = new ArrayList<>();
+		for (int[] passes : graph.levels()) {
+			List<ComputeStep> levelSteps = new ArrayList<>(passes.length);
+			for (int pass : passes) {
+				if (liveSteps.contains(steps[pass])) {
+					levelSteps.add(steps[pass]);
+				}
+			}
+			if (levelSteps.isEmpty()) {
 				continue;
 			}
-			String key = normalizeImageBinding(mapFlipTargetToImageBinding(flip.getKey()));
-			boolean current = altStateByImage.getOrDefault(key, defaultAlt);
-			altStateByImage.put(key, !current);
+			levels.add(new ComputeLevel(
+				levelSteps.toArray(new ComputeStep[0]),
+				collectAccesses(levelSteps, 0),
+				collectAccesses(levelSteps, 1)
+			));
+		}
+		return levels.toArray(new ComputeLevel[0]);
+	}
+
+	private static ImageAccess[] collectAccesses(List<ComputeStep> levelSteps, int parity) {
+		Map<VulkanImage, Integer> indexByImage = new IdentityHashMap<>();
+		List<ImageAccess> accesses = new ArrayList<>();
+		for (ComputeStep step : levelSteps) {
+			VulkanImage[] images = step.images(parity);
+			for (int i = 0; i < images.length; i++) {
+				Integer index = indexByImage.get(images[i]);
+				if (index == null) {
+					indexByImage.put(images[i], accesses.size());
+					accesses.add(new ImageAccess(images[i], step.writes()[i]));
+				} else if (step.writes()[i]) {
+					accesses.set(index, new ImageAccess(images[i], true));
+				}
+			}
+		}
+		return accesses.toArray(new ImageAccess[0]);
+	}
+
+	private static void pruneImageStates(ComputeLevel[] levels) {
+		Set<VulkanImage> used = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (ComputeLevel level : levels) {
+			for (int parity = 0; parity < 2; parity++) {
+				for (ImageAccess access : level.accesses(parity)) {
+					used.add(access.image());
+				}
+			}
 		}
+		IMAGE_STATES.keySet().retainAll(used);
 	}
 
-	private static void transitionToGeneral(VulkanImage image, MemoryStack stack, VkCommandBuffer commandBuffer) {
-		if (image == null) {
+	private static void clearPendingImages(VkCommandBuffer commandBuffer, MemoryStack stack) {
+		if (PENDING_CLEARS.isEmpty()) {
 			return;
 		}
-		int oldLayout = image.getCurrentLayout();
-		if (oldLayout == VK10.VK_IMAGE_LAYOUT_GENERAL) {
+		List<VulkanImage> images = new ArrayList<>(PENDING_CLEARS.size());
+		for (VulkanImage image : PENDING_CLEARS) {
+			if (IMAGE_POOL.contains(image)) {
+				images.add(image);
+			}
+		}
+		PENDING_CLEARS.clear();
+		if (images.isEmpty()) {
 			return;
 		}
-		VulkanImage.transitionLayout(
-			stack,
-			commandBuffer,
-			image,
-			oldLayout,
-			VK10.VK_IMAGE_LAYOUT_GENERAL,
-			VK10.VK_PIPELINE_STAGE_ALL_COMMANDS_BIT,
-			VK10.VK_ACCESS_MEMORY_READ_BIT | VK10.VK_ACCESS_MEMORY_WRITE_BIT,
-			VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT,
-			VK10.VK_ACCESS_SHADER_READ_BIT | VK10.VK_ACCESS_SHADER_WRITE_BIT
-		);
-		image.setCurrentLayout(VK10.VK_IMAGE_LAYOUT_GENERAL);
+		try (MemoryStack clearStack = stack.push()) {
+			VkImageMemoryBarrier.Buffer barriers = VkImageMemoryBarrier.calloc(images.size(), clearStack);
+			for (int i = 0; i < images.size(); i++) {
+				VulkanImage image = images.get(i);
+				barriers.get(i)
+					.sType$Default()
+					.srcAccessMask(0)
+					.dstAccessMask(VK10.VK_ACCESS_TRANSFER_WRITE_BIT)
+					.oldLayout(image.getCurrentLayout())
+					.newLayout(VK10.VK_IMAGE_LAYOUT_GENERAL)
+					.srcQueueFamilyIndex(VK10.VK_QUEUE_FAMILY_IGNORED)
+					.dstQueueFamilyIndex(VK10.VK_QUEUE_FAMILY_IGNORED)
+					.image(image.getId())
+					.subresourceRange(range -> colorRange(range));
+			}
+			VK10.vkCmdPipelineBarrier(
+				commandBuffer,
+				VK10.VK_PIPELINE_STAGE_TOP_OF_PIPE_BIT,
+				VK10.VK_PIPELINE_STAGE_TRANSFER_BIT,
+				0,
+				null,
+				null,
+				barriers
+			);
+			VkClearColorValue clearColor = VkClearColorValue.calloc(clearStack);
+			VkImageSubresourceRange.Buffer ranges = VkImageSubresourceRange.calloc(1, clearStack);
+			colorRange(ranges.get(0));
+			for (VulkanImage image : images) {
+				image.setCurrentLayout(VK10.VK_IMAGE_LAYOUT_GENERAL);
+				VK10.vkCmdClearColorImage(commandBuffer, image.getId(), VK10.VK_IMAGE_LAYOUT_GENERAL, clearColor, ranges);
+				ImageState state = IMAGE_STATES.computeIfAbsent(image, ignored -> new ImageState());
+				state.writeStage = VK10.VK_PIPELINE_STAGE_TRANSFER_BIT;
+				state.writeAccess = VK10.VK_ACCESS_TRANSFER_WRITE_BIT;
+				state.pendingRead = false;
+			}
+		}
 	}
 
-	private static void insertComputeMemoryBarrier(VkCommandBuffer commandBuffer, MemoryStack stack) {
-		VkMemoryBarrier.Buffer barrier = VkMemoryBarrier.calloc(1, stack);
-		barrier.get(0)
-			.sType$Default()
-			.srcAccessMask(VK10.VK_ACCESS_SHADER_READ_BIT | VK10.VK_ACCESS_SHADER_WRITE_BIT)
-			.dstAccessMask(VK10.VK_ACCESS_SHADER_READ_BIT | VK10.VK_ACCESS_SHADER_WRITE_BIT);
+	private static void insertLevelBarrier(ImageAccess[] accesses, VkCommandBuffer commandBuffer, MemoryStack stack) {
+		VkImageMemoryBarrier.Buffer barriers = VkImageMemoryBarrier.calloc(accesses.length, stack);
+		int count = 0;
+		int srcStages = 0;
+		for (ImageAccess access : accesses) {
+			VulkanImage image = access.image();
+			int oldLayout = image.getCurrentLayout();
+			ImageState state = IMAGE_STATES.get(image);
+			if (state == null) {
+				state = new ImageState();
+				// An image we have not tracked yet may still carry writes from an earlier frame.
+				if (oldLayout == VK10.VK_IMAGE_LAYOUT_GENERAL) {
+					state.writeStage = VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT;
+					state.writeAccess = VK10.VK_ACCESS_SHADER_WRITE_BIT;
+				}
+				IMAGE_STATES.put(image, state);
+			}
+			boolean transition = oldLayout != VK10.VK_IMAGE_LAYOUT_GENERAL;
+			boolean hazard = state.writeStage != 0 || access.write() && state.pendingRead;
+			if (transition || hazard) {
+				int srcStage;
+				int srcAccess;
+				if (oldLayout == VK10.VK_IMAGE_LAYOUT_UNDEFINED) {
+					srcStage = VK10.VK_PIPELINE_STAGE_TOP_OF_PIPE_BIT;
+					srcAccess = 0;
+				} else if (transition) {
+					srcStage = VK10.VK_PIPELINE_STAGE_ALL_COMMANDS_BIT;
+					srcAccess = VK10.VK_ACCESS_MEMORY_WRITE_BIT;
+				} else if (state.writeStage != 0) {
+					srcStage = state.writeStage;
+					srcAccess = state.writeAccess;
+				} else {
+					srcStage = VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT;
+					srcAccess = 0;
+				}
+				barriers.get(count++)
+					.sType$Default()
+					.srcAccessMask(srcAccess)
+					.dstAccessMask(access.write()
+						? VK10.VK_ACCESS_SHADER_READ_BIT | VK10.VK_ACCESS_SHADER_WRITE_BIT
+						: VK10.VK_ACCESS_SHADER_READ_BIT)
+					.oldLayout(oldLayout)
+					.newLayout(VK10.VK_IMAGE_LAYOUT_GENERAL)
+					.srcQueueFamilyIndex(VK10.VK_QUEUE_FAMILY_IGNORED)
+					.dstQueueFamilyIndex(VK10.VK_QUEUE_FAMILY_IGNORED)
+					.image(image.getId())
+					.subresourceRange(range -> colorRange(range));
+				srcStages |= srcStage;
+				image.setCurrentLayout(VK10.VK_IMAGE_LAYOUT_GENERAL);
+				state.writeStage = 0;
+				state.writeAccess = 0;
+				state.pendingRead = false;
+			}
+			if (access.write()) {
+				state.writeStage = VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT;
+				state.writeAccess = VK10.VK_ACCESS_SHADER_WRITE_BIT;
+			} else {
+				state.pendingRead = true;
+			}
+		}
+		if (count == 0) {
+			return;
+		}
 		VK10.vkCmdPipelineBarrier(
 			commandBuffer,
-			VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT,
+			srcStages,
 			VK10.VK_PIPELINE_STAGE_COMPUTE_SHADER_BIT,
 			0,
-			barrier,
 			null,
-			null
+			null,
+			barriers.limit(count)
 		);
 	}
 
+	private static void colorRange(VkImageSubresourceRange range) {
+		range
+			.aspectMask(VK10.VK_IMAGE_ASPECT_COLOR_BIT)
+			.baseMipLevel(0)
+			.levelCount(VK10.VK_REMAINING_MIP_LEVELS)
+			.baseArrayLayer(0)
+			.layerCount(VK10.VK_REMAINING_ARRAY_LAYERS);
+	}
+
+
 	private static DispatchSize resolveDispatchSize(ShaderpackPipelineProgram program, int width, int height) {
 		List<Integer> workGroups = program.workGroups();
 		if (workGroups != null && workGroups.size() == 3) {
@@ -234,24 +779,22 @@ public final class ShaderpackComputeDispatcher {
 	}
 
 	private static List<ImageBindingSpec> collectBindings(ShaderpackPipelineProgram program) {
-		LinkedHashMap<String, Boolean> byName = new LinkedHashMap<>();
+		LinkedHashMap<String, ImageBindingSpec> byName = new LinkedHashMap<>();
 		for (String name : program.imagesRead()) {
 			if (name == null || name.isBlank()) {
 				continue;
 			}
-			byName.putIfAbsent(normalizeImageBinding(name), false);
+			String binding = normalizeImageBinding(name);
+			byName.putIfAbsent(binding, new ImageBindingSpec(binding, true, false));
 		}
 		for (String name : program.imagesWrite()) {
 			if (name == null || name.isBlank()) {
 				continue;
 			}
-			byName.put(normalizeImageBinding(name), true);
-		}
-		List<ImageBindingSpec> bindings = new ArrayList<>(byName.size());
-		for (Map.Entry<String, Boolean> entry : byName.entrySet()) {
-			bindings.add(new ImageBindingSpec(entry.getKey(), entry.getValue()));
+			String binding = normalizeImageBinding(name);
+			byName.put(binding, new ImageBindingSpec(binding, byName.containsKey(binding), true));
 		}
-		return bindings;
+		return new ArrayList<>(byName.values());
 	}
 
 	private static String normalizeImageBinding(String binding) {
@@ -267,7 +810,7 @@ public final class ShaderpackComputeDispatcher {
 		return normalized;
 	}
 
-	private static ImageExtent resolveImageExtent(
+	static ImageExtent resolveImageExtent(
 		ShaderpackPipelineProgram program,
 		String imageBinding,
 		int swapWidth,
@@ -275,7 +818,7 @@ public final class ShaderpackComputeDispatcher {
 	) {
 		int width = Math.max(1, swapWidth);
 		int height = Math.max(1, swapHeight);
-		String renderTarget = mapImageBindingToRenderTarget(imageBinding);
+		String renderTarget = ShaderpackImageResources.renderTargetFor(imageBinding);
 		Map<String, List<Integer>> sizes = program.bufferSizes() == null ? Map.of() : program.bufferSizes();
 		List<Integer> explicitSize = sizes.get(renderTarget);
 		if (explicitSize != null && explicitSize.size() == 2) {
@@ -294,20 +837,9 @@ public final class ShaderpackComputeDispatcher {
 		return new ImageExtent(width, height);
 	}
 
-	private static String mapImageBindingToRenderTarget(String imageBinding) {
-		String normalized = normalizeImageBinding(imageBinding);
-		if (normalized.matches("^colorimg([0-9]|1[0-5])$")) {
-			return "colortex" + normalized.substring("colorimg".length());
-		}
-		if (normalized.matches("^shadowcolorimg([0-9]|1[0-5])$")) {
-			return "shadowcolor" + normalized.substring("shadowcolorimg".length());
-		}
-		return normalized;
-	}
-
 	private static String buildPipelineCacheKey(
 		ShaderpackPipelineProgram program,
-		String source,
+		String sourceKey,
 		List<ImageBindingSpec> bindings
 	) {
 		StringBuilder builder = new StringBuilder(256);
@@ -316,7 +848,7 @@ public final class ShaderpackComputeDispatcher {
 			.append(program.stage()).append('|')
 			.append(program.segmentName()).append('|')
 			.append(program.index()).append('|')
-			.append(Integer.toHexString(source.hashCode()));
+			.append(sourceKey);
 		for (ImageBindingSpec binding : bindings) {
 			builder
 				.append('|')
@@ -328,42 +860,159 @@ public final class ShaderpackComputeDispatcher {
 	}
 
 	private static ComputePipeline createPipeline(String key, String sourcePath, String source, int bindingCount) {
-		SPIRVUtils.SPIRV spirv = SPIRVUtils.compileShader(
-			sourcePath == null ? key : sourcePath,
-			source,
-			SPIRVUtils.ShaderKind.COMPUTE_SHADER
-		);
-		if (spirv == null) {
-			if (WARNED_PIPELINES.add(key)) {
-				Sulkan.LOGGER.warn("Failed to compile compute shader '{}'.", sourcePath);
+		String spirvKey = ShaderpackSpirvCache.isEnabled() && ShaderpackSpirvCache.isCacheable(source)
+			? ShaderpackSpirvCache.buildKey(source, COMPUTE_SPIRV_KIND)
+			: null;
+		ByteBuffer bytecode = spirvKey == null ? null : ShaderpackSpirvCache.load(spirvKey);
+		if (bytecode == null) {
+			bytecode = compileCompute(sourcePath == null ? key : sourcePath, source);
+			if (bytecode == null) {
+				if (WARNED_PIPELINES.add(key)) {
+					Sulkan.LOGGER.warn("Failed to compile compute shader '{}'.", sourcePath);
+				}
+				return null;
 			}
-			return null;
+			ShaderpackSpirvCache.store(spirvKey, bytecode);
 		}
 		try {
-			return ComputePipeline.create(spirv, bindingCount);
+			return ComputePipeline.create(bytecode, bindingCount);
 		} catch (RuntimeException e) {
 			if (WARNED_PIPELINES.add(key)) {
 				Sulkan.LOGGER.warn("Failed to create compute pipeline '{}': {}", sourcePath, e.getMessage());
 			}
 			return null;
 		} finally {
-			spirv.free();
+			MemoryUtil.memFree(bytecode);
 		}
 	}
 
-	private record ImageBindingSpec(String binding, boolean writable) {
+	// VulkanMod's SPIRVUtils shares one shaderc compiler between callers, so each compile worker owns its own.
+	private static ByteBuffer compileCompute(String name, String source) {
+		ShadercContext context = SHADERC.get();
+		long result = Shaderc.shaderc_compile_into_spv(
+			context.compiler(),
+			source,
+			Shaderc.shaderc_glsl_compute_shader,
+			name,
+			"main",
+			context.options()
+		);
+		if (result == 0L) {
+			return null;
+		}
+		try {
+			if (Shaderc.shaderc_result_get_compilation_status(result) != Shaderc.shaderc_compilation_status_success) {
+				throw new RuntimeException(Shaderc.shaderc_result_get_error_message(result));
+			}
+			ByteBuffer compiled = Shaderc.shaderc_result_get_bytes(result);
+			if (compiled == null) {
+				return null;
+			}
+			ByteBuffer bytecode = MemoryUtil.memAlloc(compiled.remaining());
+			bytecode.put(compiled).flip();
+			return bytecode;
+		} finally {
+			Shaderc.shaderc_result_release(result);
+		}
 	}
 
-	private record ImageExtent(int width, int height) {
+	private record ImageBindingSpec(String binding, boolean readable, boolean writable) {
+	}
+
+	private record ShadercContext(long compiler, long options) {
+		private static ShadercContext create() {
+			long compiler = Shaderc.shaderc_compiler_initialize();
+			long options = Shaderc.shaderc_compile_options_initialize();
+			if (compiler == 0L || options == 0L) {
+				throw new IllegalStateException("Failed to initialize shaderc.");
+			}
+			Shaderc.shaderc_compile_options_set_target_env(
+				options,
+				Shaderc.shaderc_target_env_vulkan,
+				Shaderc.shaderc_env_version_vulkan_1_2
+			);
+			Shaderc.shaderc_compile_options_set_optimization_level(options, Shaderc.shaderc_optimization_level_performance);
+			return new ShadercContext(compiler, options);
+		}
+	}
+
+	record ImageExtent(int width, int height) {
 	}
 
 	private record DispatchSize(int x, int y, int z) {
 	}
 
+	private record ComputeStep(
+		String key,
+		ComputePipeline pipeline,
+		VulkanImage[] evenImages,
+		VulkanImage[] oddImages,
+		boolean[] writes,
+		int groupsX,
+		int groupsY,
+		int groupsZ
+	) {
+		private VulkanImage[] images(int parity) {
+			return parity == 0 ? evenImages : oddImages;
+		}
+	}
+
+	private record ComputeFramePlan(
+		ShaderpackMetadata metadata,
+		Object worldKey,
+		int width,
+		int height,
+		long compileGeneration,
+		ComputeLevel[] levels,
+		int logicalImages,
+		int physicalImages
+	) {
+		private boolean matches(ShaderpackMetadata activeMetadata, Object activeWorldKey, int swapWidth, int swapHeight) {
+			return metadata == activeMetadata
+				&& worldKey == activeWorldKey
+				&& width == swapWidth
+				&& height == swapHeight
+				&& compileGeneration == ShaderpackComputeDispatcher.compileGeneration;
+		}
+	}
+
+	private record PlannedStep(
+		String key,
+		ComputePipeline pipeline,
+		List<ShaderpackFrameGraph.Access> accesses,
+		DispatchSize dispatch
+	) {
+	}
+
+	private record ComputeLevel(ComputeStep[] steps, ImageAccess[] evenAccesses, ImageAccess[] oddAccesses) {
+		private ImageAccess[] accesses(int parity) {
+			return parity == 0 ? evenAccesses : oddAccesses;
+		}
+	}
+
+	private record ImageAccess(VulkanImage image, boolean write) {
+	}
+
+	private static final class ImageState {
+		private int writeStage;
+		private int writeAccess;
+		private boolean pendingRead;
+	}
+
+	private record LastGoodPipeline(ShaderpackMetadata metadata, ComputePipeline pipeline) {
+	}
+
+	public record CompileStats(int pending, int failed, int ready) {
+	}
+
+	public record ImageStats(int logical, int physical) {
+	}
+
 	private static final class ComputePipeline {
 		private final long descriptorSetLayout;
 		private final long descriptorPool;
-		private final long descriptorSet;
+		private final long[] descriptorSets;
+		private final VulkanImage[][] boundImages;
 		private final long layout;
 		private final long shaderModule;
 		private final long pipeline;
@@ -372,7 +1021,7 @@ public final class ShaderpackComputeDispatcher {
 		private ComputePipeline(
 			long descriptorSetLayout,
 			long descriptorPool,
-			long descriptorSet,
+			long[] descriptorSets,
 			long layout,
 			long shaderModule,
 			long pipeline,
@@ -380,25 +1029,27 @@ public final class ShaderpackComputeDispatcher {
 		) {
 			this.descriptorSetLayout = descriptorSetLayout;
 			this.descriptorPool = descriptorPool;
-			this.descriptorSet = descriptorSet;
+			this.descriptorSets = descriptorSets;
+			this.boundImages = new VulkanImage[descriptorSets.length][];
 			this.layout = layout;
 			this.shaderModule = shaderModule;
 			this.pipeline = pipeline;
 			this.bindingCount = bindingCount;
 		}
 
-		private static ComputePipeline create(SPIRVUtils.SPIRV spirv, int bindingCount) {
+		private static ComputePipeline create(ByteBuffer bytecode, int bindingCount) {
 			try (MemoryStack stack = MemoryStack.stackPush()) {
-				long shaderModule = createShaderModule(spirv.bytecode(), stack);
+				long shaderModule = createShaderModule(bytecode, stack);
 				long descriptorSetLayout = createDescriptorSetLayout(bindingCount, stack);
 				long layout = createPipelineLayout(descriptorSetLayout, stack);
-				long descriptorPool = createDescriptorPool(bindingCount, stack);
-				long descriptorSet = allocateDescriptorSet(descriptorPool, descriptorSetLayout, stack);
+				int sets = Math.max(1, Renderer.getFramesNum()) * 2;
+				long descriptorPool = createDescriptorPool(bindingCount, sets, stack);
+				long[] descriptorSets = allocateDescriptorSets(descriptorPool, descriptorSetLayout, sets, stack);
 				long pipeline = createComputePipeline(shaderModule, layout, stack);
 				return new ComputePipeline(
 					descriptorSetLayout,
 					descriptorPool,
-					descriptorSet,
+					descriptorSets,
 					layout,
 					shaderModule,
 					pipeline,
@@ -407,7 +1058,7 @@ public final class ShaderpackComputeDispatcher {
 			}
 		}
 
-		private static long createShaderModule(java.nio.ByteBuffer bytecode, MemoryStack stack) {
+		private static long createShaderModule(ByteBuffer bytecode, MemoryStack stack) {
 			VkShaderModuleCreateInfo info = VkShaderModuleCreateInfo.calloc(stack);
 			info.sType$Default();
 			info.pCode(bytecode);
@@ -442,7 +1093,7 @@ public final class ShaderpackComputeDispatcher {
 		private static long createPipelineLayout(long descriptorSetLayout, MemoryStack stack) {
 			VkPipelineLayoutCreateInfo info = VkPipelineLayoutCreateInfo.calloc(stack);
 			info.sType$Default();
-			info.pSetLayouts(stack.longs(descriptorSetLayout));
+			info.pSetLayouts(stack.longs(descriptorSetLayout, ShaderpackRuntimeUniforms.descriptorSetLayout()));
 			LongBuffer pLayout = stack.mallocLong(1);
 			int result = VK10.vkCreatePipelineLayout(Vulkan.getVkDevice(), info, null, pLayout);
 			if (result != VK10.VK_SUCCESS) {
@@ -451,15 +1102,15 @@ public final class ShaderpackComputeDispatcher {
 			return pLayout.get(0);
 		}
 
-		private static long createDescriptorPool(int bindingCount, MemoryStack stack) {
+		private static long createDescriptorPool(int bindingCount, int sets, MemoryStack stack) {
 			VkDescriptorPoolSize.Buffer poolSizes = VkDescriptorPoolSize.calloc(1, stack);
 			poolSizes.get(0)
 				.type(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE)
-				.descriptorCount(bindingCount);
+				.descriptorCount(bindingCount * sets);
 
 			VkDescriptorPoolCreateInfo info = VkDescriptorPoolCreateInfo.calloc(stack);
 			info.sType$Default();
-			info.maxSets(1);
+			info.maxSets(sets);
 			info.pPoolSizes(poolSizes);
 
 			LongBuffer pPool = stack.mallocLong(1);
@@ -470,17 +1121,23 @@ public final class ShaderpackComputeDispatcher {
 			return pPool.get(0);
 		}
 
-		private static long allocateDescriptorSet(long descriptorPool, long descriptorSetLayout, MemoryStack stack) {
+		private static long[] allocateDescriptorSets(long descriptorPool, long descriptorSetLayout, int sets, MemoryStack stack) {
+			LongBuffer layouts = stack.mallocLong(sets);
+			for (int i = 0; i < sets; i++) {
+				layouts.put(i, descriptorSetLayout);
+			}
 			VkDescriptorSetAllocateInfo allocInfo = VkDescriptorSetAllocateInfo.calloc(stack);
 			allocInfo.sType$Default();
 			allocInfo.descriptorPool(descriptorPool);
-			allocInfo.pSetLayouts(stack.longs(descriptorSetLayout));
-			LongBuffer pSet = stack.mallocLong(1);
-			int result = VK10.vkAllocateDescriptorSets(Vulkan.getVkDevice(), allocInfo, pSet);
+			allocInfo.pSetLayouts(layouts);
+			LongBuffer pSets = stack.mallocLong(sets);
+			int result = VK10.vkAllocateDescriptorSets(Vulkan.getVkDevice(), allocInfo, pSets);
 			if (result != VK10.VK_SUCCESS) {
 				throw new RuntimeException("vkAllocateDescriptorSets failed: " + result);
 			}
-			return pSet.get(0);
+			long[] handles = new long[sets];
+			pSets.get(0, handles);
+			return handles;
 		}
 
 		private static long createComputePipeline(long shaderModule, long layout, MemoryStack stack) {
@@ -497,36 +1154,48 @@ public final class ShaderpackComputeDispatcher {
 				.layout(layout);
 
 			LongBuffer pPipeline = stack.mallocLong(1);
-			int result = VK10.vkCreateComputePipelines(Vulkan.getVkDevice(), 0L, pipelineInfo, null, pPipeline);
+			int result;
+			long pipelineCache = ShaderpackPipelineCache.acquire();
+			try {
+				result = VK10.vkCreateComputePipelines(Vulkan.getVkDevice(), pipelineCache, pipelineInfo, null, pPipeline);
+			} finally {
+				ShaderpackPipelineCache.release();
+			}
 			if (result != VK10.VK_SUCCESS) {
 				throw new RuntimeException("vkCreateComputePipelines failed: " + result);
 			}
 			return pPipeline.get(0);
 		}
 
-		private void updateDescriptors(List<VulkanImage> images, MemoryStack stack) {
-			VkWriteDescriptorSet.Buffer writes = VkWriteDescriptorSet.calloc(bindingCount, stack);
-			for (int i = 0; i < bindingCount; i++) {
-				VulkanImage image = images.get(i);
-				VkDescriptorImageInfo.Buffer imageInfo = VkDescriptorImageInfo.calloc(1, stack);
-				imageInfo.get(0)
-					.imageLayout(VK10.VK_IMAGE_LAYOUT_GENERAL)
-					.imageView(image.getImageView())
-					.sampler(0L);
-				writes.get(i)
-					.sType$Default()
-					.dstSet(descriptorSet)
-					.dstBinding(i)
-					.dstArrayElement(0)
-					.descriptorCount(1)
-					.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE)
-					.pImageInfo(imageInfo);
+		private long descriptorSetFor(int frame, int parity, VulkanImage[] images) {
+			int slot = Math.floorMod(frame, descriptorSets.length / 2) * 2 + parity;
+			if (!Arrays.equals(boundImages[slot], images)) {
+				updateDescriptors(descriptorSets[slot], images);
+				boundImages[slot] = images.clone();
 			}
-			VK10.vkUpdateDescriptorSets(Vulkan.getVkDevice(), writes, null);
+			return descriptorSets[slot];
 		}
 
-		private long descriptorSet() {
-			return descriptorSet;
+		private void updateDescriptors(long descriptorSet, VulkanImage[] images) {
+			try (MemoryStack stack = MemoryStack.stackPush()) {
+				VkWriteDescriptorSet.Buffer writes = VkWriteDescriptorSet.calloc(bindingCount, stack);
+				for (int i = 0; i < bindingCount; i++) {
+					VkDescriptorImageInfo.Buffer imageInfo = VkDescriptorImageInfo.calloc(1, stack);
+					imageInfo.get(0)
+						.imageLayout(VK10.VK_IMAGE_LAYOUT_GENERAL)
+						.imageView(images[i].getImageView())
+						.sampler(0L);
+					writes.get(i)
+						.sType$Default()
+						.dstSet(descriptorSet)
+						.dstBinding(i)
+						.dstArrayElement(0)
+						.descriptorCount(1)
+						.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_IMAGE)
+						.pImageInfo(imageInfo);
+				}
+				VK10.vkUpdateDescriptorSets(Vulkan.getVkDevice(), writes, null);
+			}
 		}
 
 		private long layout() {
@@ -547,42 +1216,82 @@ public final class ShaderpackComputeDispatcher {
 	}
 
 	private static final class ImagePool {
-		private final Map<String, ImagePair> pairs = new LinkedHashMap<>();
+		private final Map<String, PooledImage> images = new LinkedHashMap<>();
 
-		private VulkanImage resolve(String name, boolean alt, int width, int height, int format) {
-			if (width <= 0 || height <= 0 || format <= 0) {
+		private PooledImage resolve(
+			String owner,
+			String key,
+			int width,
+			int height,
+			int format,
+			boolean retained,
+			boolean releaseWhenUnused
+		) {
+			if (key == null || width <= 0 || height <= 0 || format <= 0) {
 				return null;
 			}
-			ImagePair pair = pairs.get(name);
-			if (pair == null || pair.width() != width || pair.height() != height || pair.format() != format) {
-				if (pair != null) {
-					pair.main().free();
-					pair.alt().free();
+			PooledImage pooled = images.get(key);
+			if (pooled == null || pooled.width != width || pooled.height != height || pooled.format != format) {
+				if (pooled != null) {
+					retire(pooled.image);
+					images.remove(key);
 				}
-				pair = createPair(name, width, height, format);
-				if (pair != null) {
-					pairs.put(name, pair);
+				long bytes = (long) width * height * ShaderpackImageResources.bytesPerPixel(format);
+				if (!ShaderpackVramLedger.admit(ShaderpackVramLedger.Category.IMAGE, owner, bytes)) {
+					return null;
 				}
+				VulkanImage image = createStorageImage(key.replace('/', '_'), width, height, format);
+				if (image == null) {
+					return null;
+				}
+				ShaderpackVramLedger.record(image, ShaderpackVramLedger.Category.IMAGE, owner, bytes);
+				pooled = new PooledImage(image, width, height, format);
+				images.put(key, pooled);
 			}
-			if (pair == null) {
-				return null;
-			}
-			return alt ? pair.alt() : pair.main();
+			pooled.retained = retained;
+			pooled.releaseWhenUnused = releaseWhenUnused;
+			pooled.stale = false;
+			return pooled;
 		}
 
-		private ImagePair createPair(String name, int width, int height, int format) {
-			VulkanImage main = createStorageImage(name + "_main", width, height, format);
-			VulkanImage alt = createStorageImage(name + "_alt", width, height, format);
-			if (main == null || alt == null) {
-				if (main != null) {
-					main.free();
+		private boolean contains(VulkanImage image) {
+			for (PooledImage pooled : images.values()) {
+				if (pooled.image == image) {
+					return true;
 				}
-				if (alt != null) {
-					alt.free();
+			}
+			return false;
+		}
+
+		private boolean containsAll(VulkanImage[] required) {
+			for (VulkanImage image : required) {
+				if (!contains(image)) {
+					return false;
 				}
-				return null;
 			}
-			return new ImagePair(main, alt, width, height, format);
+			return true;
+		}
+
+		private void releaseUnused(Set<String> usedKeys) {
+			images.entrySet().removeIf(entry -> {
+				PooledImage pooled = entry.getValue();
+				if (usedKeys.contains(entry.getKey()) || !pooled.releaseWhenUnused && !pooled.stale) {
+					return false;
+				}
+				retire(pooled.image);
+				return true;
+			});
+		}
+
+		private void invalidate() {
+			images.values().removeIf(pooled -> {
+				if (pooled.retained) {
+					pooled.stale = true;
+					return false;
+				}
+				retire(pooled.image);
+				return true;
+			});
 		}
 
 		private VulkanImage createStorageImage(String name, int width, int height, int format) {
@@ -600,14 +1309,28 @@ public final class ShaderpackComputeDispatcher {
 		}
 
 		private void clear() {
-			for (ImagePair pair : pairs.values()) {
-				pair.main().free();
-				pair.alt().free();
+			for (PooledImage pooled : images.values()) {
+				retire(pooled.image);
 			}
-			pairs.clear();
+			images.clear();
 		}
 	}
 
-	private record ImagePair(VulkanImage main, VulkanImage alt, int width, int height, int format) {
+	private static final class PooledImage {
+		private final VulkanImage image;
+		private final int width;
+		private final int height;
+		private final int format;
+		private boolean retained;
+		private boolean releaseWhenUnused;
+		private boolean stale;
+		private boolean fresh = true;
+
+		private PooledImage(VulkanImage image, int width, int height, int format) {
+			this.image = image;
+			this.width = width;
+			this.height = height;
+			this.format = format;
+		}
 	}
 }
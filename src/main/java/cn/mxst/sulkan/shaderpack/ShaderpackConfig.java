@@ -12,10 +12,13 @@ import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 public final class ShaderpackConfig {
 	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
@@ -38,6 +41,22 @@ public final class ShaderpackConfig {
 		return Map.copyOf(values);
 	}
 
+	Set<String> changedPaths(ShaderpackConfig previous) {
+		Map<String, Object> before = previous == null ? Map.of() : previous.values;
+		Set<String> changed = new HashSet<>();
+		for (Map.Entry<String, Object> entry : values.entrySet()) {
+			if (!before.containsKey(entry.getKey()) || !Objects.equals(entry.getValue(), before.get(entry.getKey()))) {
+				changed.add(entry.getKey());
+			}
+		}
+		for (String path : before.keySet()) {
+			if (!values.containsKey(path)) {
+				changed.add(path);
+			}
+		}
+		return changed;
+	}
+
 	public static Path getConfigPath(Path shaderpackPath) {
 		String fileName = shaderpackPath.getFileName().toString() + ".sscfg";
 		return ShaderpackManager.shaderpacksDir().resolve(fileName);
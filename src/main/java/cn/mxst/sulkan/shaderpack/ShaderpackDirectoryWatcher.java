@@ -0,0 +1,141 @@
+package cn.mxst.sulkan.shaderpack;
+
+import cn.mxst.sulkan.Sulkan;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+final class ShaderpackDirectoryWatcher {
+	private static final Set<String> CHANGED = ConcurrentHashMap.newKeySet();
+	private static final Map<WatchKey, String> KEYS = new ConcurrentHashMap<>();
+	private static volatile WatchService service;
+	private static Path root;
+	private static volatile boolean rescanRequired = true;
+
+	private ShaderpackDirectoryWatcher() {
+	}
+
+	static synchronized void start(Path dir) {
+		if (service != null && dir.equals(root)) {
+			return;
+		}
+		stop();
+		rescanRequired = true;
+		try {
+			service = FileSystems.getDefault().newWatchService();
+			root = dir;
+			register(dir, null);
+			try (Stream<Path> stream = Files.list(dir)) {
+				for (Path child : stream.filter(Files::isDirectory).collect(Collectors.toList())) {
+					registerTree(child, child.getFileName().toString());
+				}
+			}
+		} catch (IOException e) {
+			Sulkan.LOGGER.warn("Shaderpack folder watching unavailable, falling back to full rescans: {}", e.getMessage());
+			stop();
+			return;
+		}
+		WatchService watching = service;
+		Thread thread = new Thread(() -> run(watching), "Sulkan Shaderpack Watcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	static synchronized void stop() {
+		if (service != null) {
+			try {
+				service.close();
+			} catch (IOException ignored) {
+			}
+		}
+		service = null;
+		root = null;
+		KEYS.clear();
+		CHANGED.clear();
+	}
+
+	static Set<String> drainChanges() {
+		if (service == null || rescanRequired) {
+			rescanRequired = false;
+			CHANGED.clear();
+			return null;
+		}
+		Set<String> drained = Set.copyOf(CHANGED);
+		CHANGED.removeAll(drained);
+		return drained;
+	}
+
+	private static void run(WatchService watching) {
+		while (true) {
+			WatchKey key;
+			try {
+				key = watching.take();
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+			String pack = KEYS.get(key);
+			Path dir = (Path) key.watchable();
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					rescanRequired = true;
+					continue;
+				}
+				Path name = (Path) event.context();
+				String id = pack == null ? name.toString() : pack;
+				if (pack == null && ShaderpackDiscoveryIndex.INDEX_FILENAME.equals(id)) {
+					continue;
+				}
+				Path child = dir.resolve(name);
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+					try {
+						registerTree(child, id);
+					} catch (IOException e) {
+						rescanRequired = true;
+					}
+				}
+				CHANGED.add(id);
+			}
+			if (!key.reset()) {
+				KEYS.remove(key);
+			}
+		}
+	}
+
+	private static void registerTree(Path dir, String pack) throws IOException {
+		List<Path> dirs;
+		try (Stream<Path> stream = Files.walk(dir)) {
+			dirs = stream.filter(Files::isDirectory).collect(Collectors.toList());
+		}
+		for (Path path : dirs) {
+			register(path, pack);
+		}
+	}
+
+	private static void register(Path dir, String pack) throws IOException {
+		WatchService watching = service;
+		if (watching == null) {
+			return;
+		}
+		WatchKey key = dir.register(
+			watching,
+			StandardWatchEventKinds.ENTRY_CREATE,
+			StandardWatchEventKinds.ENTRY_DELETE,
+			StandardWatchEventKinds.ENTRY_MODIFY
+		);
+		if (pack != null) {
+			KEYS.put(key, pack);
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package cn.mxst.sulkan.shaderpack;
+
+import cn.mxst.sulkan.Sulkan;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import net.fabricmc.loader.api.FabricLoader;
+
+final class ShaderpackDiscoveryIndex {
+	static final String INDEX_FILENAME = ".sulkan_index.json";
+	private static final int FORMAT_VERSION = 2;
+	private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+	private static final Map<String, IndexEntry> ENTRIES = new LinkedHashMap<>();
+	private static boolean loaded;
+
+	private ShaderpackDiscoveryIndex() {
+	}
+
+	static synchronized ShaderpackCandidate lookup(Path path, String fingerprint) {
+		if (fingerprint == null) {
+			return null;
+		}
+		ensureLoaded();
+		String id = path.getFileName().toString();
+		IndexEntry entry = ENTRIES.get(id);
+		if (entry == null || !fingerprint.equals(entry.fingerprint) || !ShaderpackVramLedger.budgetTag().equals(entry.budgetTag)) {
+			return null;
+		}
+		return new ShaderpackCandidate(
+			id,
+			path,
+			new ShaderpackHeader(entry.name, entry.version, entry.specVersion),
+			new ShaderpackSummary(entry.errors, entry.warnings, entry.optionCount, entry.configOptions)
+		);
+	}
+
+	static synchronized void record(ShaderpackCandidate candidate, String fingerprint) {
+		if (fingerprint == null || candidate.summary() == null) {
+			return;
+		}
+		ensureLoaded();
+		IndexEntry entry = new IndexEntry();
+		entry.fingerprint = fingerprint;
+		entry.budgetTag = ShaderpackVramLedger.budgetTag();
+		if (candidate.header() != null) {
+			entry.name = candidate.header().name();
+			entry.version = candidate.header().version();
+			entry.specVersion = candidate.header().specVersion();
+		}
+		entry.errors = new ArrayList<>(candidate.summary().errors());
+		entry.warnings = new ArrayList<>(candidate.summary().warnings());
+		entry.optionCount = candidate.summary().optionCount();
+		entry.configOptions = candidate.summary().configOptions();
+		ENTRIES.put(candidate.id(), entry);
+		save();
+	}
+
+	static synchronized void retain(Set<String> ids) {
+		ensureLoaded();
+		if (ENTRIES.keySet().retainAll(ids)) {
+			save();
+		}
+	}
+
+	private static void ensureLoaded() {
+		if (loaded) {
+			return;
+		}
+		loaded = true;
+		Path file = indexPath();
+		if (!Files.isRegularFile(file)) {
+			return;
+		}
+		try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			IndexFile index = GSON.fromJson(reader, IndexFile.class);
+			if (index == null || index.format != FORMAT_VERSION || !sulkanVersion().equals(index.sulkanVersion) || index.packs == null) {
+				return;
+			}
+			for (Map.Entry<String, IndexEntry> entry : index.packs.entrySet()) {
+				if (entry.getKey() != null && entry.getValue() != null && entry.getValue().fingerprint != null) {
+					ENTRIES.put(entry.getKey(), entry.getValue());
+				}
+			}
+		} catch (IOException | JsonParseException e) {
+			Sulkan.LOGGER.warn("Ignoring unreadable shaderpack index {}: {}", file.getFileName(), e.getMessage());
+		}
+	}
+
+	private static void save() {
+		IndexFile index = new IndexFile();
+		index.format = FORMAT_VERSION;
+		index.sulkanVersion = sulkanVersion();
+		index.packs = new LinkedHashMap<>(ENTRIES);
+		Path file = indexPath();
+		try {
+			ShaderpackFileSystem.writeAtomically(file, GSON.toJson(index).getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			Sulkan.LOGGER.warn("Failed to write shaderpack index: {}", e.getMessage());
+		}
+	}
+
+	private static Path indexPath() {
+		return ShaderpackManager.shaderpacksDir().resolve(INDEX_FILENAME);
+	}
+
+	private static String sulkanVersion() {
+		return FabricLoader.getInstance()
+			.getModContainer(Sulkan.MOD_ID)
+			.map(container -> container.getMetadata().getVersion().getFriendlyString())
+			.orElse("unknown");
+	}
+
+	private static final class IndexFile {
+		private int format;
+		private String sulkanVersion;
+		private Map<String, IndexEntry> packs;
+	}
+
+	private static final class IndexEntry {
+		private String fingerprint;
+		private String budgetTag;
+		private String name;
+		private String version;
+		private String specVersion;
+		private List<String> errors = new ArrayList<>();
+		private List<String> warnings = new ArrayList<>();
+		private int optionCount;
+		private boolean configOptions;
+	}
+}
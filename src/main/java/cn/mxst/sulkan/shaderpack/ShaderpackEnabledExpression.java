@@ -0,0 +1,423 @@
+package cn.mxst.sulkan.shaderpack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+final class ShaderpackEnabledExpression {
+	private static final Value TRUE = Value.of(Boolean.TRUE);
+	private static final Value FALSE = Value.of(Boolean.FALSE);
+
+	private final String source;
+	private final Node root;
+	private final List<String> variables;
+	private final String[][] slotKeys;
+	private final Value[][] localValues;
+	private volatile Binding binding;
+
+	private ShaderpackEnabledExpression(String source, Node root, List<String> variables, Map<String, Object> locals) {
+		this.source = source;
+		this.root = root;
+		this.variables = List.copyOf(variables);
+		this.slotKeys = new String[variables.size()][];
+		this.localValues = new Value[variables.size()][];
+		for (int slot = 0; slot < variables.size(); slot++) {
+			String token = variables.get(slot);
+			String[] keys = {token, token.toLowerCase(Locale.ROOT), token.toUpperCase(Locale.ROOT)};
+			Value[] values = new Value[keys.length];
+			for (int i = 0; i < keys.length; i++) {
+				if (locals.containsKey(keys[i])) {
+					values[i] = Value.of(locals.get(keys[i]));
+				}
+			}
+			this.slotKeys[slot] = keys;
+			this.localValues[slot] = values;
+		}
+	}
+
+	static ShaderpackEnabledExpression compile(String source, Map<String, Object> locals) {
+		Parser parser = new Parser(source);
+		Node root = parser.parse();
+		return new ShaderpackEnabledExpression(
+			source == null ? "" : source,
+			root,
+			new ArrayList<>(parser.slots.keySet()),
+			locals == null ? Map.of() : locals
+		);
+	}
+
+	static ConfigSnapshot snapshot(Map<String, Object> configValues) {
+		if (configValues == null || configValues.isEmpty()) {
+			return ConfigSnapshot.EMPTY;
+		}
+		Map<String, Value> values = new HashMap<>();
+		for (Map.Entry<String, Object> entry : configValues.entrySet()) {
+			String key = entry.getKey();
+			if (key == null || key.isBlank()) {
+				continue;
+			}
+			Value value = Value.of(entry.getValue());
+			String trimmed = key.trim();
+			values.putIfAbsent(trimmed, value);
+			values.putIfAbsent(trimmed.toLowerCase(Locale.ROOT), value);
+			values.putIfAbsent(trimmed.toUpperCase(Locale.ROOT), value);
+			String underscored = trimmed.replace('.', '_').replace('-', '_');
+			values.putIfAbsent(underscored, value);
+			values.putIfAbsent(underscored.toLowerCase(Locale.ROOT), value);
+			values.putIfAbsent(underscored.toUpperCase(Locale.ROOT), value);
+		}
+		return new ConfigSnapshot(Map.copyOf(values));
+	}
+
+	String source() {
+		return source;
+	}
+
+	List<String> variables() {
+		return variables;
+	}
+
+	boolean evaluate(ConfigSnapshot snapshot) {
+		ConfigSnapshot effective = snapshot == null ? ConfigSnapshot.EMPTY : snapshot;
+		Binding current = binding;
+		if (current == null || current.snapshot != effective) {
+			current = bind(effective);
+			binding = current;
+		}
+		return root.evaluate(current.slots).truthy;
+	}
+
+	private Binding bind(ConfigSnapshot snapshot) {
+		Value[] slots = new Value[slotKeys.length];
+		for (int slot = 0; slot < slotKeys.length; slot++) {
+			slots[slot] = resolveSlot(slot, snapshot);
+		}
+		return new Binding(snapshot, slots);
+	}
+
+	private Value resolveSlot(int slot, ConfigSnapshot snapshot) {
+		String[] keys = slotKeys[slot];
+		Value[] locals = localValues[slot];
+		for (int i = 0; i < keys.length; i++) {
+			if (locals[i] != null) {
+				return locals[i];
+			}
+			Value configured = snapshot.values.get(keys[i]);
+			if (configured != null) {
+				return configured;
+			}
+		}
+		return FALSE;
+	}
+
+	static final class ConfigSnapshot {
+		static final ConfigSnapshot EMPTY = new ConfigSnapshot(Map.of());
+
+		private final Map<String, Value> values;
+
+		private ConfigSnapshot(Map<String, Value> values) {
+			this.values = values;
+		}
+	}
+
+	private record Binding(ConfigSnapshot snapshot, Value[] slots) {
+	}
+
+	private static final class Value {
+		private final boolean truthy;
+		private final boolean numeric;
+		private final double number;
+		private final String text;
+
+		private Value(boolean truthy, boolean numeric, double number, String text) {
+			this.truthy = truthy;
+			this.numeric = numeric;
+			this.number = number;
+			this.text = text;
+		}
+
+		private static Value of(Object raw) {
+			Object comparable = normalizeComparable(raw);
+			if (comparable instanceof Number number) {
+				return new Value(asBoolean(raw), true, number.doubleValue(), String.valueOf(comparable));
+			}
+			return new Value(asBoolean(raw), false, 0.0D, String.valueOf(comparable));
+		}
+
+		private boolean matches(Value other) {
+			if (numeric && other.numeric) {
+				return Double.compare(number, other.number) == 0;
+			}
+			return text.equalsIgnoreCase(other.text);
+		}
+
+		private static Object normalizeComparable(Object value) {
+			if (value == null) {
+				return Boolean.FALSE;
+			}
+			if (value instanceof Boolean || value instanceof Number) {
+				return value;
+			}
+			String text = value.toString().trim();
+			if (text.isBlank()) {
+				return "";
+			}
+			String lower = text.toLowerCase(Locale.ROOT);
+			if ("true".equals(lower)) {
+				return Boolean.TRUE;
+			}
+			if ("false".equals(lower)) {
+				return Boolean.FALSE;
+			}
+			try {
+				return Double.parseDouble(text);
+			} catch (NumberFormatException ignored) {
+				return text;
+			}
+		}
+
+		private static boolean asBoolean(Object value) {
+			if (value == null) {
+				return false;
+			}
+			if (value instanceof Boolean bool) {
+				return bool;
+			}
+			if (value instanceof Number number) {
+				return number.doubleValue() != 0.0D;
+			}
+			String text = value.toString().trim();
+			if (text.isBlank()) {
+				return false;
+			}
+			String lower = text.toLowerCase(Locale.ROOT);
+			if ("true".equals(lower) || "on".equals(lower) || "yes".equals(lower)) {
+				return true;
+			}
+			if ("false".equals(lower) || "off".equals(lower) || "no".equals(lower)) {
+				return false;
+			}
+			try {
+				return Double.parseDouble(text) != 0.0D;
+			} catch (NumberFormatException ignored) {
+				return true;
+			}
+		}
+	}
+
+	private interface Node {
+		Value evaluate(Value[] slots);
+	}
+
+	private record Literal(Value value) implements Node {
+		@Override
+		public Value evaluate(Value[] slots) {
+			return value;
+		}
+	}
+
+	private record Slot(int index) implements Node {
+		@Override
+		public Value evaluate(Value[] slots) {
+			return slots[index];
+		}
+	}
+
+	private record Not(Node operand) implements Node {
+		@Override
+		public Value evaluate(Value[] slots) {
+			return operand.evaluate(slots).truthy ? FALSE : TRUE;
+		}
+	}
+
+	private record And(Node left, Node right) implements Node {
+		@Override
+		public Value evaluate(Value[] slots) {
+			return left.evaluate(slots).truthy && right.evaluate(slots).truthy ? TRUE : FALSE;
+		}
+	}
+
+	private record Or(Node left, Node right) implements Node {
+		@Override
+		public Value evaluate(Value[] slots) {
+			return left.evaluate(slots).truthy || right.evaluate(slots).truthy ? TRUE : FALSE;
+		}
+	}
+
+	private record Equals(Node left, Node right, boolean negated) implements Node {
+		@Override
+		public Value evaluate(Value[] slots) {
+			boolean equal = left.evaluate(slots).matches(right.evaluate(slots));
+			return equal != negated ? TRUE : FALSE;
+		}
+	}
+
+	private static final class Parser {
+		private final String source;
+		private final Map<String, Integer> slots = new LinkedHashMap<>();
+		private int index;
+
+		private Parser(String source) {
+			this.source = source == null ? "" : source;
+		}
+
+		private Node parse() {
+			Node node = parseOr();
+			skipWhitespace();
+			if (index != source.length()) {
+				throw error("Unexpected token");
+			}
+			return node;
+		}
+
+		private Node parseOr() {
+			Node left = parseAnd();
+			while (true) {
+				skipWhitespace();
+				if (!match("||")) {
+					return left;
+				}
+				left = new Or(left, parseAnd());
+			}
+		}
+
+		private Node parseAnd() {
+			Node left = parseEquality();
+			while (true) {
+				skipWhitespace();
+				if (!match("&&")) {
+					return left;
+				}
+				left = new And(left, parseEquality());
+			}
+		}
+
+		private Node parseEquality() {
+			Node left = parseUnary();
+			while (true) {
+				skipWhitespace();
+				if (match("==")) {
+					left = new Equals(left, parseUnary(), false);
+					continue;
+				}
+				if (match("!=")) {
+					left = new Equals(left, parseUnary(), true);
+					continue;
+				}
+				return left;
+			}
+		}
+
+		private Node parseUnary() {
+			skipWhitespace();
+			if (match("!")) {
+				return new Not(parseUnary());
+			}
+			return parsePrimary();
+		}
+
+		private Node parsePrimary() {
+			skipWhitespace();
+			if (match("(")) {
+				Node nested = parseOr();
+				skipWhitespace();
+				if (!match(")")) {
+					throw error("Expected ')'");
+				}
+				return nested;
+			}
+			if (peek() == '"' || peek() == '\'') {
+				return new Literal(Value.of(parseQuotedString()));
+			}
+			String token = parseToken();
+			if (token == null || token.isBlank()) {
+				throw error("Expected value");
+			}
+			String lower = token.toLowerCase(Locale.ROOT);
+			if ("true".equals(lower)) {
+				return new Literal(TRUE);
+			}
+			if ("false".equals(lower)) {
+				return new Literal(FALSE);
+			}
+			try {
+				return new Literal(Value.of(Double.parseDouble(token)));
+			} catch (NumberFormatException ignored) {
+			}
+			return new Slot(slots.computeIfAbsent(token, ignored -> slots.size()));
+		}
+
+		private String parseQuotedString() {
+			char quote = peek();
+			if (quote != '\'' && quote != '"') {
+				throw error("Expected string");
+			}
+			index++;
+			StringBuilder builder = new StringBuilder();
+			while (index < source.length()) {
+				char c = source.charAt(index++);
+				if (c == quote) {
+					return builder.toString();
+				}
+				if (c == '\\' && index < source.length()) {
+					char escaped = source.charAt(index++);
+					builder.append(escaped);
+					continue;
+				}
+				builder.append(c);
+			}
+			throw error("Unterminated string literal");
+		}
+
+		private String parseToken() {
+			skipWhitespace();
+			if (index >= source.length()) {
+				return null;
+			}
+			int start = index;
+			while (index < source.length()) {
+				char c = source.charAt(index);
+				if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '!' || c == '&' || c == '|' || c == '=' || c == '\'') {
+					break;
+				}
+				if (c == '"') {
+					break;
+				}
+				index++;
+			}
+			if (start == index) {
+				return null;
+			}
+			return source.substring(start, index);
+		}
+
+		private void skipWhitespace() {
+			while (index < source.length() && Character.isWhitespace(source.charAt(index))) {
+				index++;
+			}
+		}
+
+		private boolean match(String token) {
+			if (token == null || token.isEmpty()) {
+				return false;
+			}
+			if (source.regionMatches(index, token, 0, token.length())) {
+				index += token.length();
+				return true;
+			}
+			return false;
+		}
+
+		private char peek() {
+			return index < source.length() ? source.charAt(index) : '\0';
+		}
+
+		private IllegalArgumentException error(String message) {
+			int position = Math.max(0, Math.min(index, source.length()));
+			return new IllegalArgumentException(message + " at position " + position);
+		}
+	}
+}
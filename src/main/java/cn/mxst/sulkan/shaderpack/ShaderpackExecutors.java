@@ -0,0 +1,21 @@
+package cn.mxst.sulkan.shaderpack;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class ShaderpackExecutors {
+	static final int BACKGROUND_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+	private ShaderpackExecutors() {
+	}
+
+	static ExecutorService newDaemonPool(String name, int threads) {
+		AtomicInteger counter = new AtomicInteger();
+		return Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, name + " #" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+}
@@ -0,0 +1,304 @@
+package cn.mxst.sulkan.shaderpack;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+abstract class ShaderpackFileSystem implements Closeable {
+	private static volatile ShaderpackFileSystem shared;
+
+	private final Path root;
+	private final List<String> files;
+	private final AtomicInteger readers = new AtomicInteger();
+	private volatile boolean retired;
+
+	private ShaderpackFileSystem(Path root, List<String> files) {
+		this.root = root;
+		this.files = Collections.unmodifiableList(files);
+	}
+
+	static boolean isSupported(Path path) {
+		return Files.isDirectory(path) || isZip(path);
+	}
+
+	static boolean isZip(Path path) {
+		Path fileName = path.getFileName();
+		return fileName != null
+			&& Files.isRegularFile(path)
+			&& fileName.toString().toLowerCase(Locale.ROOT).endsWith(".zip");
+	}
+
+	static ShaderpackFileSystem open(Path root) throws IOException {
+		if (Files.isDirectory(root)) {
+			return DirectoryFileSystem.index(root);
+		}
+		if (isZip(root)) {
+			return ZipFileSystem.index(root);
+		}
+		throw new IOException("Unsupported shaderpack type: " + root.getFileName());
+	}
+
+	static synchronized void share(ShaderpackFileSystem fileSystem) {
+		ShaderpackFileSystem previous = shared;
+		shared = fileSystem;
+		if (previous != null && previous != fileSystem) {
+			previous.retire();
+		}
+	}
+
+	static synchronized void closeShared() {
+		share(null);
+	}
+
+	static byte[] readBytes(Path root, String relativePath) throws IOException {
+		ShaderpackFileSystem current = acquireShared(root);
+		if (current != null) {
+			try {
+				return current.readBytes(relativePath);
+			} finally {
+				current.releaseReader();
+			}
+		}
+		String normalized = ShaderpackPipelineProgram.normalizePath(relativePath);
+		if (Files.isDirectory(root)) {
+			Path file = root.resolve(normalized);
+			return Files.isRegularFile(file) ? Files.readAllBytes(file) : null;
+		}
+		if (!isZip(root)) {
+			return null;
+		}
+		try (ZipFile zipFile = new ZipFile(root.toFile(), StandardCharsets.UTF_8)) {
+			ZipEntry entry = zipFile.getEntry(normalized);
+			if (entry == null) {
+				return null;
+			}
+			try (InputStream stream = zipFile.getInputStream(entry)) {
+				return stream.readAllBytes();
+			}
+		}
+	}
+
+	private static synchronized ShaderpackFileSystem acquireShared(Path root) {
+		ShaderpackFileSystem current = shared;
+		if (current == null || !current.root.equals(root)) {
+			return null;
+		}
+		current.readers.incrementAndGet();
+		return current;
+	}
+
+	static String readText(Path root, String relativePath) throws IOException {
+		byte[] bytes = readBytes(root, relativePath);
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	static void writeAtomically(Path file, byte[] data) throws IOException {
+		Files.createDirectories(file.getParent());
+		Path temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temp, data);
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	Path root() {
+		return root;
+	}
+
+	String describe(String relativePath) {
+		return root.toString() + "/" + relativePath;
+	}
+
+	List<String> files() {
+		return files;
+	}
+
+	List<String> list(String prefix) {
+		String normalizedPrefix = ShaderpackPipelineProgram.normalizePath(prefix);
+		List<String> matches = new ArrayList<>();
+		for (String file : files) {
+			if (file.startsWith(normalizedPrefix)) {
+				matches.add(file);
+			}
+		}
+		return matches;
+	}
+
+	boolean exists(String relativePath) {
+		return Collections.binarySearch(files, ShaderpackPipelineProgram.normalizePath(relativePath)) >= 0;
+	}
+
+	String readText(String relativePath) throws IOException {
+		byte[] bytes = readBytes(relativePath);
+		return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	Reader openReader(String relativePath) throws IOException {
+		byte[] bytes = readBytes(relativePath);
+		if (bytes == null) {
+			throw new NoSuchFileException(describe(relativePath));
+		}
+		return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8));
+	}
+
+	abstract byte[] readBytes(String relativePath) throws IOException;
+
+	abstract byte[] readPrefix(String relativePath, int length) throws IOException;
+
+	void forEachArchiveEntry(Consumer<ZipEntry> action) {
+	}
+
+	@Override
+	public void close() throws IOException {
+	}
+
+	// A replaced handle stays open until reads already in progress on other threads finish.
+	private void retire() {
+		retired = true;
+		if (readers.get() == 0) {
+			closeQuietly();
+		}
+	}
+
+	private void releaseReader() {
+		if (readers.decrementAndGet() == 0 && retired) {
+			closeQuietly();
+		}
+	}
+
+	private void closeQuietly() {
+		try {
+			close();
+		} catch (IOException ignored) {
+		}
+	}
+
+	private static final class DirectoryFileSystem extends ShaderpackFileSystem {
+		private DirectoryFileSystem(Path root, List<String> files) {
+			super(root, files);
+		}
+
+		private static DirectoryFileSystem index(Path root) throws IOException {
+			List<String> files;
+			try (Stream<Path> stream = Files.walk(root)) {
+				files = stream
+					.filter(Files::isRegularFile)
+					.map(path -> ShaderpackPipelineProgram.normalizePath(root.relativize(path).toString()))
+					.sorted()
+					.toList();
+			}
+			return new DirectoryFileSystem(root, new ArrayList<>(files));
+		}
+
+		@Override
+		String describe(String relativePath) {
+			return root().resolve(ShaderpackPipelineProgram.normalizePath(relativePath)).toString();
+		}
+
+		@Override
+		byte[] readBytes(String relativePath) throws IOException {
+			Path file = root().resolve(ShaderpackPipelineProgram.normalizePath(relativePath));
+			if (!Files.isRegularFile(file)) {
+				return null;
+			}
+			return Files.readAllBytes(file);
+		}
+
+		@Override
+		byte[] readPrefix(String relativePath, int length) throws IOException {
+			Path file = root().resolve(ShaderpackPipelineProgram.normalizePath(relativePath));
+			if (!Files.isRegularFile(file)) {
+				return null;
+			}
+			try (InputStream stream = Files.newInputStream(file)) {
+				return stream.readNBytes(length);
+			}
+		}
+	}
+
+	private static final class ZipFileSystem extends ShaderpackFileSystem {
+		private final ZipFile zipFile;
+		private final Map<String, ZipEntry> entries;
+
+		private ZipFileSystem(Path root, ZipFile zipFile, Map<String, ZipEntry> entries) {
+			super(root, new ArrayList<>(entries.keySet()));
+			this.zipFile = zipFile;
+			this.entries = entries;
+		}
+
+		private static ZipFileSystem index(Path root) throws IOException {
+			ZipFile zipFile = new ZipFile(root.toFile(), StandardCharsets.UTF_8);
+			Map<String, ZipEntry> entries = new TreeMap<>();
+			zipFile.stream().forEach(entry -> {
+				if (!entry.isDirectory()) {
+					entries.putIfAbsent(ShaderpackPipelineProgram.normalizePath(entry.getName()), entry);
+				}
+			});
+			return new ZipFileSystem(root, zipFile, entries);
+		}
+
+		@Override
+		String describe(String relativePath) {
+			return root().toString() + "!/" + ShaderpackPipelineProgram.normalizePath(relativePath);
+		}
+
+		@Override
+		byte[] readBytes(String relativePath) throws IOException {
+			ZipEntry entry = entries.get(ShaderpackPipelineProgram.normalizePath(relativePath));
+			if (entry == null) {
+				return null;
+			}
+			try (InputStream stream = zipFile.getInputStream(entry)) {
+				return stream.readAllBytes();
+			}
+		}
+
+		@Override
+		byte[] readPrefix(String relativePath, int length) throws IOException {
+			ZipEntry entry = entries.get(ShaderpackPipelineProgram.normalizePath(relativePath));
+			if (entry == null) {
+				return null;
+			}
+			try (InputStream stream = zipFile.getInputStream(entry)) {
+				return stream.readNBytes(length);
+			}
+		}
+
+		@Override
+		void forEachArchiveEntry(Consumer<ZipEntry> action) {
+			zipFile.stream().forEach(action);
+		}
+
+		@Override
+		public void close() throws IOException {
+			zipFile.close();
+		}
+	}
+}
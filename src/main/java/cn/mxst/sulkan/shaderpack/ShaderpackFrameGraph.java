@@ -0,0 +1,212 @@
+package cn.mxst.sulkan.shaderpack;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class ShaderpackFrameGraph {
+	static final String TRANSIENT_KEY_PREFIX = "transient/";
+	static final String HISTORY_KEY_SUFFIX = "/history";
+
+	private final Map<Resource, String> physicalKeys;
+	private final Set<String> historyKeys;
+	private final int[][] levels;
+	private final int logicalImages;
+	private final int physicalImages;
+
+	private ShaderpackFrameGraph(
+		Map<Resource, String> physicalKeys,
+		Set<String> historyKeys,
+		int[][] levels,
+		int logicalImages,
+		int physicalImages
+	) {
+		this.physicalKeys = physicalKeys;
+		this.historyKeys = historyKeys;
+		this.levels = levels;
+		this.logicalImages = logicalImages;
+		this.physicalImages = physicalImages;
+	}
+
+	static ShaderpackFrameGraph build(List<List<Access>> passes) {
+		Map<Resource, Interval> intervals = new LinkedHashMap<>();
+		for (int pass = 0; pass < passes.size(); pass++) {
+			for (Access access : passes.get(pass)) {
+				Interval interval = intervals.get(access.resource());
+				if (interval == null) {
+					intervals.put(access.resource(), new Interval(access.resource(), pass, isTransient(access)));
+				} else {
+					interval.last = pass;
+				}
+			}
+		}
+
+		Map<Resource, String> physicalKeys = new HashMap<>();
+		Set<String> historyKeys = new HashSet<>();
+		List<Interval> transients = new ArrayList<>();
+		for (Interval interval : intervals.values()) {
+			if (interval.transientImage) {
+				transients.add(interval);
+			} else if (interval.resource.history()) {
+				String currentKey = persistentKey(interval.resource);
+				historyKeys.add(currentKey);
+				physicalKeys.put(interval.resource, currentKey + HISTORY_KEY_SUFFIX);
+			} else {
+				physicalKeys.put(interval.resource, persistentKey(interval.resource));
+			}
+		}
+		transients.sort(Comparator.comparingInt(interval -> interval.first));
+		Map<String, List<Slot>> slotsByShape = new HashMap<>();
+		int physical = intervals.size() - transients.size();
+		for (Interval interval : transients) {
+			Resource resource = interval.resource;
+			String shape = resource.width() + "x" + resource.height() + "/" + resource.format();
+			List<Slot> slots = slotsByShape.computeIfAbsent(shape, ignored -> new ArrayList<>());
+			Slot chosen = null;
+			for (Slot slot : slots) {
+				if (slot.last < interval.first) {
+					chosen = slot;
+					break;
+				}
+			}
+			if (chosen == null) {
+				chosen = new Slot(TRANSIENT_KEY_PREFIX + shape + "/" + slots.size());
+				slots.add(chosen);
+				physical++;
+			}
+			chosen.last = interval.last;
+			physicalKeys.put(resource, chosen.key);
+		}
+
+		return new ShaderpackFrameGraph(
+			Map.copyOf(physicalKeys),
+			Set.copyOf(historyKeys),
+			buildLevels(passes, physicalKeys),
+			intervals.size(),
+			physical
+		);
+	}
+
+	String physicalKey(Resource resource) {
+		return physicalKeys.get(resource);
+	}
+
+	boolean hasHistory(String physicalKey) {
+		return historyKeys.contains(physicalKey);
+	}
+
+	int[][] levels() {
+		return levels;
+	}
+
+	int logicalImages() {
+		return logicalImages;
+	}
+
+	int physicalImages() {
+		return physicalImages;
+	}
+
+	private static boolean isTransient(Access firstAccess) {
+		if (firstAccess.resource().history()) {
+			return false;
+		}
+		return switch (firstAccess.resource().lifetime()) {
+			case PER_FRAME -> true;
+			case INFERRED, PERSISTENT, TEMPORAL -> false;
+		};
+	}
+
+	static boolean isTransientKey(String key) {
+		return key != null && key.startsWith(TRANSIENT_KEY_PREFIX);
+	}
+
+	private static String persistentKey(Resource resource) {
+		return resource.name() + (resource.alt() ? "/alt" : "/main");
+	}
+
+	private static int[][] buildLevels(List<List<Access>> passes, Map<Resource, String> physicalKeys) {
+		Map<String, int[]> lastAccess = new HashMap<>();
+		int[] levelOf = new int[passes.size()];
+		int levelCount = 0;
+		for (int pass = 0; pass < passes.size(); pass++) {
+			int level = 0;
+			for (Access access : passes.get(pass)) {
+				int[] last = lastAccess.get(physicalKeys.get(access.resource()));
+				if (last == null) {
+					continue;
+				}
+				level = Math.max(level, last[1] + 1);
+				if (access.write()) {
+					level = Math.max(level, last[0] + 1);
+				}
+			}
+			for (Access access : passes.get(pass)) {
+				int[] last = lastAccess.computeIfAbsent(physicalKeys.get(access.resource()), ignored -> new int[] {-1, -1});
+				if (access.write()) {
+					last[1] = level;
+				} else {
+					last[0] = Math.max(last[0], level);
+				}
+			}
+			levelOf[pass] = level;
+			levelCount = Math.max(levelCount, level + 1);
+		}
+
+		int[] sizes = new int[levelCount];
+		for (int level : levelOf) {
+			sizes[level]++;
+		}
+		int[][] levels = new int[levelCount][];
+		for (int level = 0; level < levelCount; level++) {
+			levels[level] = new int[sizes[level]];
+			sizes[level] = 0;
+		}
+		for (int pass = 0; pass < levelOf.length; pass++) {
+			int level = levelOf[pass];
+			levels[level][sizes[level]++] = pass;
+		}
+		return levels;
+	}
+
+	enum Lifetime {
+		INFERRED,
+		PER_FRAME,
+		PERSISTENT,
+		TEMPORAL
+	}
+
+	record Resource(String name, boolean alt, int width, int height, int format, Lifetime lifetime, boolean history) {
+	}
+
+	record Access(Resource resource, boolean read, boolean write) {
+	}
+
+	private static final class Interval {
+		private final Resource resource;
+		private final int first;
+		private final boolean transientImage;
+		private int last;
+
+		private Interval(Resource resource, int first, boolean transientImage) {
+			this.resource = resource;
+			this.first = first;
+			this.last = first;
+			this.transientImage = transientImage;
+		}
+	}
+
+	private static final class Slot {
+		private final String key;
+		private int last = -1;
+
+		private Slot(String key) {
+			this.key = key;
+		}
+	}
+}
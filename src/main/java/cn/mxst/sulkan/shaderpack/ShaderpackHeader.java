@@ -0,0 +1,8 @@
+package cn.mxst.sulkan.shaderpack;
+
+public record ShaderpackHeader(
+	String name,
+	String version,
+	String specVersion
+) {
+}
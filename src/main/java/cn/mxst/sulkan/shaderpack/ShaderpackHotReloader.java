@@ -0,0 +1,328 @@
+package cn.mxst.sulkan.shaderpack;
+
+import cn.mxst.sulkan.Sulkan;
+import cn.mxst.sulkan.compat.vulkanmod.SulkanVulkanPipelineReloader;
+import cn.mxst.sulkan.config.SulkanConfig;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+final class ShaderpackHotReloader {
+	private static final long DEBOUNCE_MILLIS = 100L;
+	private static final String PIPELINES_PREFIX = "pipelines/";
+	private static final String LANG_PREFIX = "lang/";
+	private static final String SHADERS_PREFIX = "shaders/";
+	private static final String SHADERPACK_TEXTURE_PREFIX = "shaderpack:";
+	private static volatile WatchService service;
+	private static Path root;
+
+	private ShaderpackHotReloader() {
+	}
+
+	static synchronized void sync(ShaderpackRuntimeState state) {
+		Path target = shouldWatch(state) ? state.path() : null;
+		if (target == null) {
+			stop();
+			return;
+		}
+		if (service != null && target.equals(root)) {
+			return;
+		}
+		stop();
+		WatchService watching;
+		try {
+			watching = FileSystems.getDefault().newWatchService();
+			service = watching;
+			root = target;
+			registerTree(watching, target, target);
+		} catch (IOException e) {
+			Sulkan.LOGGER.warn("Shaderpack hot reload watching unavailable for {}: {}", target.getFileName(), e.getMessage());
+			stop();
+			return;
+		}
+		Thread thread = new Thread(() -> run(watching, target), "Sulkan Shaderpack Hot Reload");
+		thread.setDaemon(true);
+		thread.start();
+		Sulkan.LOGGER.info("Watching shaderpack {} for changes.", target.getFileName());
+	}
+
+	static synchronized void stop() {
+		if (service != null) {
+			try {
+				service.close();
+			} catch (IOException ignored) {
+			}
+		}
+		service = null;
+		root = null;
+	}
+
+	private static boolean shouldWatch(ShaderpackRuntimeState state) {
+		if (!state.isActive() || state.path() == null) {
+			return false;
+		}
+		SulkanConfig config = SulkanConfig.get();
+		return Boolean.TRUE.equals(config.enableHotReload)
+			&& Boolean.TRUE.equals(config.hotReloadWatchFiles)
+			&& ShaderpackManager.isRuntimeHotReloadEnabled(state.metadata())
+			&& Files.isDirectory(state.path());
+	}
+
+	private static void run(WatchService watching, Path packRoot) {
+		Set<String> changed = new LinkedHashSet<>();
+		while (true) {
+			WatchKey key;
+			try {
+				key = changed.isEmpty() ? watching.take() : watching.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException | ClosedWatchServiceException e) {
+				return;
+			}
+			if (key == null) {
+				Set<String> batch = Set.copyOf(changed);
+				changed.clear();
+				try {
+					reload(packRoot, batch);
+				} catch (RuntimeException e) {
+					Sulkan.LOGGER.warn("Shaderpack hot reload failed.", e);
+				}
+				continue;
+			}
+			Path dir = (Path) key.watchable();
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					changed.add(ShaderpackManager.METADATA_FILENAME);
+					continue;
+				}
+				Path child = dir.resolve((Path) event.context());
+				if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(child)) {
+					try {
+						changed.addAll(registerTree(watching, packRoot, child));
+					} catch (IOException | ClosedWatchServiceException e) {
+						changed.add(ShaderpackManager.METADATA_FILENAME);
+					}
+					continue;
+				}
+				changed.add(relativize(packRoot, child));
+			}
+			key.reset();
+		}
+	}
+
+	private static void reload(Path packRoot, Set<String> changed) {
+		ShaderpackRuntimeState state = ShaderpackManager.currentState();
+		if (!state.isActive() || !packRoot.equals(state.path())) {
+			return;
+		}
+		long startedAt = System.nanoTime();
+		ShaderpackMetadata metadata = state.metadata();
+		Set<String> texturePaths = boundTexturePaths(metadata);
+		Set<String> stageFiles = new LinkedHashSet<>();
+		Set<String> sources = new LinkedHashSet<>();
+		boolean langChanged = false;
+		boolean texturesChanged = false;
+		boolean fullReload = false;
+		for (String path : changed) {
+			if (ShaderpackManager.METADATA_FILENAME.equals(path)) {
+				fullReload = true;
+			} else if (path.startsWith(PIPELINES_PREFIX) && path.endsWith(".toml")) {
+				stageFiles.add(path);
+			} else if (path.startsWith(LANG_PREFIX) && path.endsWith(".json")) {
+				langChanged = true;
+			} else if (texturePaths.contains(path)) {
+				texturesChanged = true;
+			} else if (path.startsWith(SHADERS_PREFIX)) {
+				sources.add(path);
+			}
+		}
+		if (!sources.isEmpty() && metadata.features.autoExtractOptions()) {
+			fullReload = true;
+		}
+		if (fullReload) {
+			reloadFully(packRoot);
+			return;
+		}
+
+		ShaderpackRuntimeState next = state;
+		ShaderpackFileSystem fileSystem = null;
+		if (!stageFiles.isEmpty() || langChanged) {
+			try {
+				fileSystem = ShaderpackFileSystem.open(packRoot);
+			} catch (IOException e) {
+				Sulkan.LOGGER.warn("Shaderpack hot reload could not index {}: {}", packRoot.getFileName(), e.getMessage());
+				return;
+			}
+			ShaderpackLoadResult result = ShaderpackManager.reloadChangedFiles(metadata, fileSystem, stageFiles, langChanged);
+			if (!result.isValid()) {
+				closeQuietly(fileSystem);
+				reportErrors(result.errors());
+				return;
+			}
+			next = state.withMetadata(result.metadata());
+		}
+		ShaderpackShaderApplier.SourceImpact impact = ShaderpackShaderApplier.invalidateSources(sources);
+		if (next == state && impact.sources().isEmpty() && !texturesChanged) {
+			return;
+		}
+		if (next != state && !ShaderpackManager.publishHotReload(state, next, fileSystem)) {
+			closeQuietly(fileSystem);
+			return;
+		}
+
+		boolean rebuildGraphics = impact.graphics() || touchesGraphicsPrograms(metadata, next.metadata(), stageFiles);
+		boolean replanCompute = impact.compute();
+		boolean reloadTextures = texturesChanged;
+		int changedCount = stageFiles.size() + sources.size() + (langChanged ? 1 : 0) + (texturesChanged ? 1 : 0);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+		Sulkan.LOGGER.info(
+			"Hot reloaded {} shaderpack file(s) in {} ms ({} affected source(s), graphics rebuild: {}).",
+			changedCount,
+			elapsedMillis,
+			impact.sources().size(),
+			rebuildGraphics
+		);
+		MinecraftClient client = MinecraftClient.getInstance();
+		if (client == null) {
+			return;
+		}
+		client.execute(() -> {
+			if (replanCompute) {
+				ShaderpackComputeDispatcher.requestReplan();
+			}
+			if (reloadTextures) {
+				ShaderpackTextureBinder.invalidateCaches();
+			}
+			if (rebuildGraphics) {
+				SulkanVulkanPipelineReloader.reloadShaderpackPipelines(client);
+			}
+			showMessage(client, Text.translatable("sulkan.debug.reload.hot", changedCount, elapsedMillis), false);
+		});
+	}
+
+	private static void reloadFully(Path packRoot) {
+		MinecraftClient client = MinecraftClient.getInstance();
+		ShaderpackManager.reloadShaderpackAsync(packRoot).thenAccept(result -> {
+			if (!result.isValid()) {
+				reportErrors(result.errors());
+			} else if (client != null) {
+				client.execute(() -> SulkanVulkanPipelineReloader.reloadShaderpackPipelines(client));
+			}
+		});
+	}
+
+	private static boolean touchesGraphicsPrograms(ShaderpackMetadata previous, ShaderpackMetadata next, Set<String> stageFiles) {
+		for (String name : stageFiles) {
+			String[] segments = name.split("/");
+			if (segments.length != 3) {
+				continue;
+			}
+			String stage = segments[2].substring(0, segments[2].length() - ".toml".length());
+			if (hasGraphicsProgram(previous, segments[1], stage) || hasGraphicsProgram(next, segments[1], stage)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean hasGraphicsProgram(ShaderpackMetadata metadata, String worldId, String stage) {
+		Map<String, List<ShaderpackPipelineProgram>> byStage = metadata.pipelinePrograms.get(worldId);
+		List<ShaderpackPipelineProgram> programs = byStage == null ? null : byStage.get(stage);
+		if (programs == null) {
+			return false;
+		}
+		for (ShaderpackPipelineProgram program : programs) {
+			if (program.vertex() != null || program.fragment() != null || program.geometry() != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static Set<String> boundTexturePaths(ShaderpackMetadata metadata) {
+		Set<String> paths = new HashSet<>();
+		if (metadata.textureBindings == null) {
+			return paths;
+		}
+		for (Map<String, String> bindings : metadata.textureBindings.byStage().values()) {
+			for (String source : bindings.values()) {
+				String trimmed = source.trim();
+				if (trimmed.startsWith(SHADERPACK_TEXTURE_PREFIX)) {
+					trimmed = trimmed.substring(SHADERPACK_TEXTURE_PREFIX.length());
+				}
+				paths.add(ShaderpackPipelineProgram.normalizePath(trimmed));
+			}
+		}
+		return paths;
+	}
+
+	private static void reportErrors(List<String> errors) {
+		Sulkan.LOGGER.warn("Shaderpack hot reload rejected changes, keeping the previous state:");
+		for (String error : errors) {
+			Sulkan.LOGGER.warn("  {}", error);
+		}
+		MinecraftClient client = MinecraftClient.getInstance();
+		if (client != null) {
+			String first = errors.isEmpty() ? "" : errors.get(0);
+			client.execute(() -> showMessage(client, Text.translatable("sulkan.debug.reload.hot_failed", first), true));
+		}
+	}
+
+	private static void showMessage(MinecraftClient client, Text message, boolean error) {
+		if (client.inGameHud == null) {
+			return;
+		}
+		Text formatted = Text.literal("[Sulkan] ").append(message).formatted(error ? Formatting.RED : Formatting.YELLOW);
+		client.inGameHud.getChatHud().addMessage(formatted);
+	}
+
+	private static Set<String> registerTree(WatchService watching, Path packRoot, Path dir) throws IOException {
+		List<Path> paths;
+		try (Stream<Path> stream = Files.walk(dir)) {
+			paths = stream.collect(Collectors.toList());
+		}
+		Set<String> files = new LinkedHashSet<>();
+		for (Path path : paths) {
+			if (Files.isDirectory(path)) {
+				path.register(
+					watching,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_DELETE,
+					StandardWatchEventKinds.ENTRY_MODIFY
+				);
+			} else {
+				files.add(relativize(packRoot, path));
+			}
+		}
+		return files;
+	}
+
+	private static String relativize(Path packRoot, Path path) {
+		return ShaderpackPipelineProgram.normalizePath(packRoot.relativize(path).toString());
+	}
+
+	private static void closeQuietly(ShaderpackFileSystem fileSystem) {
+		if (fileSystem == null) {
+			return;
+		}
+		try {
+			fileSystem.close();
+		} catch (IOException ignored) {
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package cn.mxst.sulkan.shaderpack;
+
+import cn.mxst.sulkan.Sulkan;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.Registry;
+import net.minecraft.util.Identifier;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.VK10;
+
+public final class ShaderpackIdLookup {
+	static final String INCLUDE_PATH = "sulkan/ids.glsl";
+	static final int BINDING = 1;
+	private static ShaderpackMetadata builtFor;
+	private static ShaderpackRuntimeUniforms.HostBuffer buffer;
+	private static Layout layout = Layout.EMPTY;
+
+	private ShaderpackIdLookup() {
+	}
+
+	static boolean isInclude(String includeRef) {
+		return includeRef != null && INCLUDE_PATH.equals(ShaderpackPipelineProgram.normalizePath(includeRef.trim()));
+	}
+
+	static String includeSource(ShaderpackMetadata metadata) {
+		List<String> lines = new ArrayList<>();
+		lines.add("#ifndef SULKAN_IDS_GLSL");
+		lines.add("#define SULKAN_IDS_GLSL");
+		lines.add("#ifndef SULKAN_SHADER_COMPUTE");
+		lines.add("#error \"" + INCLUDE_PATH + " is only available to compute programs\"");
+		lines.add("#endif");
+		if (!ShaderpackManager.isIdLookupBufferEnabled(metadata)) {
+			lines.add("#error \"" + INCLUDE_PATH + " requires the id_lookup_buffer global setting\"");
+			lines.add("#endif");
+			return String.join("\n", lines) + "\n";
+		}
+		Layout current = layoutFor(metadata);
+		lines.add("layout(std430, set = " + ShaderpackRuntimeUniforms.DESCRIPTOR_SET + ", binding = " + BINDING + ") readonly buffer SulkanIdLookup {");
+		lines.add("\tint sulkan_idLookup[];");
+		lines.add("};");
+		appendAccessor(lines, "sulkan_blockId", "BLOCK", 0, current.blocks());
+		appendAccessor(lines, "sulkan_itemId", "ITEM", current.blocks(), current.items());
+		appendAccessor(lines, "sulkan_entityId", "ENTITY", current.blocks() + current.items(), current.entities());
+		lines.add("#endif");
+		return String.join("\n", lines) + "\n";
+	}
+
+	static synchronized ShaderpackRuntimeUniforms.HostBuffer buffer(ShaderpackMetadata metadata) {
+		if (metadata == builtFor) {
+			return buffer;
+		}
+		release();
+		builtFor = metadata;
+		if (!ShaderpackManager.isIdLookupBufferEnabled(metadata) || metadata.idMappings == null) {
+			return null;
+		}
+		Layout current = layoutFor(metadata);
+		int[] values = current.values();
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			buffer = ShaderpackRuntimeUniforms.createHostBuffer(
+				(long) Math.max(1, values.length) * Integer.BYTES,
+				VK10.VK_BUFFER_USAGE_STORAGE_BUFFER_BIT,
+				"id_lookup",
+				stack
+			);
+		} catch (RuntimeException e) {
+			Sulkan.LOGGER.warn("Shaderpack ID lookup buffer unavailable: {}", e.getMessage());
+			return null;
+		}
+		ByteBuffer mapped = buffer.mapped();
+		for (int i = 0; i < values.length; i++) {
+			mapped.putInt(i * Integer.BYTES, values[i]);
+		}
+		Sulkan.LOGGER.info(
+			"Uploaded shaderpack ID lookup buffer ({} block, {} item, {} entity slot(s), {} unresolved mapping(s)).",
+			current.blocks(),
+			current.items(),
+			current.entities(),
+			current.unresolved()
+		);
+		return buffer;
+	}
+
+	static synchronized void destroy() {
+		if (buffer != null) {
+			buffer.destroy();
+			buffer = null;
+		}
+		builtFor = null;
+	}
+
+	private static void release() {
+		ShaderpackRuntimeUniforms.HostBuffer previous = buffer;
+		buffer = null;
+		if (previous != null) {
+			ShaderpackRetirementQueue.retire(previous::destroy);
+		}
+	}
+
+	private static synchronized Layout layoutFor(ShaderpackMetadata metadata) {
+		if (layout.metadata() == metadata) {
+			return layout;
+		}
+		ShaderpackIdMappings mappings = metadata == null || metadata.idMappings == null ? ShaderpackIdMappings.EMPTY : metadata.idMappings;
+		int[] unresolved = new int[1];
+		int[] blocks = resolve(Registries.BLOCK, mappings.blocks(), unresolved);
+		int[] items = resolve(Registries.ITEM, mappings.items(), unresolved);
+		int[] entities = resolve(Registries.ENTITY_TYPE, mappings.entities(), unresolved);
+		int[] values = new int[blocks.length + items.length + entities.length];
+		System.arraycopy(blocks, 0, values, 0, blocks.length);
+		System.arraycopy(items, 0, values, blocks.length, items.length);
+		System.arraycopy(entities, 0, values, blocks.length + items.length, entities.length);
+		layout = new Layout(metadata, values, blocks.length, items.length, entities.length, unresolved[0]);
+		return layout;
+	}
+
+	private static <T> int[] resolve(Registry<T> registry, Map<String, Integer> mappings, int[] unresolved) {
+		if (mappings.isEmpty()) {
+			return new int[0];
+		}
+		int[] values = new int[registry.size()];
+		for (Map.Entry<String, Integer> entry : mappings.entrySet()) {
+			Identifier id = Identifier.tryParse(entry.getKey());
+			if (id == null || !registry.containsId(id)) {
+				unresolved[0]++;
+				continue;
+			}
+			int rawId = registry.getRawId(registry.get(id));
+			if (rawId >= 0 && rawId < values.length) {
+				values[rawId] = entry.getValue();
+			}
+		}
+		return values;
+	}
+
+	private static void appendAccessor(List<String> lines, String function, String kind, int offset, int count) {
+		lines.add("#define SULKAN_ID_LOOKUP_" + kind + "_OFFSET " + offset);
+		lines.add("#define SULKAN_ID_LOOKUP_" + kind + "_COUNT " + count);
+		lines.add("int " + function + "(int rawId) {");
+		lines.add("\treturn rawId >= 0 && rawId < " + count + " ? sulkan_idLookup[" + offset + " + rawId] : 0;");
+		lines.add("}");
+	}
+
+	private record Layout(ShaderpackMetadata metadata, int[] values, int blocks, int items, int entities, int unresolved) {
+		private static final Layout EMPTY = new Layout(null, new int[0], 0, 0, 0, 0);
+	}
+}
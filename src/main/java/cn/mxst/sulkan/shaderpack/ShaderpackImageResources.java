@@ -0,0 +1,192 @@
+package cn.mxst.sulkan.shaderpack;
+
+import cn.mxst.sulkan.Sulkan;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import net.vulkanmod.vulkan.Vulkan;
+import net.vulkanmod.vulkan.texture.VulkanImage;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.VK10;
+import org.lwjgl.vulkan.VkDevice;
+import org.lwjgl.vulkan.VkFormatProperties;
+
+final class ShaderpackImageResources {
+	static final List<String> IMAGE_BINDINGS = List.of(
+		"colorimg0",
+		"colorimg1",
+		"colorimg2",
+		"colorimg3",
+		"colorimg4",
+		"colorimg5",
+		"shadowcolorimg0",
+		"shadowcolorimg1"
+	);
+	static final String HISTORY_SUFFIX = "_prev";
+	private static final ImageFormat RGBA8 = new ImageFormat("rgba8", VK10.VK_FORMAT_R8G8B8A8_UNORM, "rgba8", 4);
+	private static final ImageFormat RGBA16F = new ImageFormat("rgba16f", VK10.VK_FORMAT_R16G16B16A16_SFLOAT, "rgba16f", 8);
+	private static final ImageFormat RGBA32F = new ImageFormat("rgba32f", VK10.VK_FORMAT_R32G32B32A32_SFLOAT, "rgba32f", 16);
+	private static final ImageFormat RG8 = new ImageFormat("rg8", VK10.VK_FORMAT_R8G8_UNORM, "rg8", 2);
+	private static final ImageFormat RG16F = new ImageFormat("rg16f", VK10.VK_FORMAT_R16G16_SFLOAT, "rg16f", 4);
+	private static final ImageFormat RG32F = new ImageFormat("rg32f", VK10.VK_FORMAT_R32G32_SFLOAT, "rg32f", 8);
+	private static final ImageFormat R8 = new ImageFormat("r8", VK10.VK_FORMAT_R8_UNORM, "r8", 1);
+	private static final ImageFormat R16F = new ImageFormat("r16f", VK10.VK_FORMAT_R16_SFLOAT, "r16f", 2);
+	private static final ImageFormat R32F = new ImageFormat("r32f", VK10.VK_FORMAT_R32_SFLOAT, "r32f", 4);
+	// Storage images cannot use sRGB or depth formats, so those map onto the nearest storable format.
+	private static final Map<String, List<ImageFormat>> CANDIDATES = Map.ofEntries(
+		Map.entry("rgba8", List.of(RGBA8)),
+		Map.entry("rgba8_srgb", List.of(RGBA8)),
+		Map.entry("rgba16f", List.of(RGBA16F, RGBA32F)),
+		Map.entry("rgba32f", List.of(RGBA32F, RGBA16F)),
+		Map.entry("rg8", List.of(RG8, RGBA8)),
+		Map.entry("rg16f", List.of(RG16F, RG32F, RGBA16F)),
+		Map.entry("rg32f", List.of(RG32F, RGBA32F)),
+		Map.entry("r8", List.of(R8, RG8, RGBA8)),
+		Map.entry("r16f", List.of(R16F, R32F, RGBA16F)),
+		Map.entry("r32f", List.of(R32F, RGBA32F)),
+		Map.entry("depth24", List.of(R32F, RGBA32F)),
+		Map.entry("depth32f", List.of(R32F, RGBA32F)),
+		Map.entry("depth24_stencil8", List.of(R32F, RGBA32F)),
+		Map.entry("depth32f_stencil8", List.of(R32F, RGBA32F))
+	);
+	private static final Map<Integer, Boolean> STORAGE_SUPPORT = new ConcurrentHashMap<>();
+	private static final Set<String> WARNED_FALLBACKS = ConcurrentHashMap.newKeySet();
+
+	private ShaderpackImageResources() {
+	}
+
+	static ShaderpackResourceDecl find(ShaderpackMetadata metadata, String binding) {
+		return metadata == null ? null : find(metadata.resources, binding);
+	}
+
+	static ShaderpackResourceDecl find(List<ShaderpackResourceDecl> resources, String binding) {
+		if (resources == null || binding == null) {
+			return null;
+		}
+		String normalized = baseBinding(binding);
+		String renderTarget = renderTargetFor(normalized);
+		for (ShaderpackResourceDecl resource : resources) {
+			if (resource == null || resource.name() == null) {
+				continue;
+			}
+			String name = resource.name().trim().toLowerCase(Locale.ROOT);
+			if (name.equals(normalized) || name.equals(renderTarget)) {
+				return resource;
+			}
+		}
+		return null;
+	}
+
+	static ImageFormat formatFor(ShaderpackResourceDecl resource) {
+		if (resource == null || resource.format() == null) {
+			return defaultFormat();
+		}
+		String requested = resource.format().trim().toLowerCase(Locale.ROOT);
+		List<ImageFormat> candidates = CANDIDATES.get(requested);
+		if (candidates == null) {
+			return defaultFormat();
+		}
+		for (ImageFormat candidate : candidates) {
+			if (supportsStorage(candidate.vkFormat())) {
+				if (!candidate.name().equals(requested) && WARNED_FALLBACKS.add(requested)) {
+					Sulkan.LOGGER.warn(
+						"Shaderpack resource format '{}' is not available as a storage image; using '{}'.",
+						requested,
+						candidate.name()
+					);
+				}
+				return candidate;
+			}
+		}
+		if (WARNED_FALLBACKS.add(requested)) {
+			Sulkan.LOGGER.warn("Shaderpack resource format '{}' is not available as a storage image; using the default format.", requested);
+		}
+		return defaultFormat();
+	}
+
+	static int estimatedBytesPerPixel(ShaderpackResourceDecl resource) {
+		List<ImageFormat> candidates = resource == null || resource.format() == null
+			? null
+			: CANDIDATES.get(resource.format().trim().toLowerCase(Locale.ROOT));
+		return candidates == null ? RGBA8.bytesPerPixel() : candidates.get(0).bytesPerPixel();
+	}
+
+	static int bytesPerPixel(int vkFormat) {
+		for (List<ImageFormat> candidates : CANDIDATES.values()) {
+			for (ImageFormat candidate : candidates) {
+				if (candidate.vkFormat() == vkFormat) {
+					return candidate.bytesPerPixel();
+				}
+			}
+		}
+		return RGBA8.bytesPerPixel();
+	}
+
+	static ShaderpackFrameGraph.Lifetime lifetimeOf(ShaderpackResourceDecl resource) {
+		if (resource == null || resource.lifetime() == null) {
+			return ShaderpackFrameGraph.Lifetime.INFERRED;
+		}
+		return switch (resource.lifetime().trim().toLowerCase(Locale.ROOT)) {
+			case "per-frame" -> ShaderpackFrameGraph.Lifetime.PER_FRAME;
+			case "persistent" -> ShaderpackFrameGraph.Lifetime.PERSISTENT;
+			case "temporal" -> ShaderpackFrameGraph.Lifetime.TEMPORAL;
+			default -> ShaderpackFrameGraph.Lifetime.INFERRED;
+		};
+	}
+
+	static boolean isHistoryBinding(String binding) {
+		return binding != null && binding.trim().toLowerCase(Locale.ROOT).endsWith(HISTORY_SUFFIX);
+	}
+
+	static String baseBinding(String binding) {
+		String normalized = binding == null ? "" : binding.trim().toLowerCase(Locale.ROOT);
+		return normalized.endsWith(HISTORY_SUFFIX)
+			? normalized.substring(0, normalized.length() - HISTORY_SUFFIX.length())
+			: normalized;
+	}
+
+	static String renderTargetFor(String imageBinding) {
+		String normalized = baseBinding(imageBinding);
+		if (normalized.matches("^colorimg([0-9]|1[0-5])$")) {
+			return "colortex" + normalized.substring("colorimg".length());
+		}
+		if (normalized.matches("^shadowcolorimg([0-9]|1[0-5])$")) {
+			return "shadowcolor" + normalized.substring("shadowcolorimg".length());
+		}
+		return normalized;
+	}
+
+	private static ImageFormat defaultFormat() {
+		int format = VulkanImage.DefaultFormat;
+		return format == RGBA8.vkFormat() || format <= 0 ? RGBA8 : new ImageFormat("default", format, "rgba8", 4);
+	}
+
+	private static boolean supportsStorage(int format) {
+		if (format == VK10.VK_FORMAT_R8G8B8A8_UNORM) {
+			return true;
+		}
+		Boolean cached = STORAGE_SUPPORT.get(format);
+		if (cached != null) {
+			return cached;
+		}
+		VkDevice device = Vulkan.getVkDevice();
+		if (device == null) {
+			return true;
+		}
+		boolean supported;
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			VkFormatProperties properties = VkFormatProperties.malloc(stack);
+			VK10.vkGetPhysicalDeviceFormatProperties(device.getPhysicalDevice(), format, properties);
+			supported = (properties.optimalTilingFeatures() & VK10.VK_FORMAT_FEATURE_STORAGE_IMAGE_BIT) != 0;
+		} catch (RuntimeException e) {
+			return false;
+		}
+		STORAGE_SUPPORT.put(format, supported);
+		return supported;
+	}
+
+	record ImageFormat(String name, int vkFormat, String qualifier, int bytesPerPixel) {
+	}
+}
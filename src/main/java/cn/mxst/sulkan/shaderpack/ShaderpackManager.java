@@ -1,20 +1,22 @@
 package cn.mxst.sulkan.shaderpack;
 
 import cn.mxst.sulkan.Sulkan;
+import cn.mxst.sulkan.compat.vulkanmod.SulkanVulkanPipelineReloader;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -22,8 +24,11 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -71,6 +76,7 @@ public final class ShaderpackManager {
 	private static final Set<String> SUPPORTED_EXTENSIONS = Set.of();
 	private static final Set<String> SUPPORTED_SPEC_VERSIONS = Set.of("1.0.0");
 	private static final Set<String> SUPPORTED_PING_PONG = Set.of("main", "alt");
+	private static final Set<String> SPECIALIZABLE_OPTION_TYPES = Set.of("bool", "int", "float", "enum");
 	private static final Set<String> SUPPORTED_ALPHA_FUNCS = Set.of(
 		"never",
 		"less",
@@ -177,9 +183,16 @@ public final class ShaderpackManager {
 	private static final Pattern PIPELINE_PARAM_PATTERN = Pattern.compile("\\$\\{([A-Za-z0-9_.-]+)}");
 	private static final Pattern SEGMENT_TYPED_PARAM_PATTERN = Pattern.compile("^([A-Za-z0-9_.-]+):([A-Za-z0-9_.-]+)$");
 	private static final String WORLD_KEY_NONE = "__none__";
-	private static ShaderpackMetadata activeShaderpack;
-	private static Path activePath;
-	private static ShaderpackConfig activeConfig;
+	private static final ExecutorService VALIDATION_EXECUTOR = ShaderpackExecutors.newDaemonPool(
+		"Sulkan Shaderpack Validation",
+		ShaderpackExecutors.BACKGROUND_THREADS
+	);
+	// Separate from validation so an apply never queues behind the list screen's per-pack checks.
+	private static final ExecutorService ACTIVATION_EXECUTOR = ShaderpackExecutors.newDaemonPool("Sulkan Shaderpack Activation", 1);
+	private static final Map<String, ShaderpackCandidate> DISCOVERED_CANDIDATES = new HashMap<>();
+	private static volatile ShaderpackRuntimeState runtimeState = ShaderpackRuntimeState.EMPTY;
+	private static volatile ActivationStatus activationStatus;
+	private static final AtomicLong activationSerial = new AtomicLong();
 	private static volatile String cachedWorldKey = WORLD_KEY_NONE;
 	private static volatile List<String> cachedWorldCandidates = List.of("any");
 	private static final LongAdder worldCandidateRequests = new LongAdder();
@@ -188,9 +201,6 @@ public final class ShaderpackManager {
 	private static final LongAdder pipelineLookupRequests = new LongAdder();
 	private static final LongAdder pipelineLookupCacheHits = new LongAdder();
 	private static final LongAdder pipelineLookupSegmentHits = new LongAdder();
-	private static volatile String pipelineLookupWorldKey = WORLD_KEY_NONE;
-	private static volatile ConcurrentMap<String, Optional<ShaderpackPipelineProgram>> pipelineLookupCache = new ConcurrentHashMap<>();
-	private static final Set<String> warnedProgramEnabledExpressions = ConcurrentHashMap.newKeySet();
 
 	private ShaderpackManager() {
 	}
@@ -199,7 +209,10 @@ public final class ShaderpackManager {
 		return MinecraftClient.getInstance().runDirectory.toPath().resolve("shaderpacks");
 	}
 
-	@SuppressWarnings("null")
+	public static Path cacheDir() {
+		return MinecraftClient.getInstance().runDirectory.toPath().resolve("sulkan_cache");
+	}
+
 	public static List<ShaderpackCandidate> discoverShaderpacks() {
 		Path dir = shaderpacksDir();
 		try {
@@ -208,28 +221,195 @@ public final class ShaderpackManager {
 			Sulkan.LOGGER.error("Failed to create shaderpacks directory.", e);
 			return List.of();
 		}
-		try (Stream<Path> stream = Files.list(dir)) {
-			return stream
-				.filter(path -> Files.isDirectory(path) || isZip(path))
-				.sorted(Comparator.comparing(path -> path.getFileName().toString().toLowerCase(Locale.ROOT)))
-				.map(path -> new ShaderpackCandidate(path.getFileName().toString(), path, loadShaderpack(path)))
-				.collect(Collectors.toList());
+		ShaderpackDirectoryWatcher.start(dir);
+		synchronized (DISCOVERED_CANDIDATES) {
+			Set<String> changed = ShaderpackDirectoryWatcher.drainChanges();
+			if (changed == null) {
+				try (Stream<Path> stream = Files.list(dir)) {
+					List<Path> packs = stream.filter(ShaderpackFileSystem::isSupported).collect(Collectors.toList());
+					DISCOVERED_CANDIDATES.clear();
+					for (Path path : packs) {
+						DISCOVERED_CANDIDATES.put(path.getFileName().toString(), discoverCandidate(path));
+					}
+				} catch (IOException e) {
+					Sulkan.LOGGER.error("Failed to list shaderpacks directory.", e);
+					return List.of();
+				}
+				ShaderpackDiscoveryIndex.retain(DISCOVERED_CANDIDATES.keySet());
+			} else {
+				for (String id : changed) {
+					Path path = dir.resolve(id);
+					if (ShaderpackFileSystem.isSupported(path)) {
+						DISCOVERED_CANDIDATES.put(id, discoverCandidate(path));
+					} else {
+						DISCOVERED_CANDIDATES.remove(id);
+					}
+				}
+			}
+			List<ShaderpackCandidate> candidates = new ArrayList<>(DISCOVERED_CANDIDATES.values());
+			candidates.sort(Comparator.comparing(candidate -> candidate.id().toLowerCase(Locale.ROOT)));
+			return candidates;
+		}
+	}
+
+	private static ShaderpackCandidate discoverCandidate(Path path) {
+		ShaderpackCandidate indexed = ShaderpackDiscoveryIndex.lookup(path, computePackFingerprint(path));
+		return indexed != null ? indexed : probeShaderpack(path);
+	}
+
+	public static ShaderpackCandidate probeShaderpack(Path path) {
+		String id = path.getFileName().toString();
+		String text;
+		try {
+			text = ShaderpackFileSystem.readText(path, METADATA_FILENAME);
 		} catch (IOException e) {
-			Sulkan.LOGGER.error("Failed to list shaderpacks directory.", e);
-			return List.of();
+			return new ShaderpackCandidate(id, path, null, summarize(ShaderpackLoadResult.error("Failed to read " + METADATA_FILENAME + " from " + id)));
+		}
+		if (text == null) {
+			return new ShaderpackCandidate(id, path, null, summarize(ShaderpackLoadResult.error("Missing " + METADATA_FILENAME + " in " + id)));
+		}
+		TomlParseResult result = Toml.parse(text);
+		if (result.hasErrors()) {
+			List<String> errors = new ArrayList<>();
+			result.errors().forEach(error -> errors.add(error.toString()));
+			return new ShaderpackCandidate(id, path, null, new ShaderpackSummary(errors, List.of(), 0, false));
+		}
+		TomlTable shaderpackTable = result.getTable("shaderpack");
+		if (shaderpackTable == null) {
+			return new ShaderpackCandidate(id, path, null, summarize(ShaderpackLoadResult.error("Missing [shaderpack] table in " + METADATA_FILENAME)));
+		}
+		List<String> ignored = new ArrayList<>();
+		ShaderpackHeader header = new ShaderpackHeader(
+			readString(shaderpackTable, "name", "shaderpack", ignored),
+			readString(shaderpackTable, "version", "shaderpack", ignored),
+			readString(shaderpackTable, "spec_version", "shaderpack", ignored)
+		);
+		return new ShaderpackCandidate(id, path, header, null);
+	}
+
+	public static CompletableFuture<ShaderpackCandidate> validateShaderpackAsync(ShaderpackCandidate candidate) {
+		try {
+			return CompletableFuture.supplyAsync(() -> validateShaderpack(candidate), VALIDATION_EXECUTOR);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.completedFuture(validateShaderpack(candidate));
+		}
+	}
+
+	private static ShaderpackCandidate validateShaderpack(ShaderpackCandidate candidate) {
+		try {
+			String fingerprint = computePackFingerprint(candidate.path());
+			return recordValidation(candidate, fingerprint, loadShaderpack(candidate.path()));
+		} catch (RuntimeException e) {
+			Sulkan.LOGGER.error("Failed to validate shaderpack {}.", candidate.id(), e);
+			List<String> errors = List.of("Failed to validate " + candidate.id() + ": " + e.getMessage());
+			return candidate.withSummary(new ShaderpackSummary(errors, List.of(), 0, false));
+		}
+	}
+
+	private static ShaderpackCandidate recordValidation(ShaderpackCandidate candidate, String fingerprint, ShaderpackLoadResult result) {
+		ShaderpackCandidate validated = candidate.withSummary(summarize(result));
+		if (result.isValid() && result.metadata() != null) {
+			ShaderpackMetadata metadata = result.metadata();
+			validated = new ShaderpackCandidate(
+				candidate.id(),
+				candidate.path(),
+				new ShaderpackHeader(metadata.name, metadata.version, metadata.specVersion == null ? null : metadata.specVersion.toString()),
+				validated.summary()
+			);
+		}
+		ShaderpackDiscoveryIndex.record(validated, fingerprint);
+		synchronized (DISCOVERED_CANDIDATES) {
+			ShaderpackCandidate known = DISCOVERED_CANDIDATES.get(validated.id());
+			if (known != null && known.path().equals(validated.path())) {
+				DISCOVERED_CANDIDATES.put(validated.id(), validated);
+			}
+		}
+		return validated;
+	}
+
+	private static ShaderpackSummary summarize(ShaderpackLoadResult result) {
+		ShaderpackMetadata metadata = result.metadata();
+		int optionCount = 0;
+		boolean configOptions = false;
+		if (metadata != null) {
+			Map<String, ShaderpackOptionDecl> flat = new LinkedHashMap<>();
+			collectFlatOptions(metadata.options, flat);
+			optionCount = flat.size();
+			configOptions = metadata.features.sulkanConfigOptions();
+		}
+		return new ShaderpackSummary(result.errors(), result.warnings(), optionCount, configOptions);
+	}
+
+	static String computePackFingerprint(Path path) {
+		return computePackFingerprint(path, null);
+	}
+
+	private static String computePackFingerprint(Path path, ShaderpackFileSystem fileSystem) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(path.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+			if (Files.isDirectory(path)) {
+				try (Stream<Path> stream = Files.walk(path)) {
+					List<Path> files = stream.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+					for (Path file : files) {
+						String relative = path.relativize(file).toString().replace('\\', '/');
+						digest.update(relative.getBytes(StandardCharsets.UTF_8));
+						updateFileStamp(digest, file);
+					}
+				}
+			} else if (ShaderpackFileSystem.isZip(path)) {
+				if (fileSystem != null) {
+					fileSystem.forEachArchiveEntry(entry -> updateZipEntry(digest, entry));
+				} else {
+					try (ZipFile zipFile = new ZipFile(path.toFile(), StandardCharsets.UTF_8)) {
+						zipFile.stream().forEach(entry -> updateZipEntry(digest, entry));
+					}
+				}
+			} else {
+				updateFileStamp(digest, path);
+			}
+			return HexFormat.of().formatHex(digest.digest(), 0, 16);
+		} catch (IOException | NoSuchAlgorithmException e) {
+			Sulkan.LOGGER.warn("Failed to fingerprint shaderpack {}: {}", path.getFileName(), e.getMessage());
+			return null;
+		}
+	}
+
+	private static void updateZipEntry(MessageDigest digest, ZipEntry entry) {
+		digest.update(entry.getName().getBytes(StandardCharsets.UTF_8));
+		updateLong(digest, entry.getCrc());
+		updateLong(digest, entry.getSize());
+	}
+
+	private static void updateFileStamp(MessageDigest digest, Path file) throws IOException {
+		updateLong(digest, Files.size(file));
+		updateLong(digest, Files.getLastModifiedTime(file).toMillis());
+	}
+
+	private static void updateLong(MessageDigest digest, long value) {
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			digest.update((byte) (value >>> shift));
 		}
 	}
 
 	public static ShaderpackMetadata getActiveShaderpack() {
-		return activeShaderpack;
+		return currentState().metadata();
 	}
 
 	public static Path getActivePath() {
-		return activePath;
+		return currentState().path();
 	}
 
 	public static ShaderpackConfig getActiveConfig() {
-		return activeConfig;
+		return currentState().config();
+	}
+
+	public static ActivationStatus getActivationStatus() {
+		return activationStatus;
+	}
+
+	static ShaderpackRuntimeState currentState() {
+		return runtimeState;
 	}
 
 	public static CacheStats getWorldCandidateCacheStats() {
@@ -249,7 +429,17 @@ public final class ShaderpackManager {
 	}
 
 	public static boolean isRuntimeHotReloadEnabled() {
-		ShaderpackMetadata metadata = activeShaderpack;
+		return isRuntimeHotReloadEnabled(currentState().metadata());
+	}
+
+	static boolean isIdLookupBufferEnabled(ShaderpackMetadata metadata) {
+		if (metadata == null || metadata.globalSettings == null) {
+			return false;
+		}
+		return readGlobalBooleanSwitch(metadata.globalSettings, false, "id_lookup_buffer", "ids.lookup_buffer");
+	}
+
+	static boolean isRuntimeHotReloadEnabled(ShaderpackMetadata metadata) {
 		if (metadata == null || metadata.globalSettings == null) {
 			return true;
 		}
@@ -263,21 +453,35 @@ public final class ShaderpackManager {
 		);
 	}
 
-	public static void refreshActiveConfig() {
-		ShaderpackShaderApplier.invalidateCaches();
-		ShaderpackComputeDispatcher.invalidateCaches();
-		ShaderpackTextureBinder.invalidateCaches();
-		invalidatePipelineLookupCache();
-		warnedProgramEnabledExpressions.clear();
-		if (activePath == null || activeShaderpack == null) {
-			activeConfig = null;
-			return;
-		}
-		activeConfig = ShaderpackConfig.loadOrCreate(activePath, activeShaderpack.options);
+	public static ShaderpackOptionDependencies.Impact refreshActiveConfig() {
+		ShaderpackRuntimeState state = currentState();
+		if (!state.isActive()) {
+			invalidateRuntimeCaches();
+			return ShaderpackOptionDependencies.Impact.NONE;
+		}
+		ShaderpackConfig config = ShaderpackConfig.loadOrCreate(state.path(), state.metadata().options);
+		ShaderpackOptionDependencies.Impact impact = state.optionDependencies().impactOf(config.changedPaths(state.config()));
+		runtimeState = state.withConfig(config);
+		if (impact.options().isEmpty()) {
+			return impact;
+		}
+		ShaderpackShaderApplier.clearExportedShaders();
+		if (impact.segments()) {
+			ShaderpackComputeDispatcher.requestReplan();
+		}
+		Sulkan.LOGGER.info(
+			"Shaderpack options changed: {} option(s), {} shader target(s), {} specialized target(s), segment conditions affected: {}.",
+			impact.options().size(),
+			impact.targets().size(),
+			impact.specializedTargets().size(),
+			impact.segments()
+		);
+		return impact;
 	}
 
 	public static ShaderpackPipelineProgram resolveActivePipelineProgram(String requestPath) {
-		if (activeShaderpack == null || requestPath == null || requestPath.isBlank()) {
+		ShaderpackRuntimeState state = currentState();
+		if (!state.isActive() || requestPath == null || requestPath.isBlank()) {
 			return null;
 		}
 		String normalizedRequest = ShaderpackPipelineProgram.normalizePath(requestPath);
@@ -287,40 +491,37 @@ public final class ShaderpackManager {
 		List<String> worldCandidates = resolveWorldCandidates();
 
 		pipelineLookupRequests.increment();
-		String worldLookupKey = String.join(">", worldCandidates);
-		if (!worldLookupKey.equals(pipelineLookupWorldKey)) {
-			pipelineLookupWorldKey = worldLookupKey;
-			pipelineLookupCache.clear();
-		}
+		ConcurrentMap<String, Optional<ShaderpackPipelineProgram>> lookupCache = state.pipelineLookupCache(String.join(">", worldCandidates));
 
-		Optional<ShaderpackPipelineProgram> cached = pipelineLookupCache.get(normalizedRequest);
+		Optional<ShaderpackPipelineProgram> cached = lookupCache.get(normalizedRequest);
 		if (cached != null) {
 			pipelineLookupCacheHits.increment();
 			return cached.orElse(null);
 		}
 
-		ShaderpackPipelineProgram resolved = resolvePipelineProgramBySegments(worldCandidates, normalizedRequest);
+		ShaderpackPipelineProgram resolved = resolvePipelineProgramBySegments(state, worldCandidates, normalizedRequest);
 		if (resolved != null) {
 			pipelineLookupSegmentHits.increment();
-			cachePipelineLookup(normalizedRequest, resolved);
+			cachePipelineLookup(lookupCache, normalizedRequest, resolved);
 			return resolved;
 		}
 
-		cachePipelineLookup(normalizedRequest, null);
+		cachePipelineLookup(lookupCache, normalizedRequest, null);
 		return null;
 	}
 
 	public static List<ShaderpackPipelineProgram> resolveActivePipelinePrograms() {
-		if (activeShaderpack == null) {
+		ShaderpackRuntimeState state = currentState();
+		if (!state.isActive()) {
 			return List.of();
 		}
 		List<String> worldCandidates = resolveWorldCandidates();
 		List<ShaderpackPipelineProgram> resolved = new ArrayList<>();
 		for (String stage : PIPELINE_STAGE_ORDER) {
-			if (!isStageEnabled(activeShaderpack.stages, stage)) {
+			if (!isStageEnabled(state.metadata().stages, stage)) {
 				continue;
 			}
-			List<ShaderpackPipelineProgram> segments = resolveStagePrograms(worldCandidates, stage);
+			List<ShaderpackPipelineProgram> segments = resolveStagePrograms(state, worldCandidates, stage);
 			if (segments == null || segments.isEmpty()) {
 				continue;
 			}
@@ -330,23 +531,25 @@ public final class ShaderpackManager {
 	}
 
 	private static ShaderpackPipelineProgram resolvePipelineProgramBySegments(
+		ShaderpackRuntimeState state,
 		List<String> worldCandidates,
 		String requestPath
 	) {
+		ShaderpackMetadata metadata = state.metadata();
 		for (String worldId : worldCandidates) {
-			Map<String, List<ShaderpackPipelineProgram>> byStage = activeShaderpack.pipelinePrograms.get(worldId);
+			Map<String, List<ShaderpackPipelineProgram>> byStage = metadata.pipelinePrograms.get(worldId);
 			if (byStage == null) {
 				continue;
 			}
 			for (String stage : PIPELINE_STAGE_ORDER) {
-				if (!isStageEnabled(activeShaderpack.stages, stage)) {
+				if (!isStageEnabled(metadata.stages, stage)) {
 					continue;
 				}
 				List<ShaderpackPipelineProgram> segments = byStage.get(stage);
 				if (segments == null || segments.isEmpty()) {
 					continue;
 				}
-				List<ShaderpackPipelineProgram> enabledSegments = filterEnabledPrograms(segments);
+				List<ShaderpackPipelineProgram> enabledSegments = filterEnabledPrograms(segments, state.enabledSnapshot());
 				if (enabledSegments.isEmpty()) {
 					continue;
 				}
@@ -365,12 +568,16 @@ public final class ShaderpackManager {
 		return null;
 	}
 
-	private static List<ShaderpackPipelineProgram> resolveStagePrograms(List<String> worldCandidates, String stage) {
-		if (activeShaderpack == null || worldCandidates == null || stage == null || stage.isBlank()) {
+	private static List<ShaderpackPipelineProgram> resolveStagePrograms(
+		ShaderpackRuntimeState state,
+		List<String> worldCandidates,
+		String stage
+	) {
+		if (!state.isActive() || worldCandidates == null || stage == null || stage.isBlank()) {
 			return null;
 		}
 		for (String worldId : worldCandidates) {
-			Map<String, List<ShaderpackPipelineProgram>> byStage = activeShaderpack.pipelinePrograms.get(worldId);
+			Map<String, List<ShaderpackPipelineProgram>> byStage = state.metadata().pipelinePrograms.get(worldId);
 			if (byStage == null) {
 				continue;
 			}
@@ -378,7 +585,7 @@ public final class ShaderpackManager {
 			if (segments == null || segments.isEmpty()) {
 				continue;
 			}
-			List<ShaderpackPipelineProgram> enabledSegments = filterEnabledPrograms(segments);
+			List<ShaderpackPipelineProgram> enabledSegments = filterEnabledPrograms(segments, state.enabledSnapshot());
 			if (enabledSegments.isEmpty()) {
 				continue;
 			}
@@ -402,75 +609,61 @@ public final class ShaderpackManager {
 		};
 	}
 
-	private static List<ShaderpackPipelineProgram> filterEnabledPrograms(List<ShaderpackPipelineProgram> programs) {
+	private static List<ShaderpackPipelineProgram> filterEnabledPrograms(
+		List<ShaderpackPipelineProgram> programs,
+		ShaderpackEnabledExpression.ConfigSnapshot snapshot
+	) {
 		if (programs == null || programs.isEmpty()) {
 			return List.of();
 		}
-		List<ShaderpackPipelineProgram> enabled = new ArrayList<>();
-		for (ShaderpackPipelineProgram program : programs) {
-			if (program == null) {
-				continue;
+		int firstDisabled = -1;
+		for (int i = 0; i < programs.size(); i++) {
+			if (!isProgramEnabled(programs.get(i), snapshot)) {
+				firstDisabled = i;
+				break;
 			}
-			if (isProgramEnabled(program)) {
+		}
+		if (firstDisabled < 0) {
+			return programs;
+		}
+		List<ShaderpackPipelineProgram> enabled = new ArrayList<>(programs.subList(0, firstDisabled));
+		for (int i = firstDisabled + 1; i < programs.size(); i++) {
+			ShaderpackPipelineProgram program = programs.get(i);
+			if (isProgramEnabled(program, snapshot)) {
 				enabled.add(program);
 			}
 		}
 		return enabled.isEmpty() ? List.of() : List.copyOf(enabled);
 	}
 
-	private static boolean isProgramEnabled(ShaderpackPipelineProgram program) {
+	private static boolean isProgramEnabled(ShaderpackPipelineProgram program, ShaderpackEnabledExpression.ConfigSnapshot snapshot) {
 		if (program == null) {
 			return false;
 		}
-		String expression = program.enabledExpression();
-		if (expression == null || expression.isBlank()) {
-			return true;
-		}
-		ProgramEnabledExpression.Parser parser = new ProgramEnabledExpression.Parser(expression, buildEnabledVariableMap(program));
-		try {
-			return parser.parse();
-		} catch (IllegalArgumentException e) {
-			String key = program.stage() + ":" + program.segmentName() + "#" + program.index() + "|" + expression;
-			if (warnedProgramEnabledExpressions.add(key)) {
-				Sulkan.LOGGER.warn(
-					"Invalid enabled expression '{}' for segment {}:{}#{} ({})",
-					expression,
-					program.stage(),
-					program.segmentName(),
-					program.index(),
-					e.getMessage()
-				);
-			}
-			return false;
-		}
+		ShaderpackEnabledExpression condition = program.enabledCondition();
+		return condition == null || condition.evaluate(snapshot);
 	}
 
-	private static Map<String, Object> buildEnabledVariableMap(ShaderpackPipelineProgram program) {
+	private static Map<String, Object> buildEnabledLocalVariables(
+		String worldId,
+		String stage,
+		int index,
+		Map<String, String> params
+	) {
 		Map<String, Object> variables = new HashMap<>();
 		variables.put("true", Boolean.TRUE);
 		variables.put("false", Boolean.FALSE);
-		variables.put("segment_index", program.index());
-		variables.put("stage", program.stage());
-		variables.put("world", program.worldId());
-		if (program.params() != null) {
-			for (Map.Entry<String, String> entry : program.params().entrySet()) {
+		variables.put("segment_index", index);
+		variables.put("stage", stage);
+		variables.put("world", worldId);
+		if (params != null) {
+			for (Map.Entry<String, String> entry : params.entrySet()) {
 				if (entry.getKey() == null || entry.getKey().isBlank()) {
 					continue;
 				}
 				putVariableAliases(variables, entry.getKey(), entry.getValue());
 			}
 		}
-
-		ShaderpackConfig config = activeConfig;
-		if (config != null) {
-			for (Map.Entry<String, Object> entry : config.values().entrySet()) {
-				String key = entry.getKey();
-				if (key == null || key.isBlank()) {
-					continue;
-				}
-				putVariableAliases(variables, key, entry.getValue());
-			}
-		}
 		return variables;
 	}
 
@@ -502,46 +695,44 @@ public final class ShaderpackManager {
 		return fallback;
 	}
 
-	private static void cachePipelineLookup(String requestPath, ShaderpackPipelineProgram program) {
-		if (pipelineLookupCache.size() >= PIPELINE_LOOKUP_CACHE_LIMIT) {
-			pipelineLookupCache.clear();
+	private static void cachePipelineLookup(
+		ConcurrentMap<String, Optional<ShaderpackPipelineProgram>> lookupCache,
+		String requestPath,
+		ShaderpackPipelineProgram program
+	) {
+		if (lookupCache.size() >= PIPELINE_LOOKUP_CACHE_LIMIT) {
+			lookupCache.clear();
 		}
-		pipelineLookupCache.putIfAbsent(requestPath, Optional.ofNullable(program));
+		lookupCache.putIfAbsent(requestPath, Optional.ofNullable(program));
 	}
 
 	public static ShaderpackLoadResult applyShaderpack(Path path) {
-		ShaderpackShaderApplier.invalidateCaches();
-		ShaderpackComputeDispatcher.invalidateCaches();
-		ShaderpackTextureBinder.invalidateCaches();
-		invalidatePipelineLookupCache();
-		warnedProgramEnabledExpressions.clear();
-		ShaderpackLoadResult result = loadShaderpack(path);
-		if (result.isValid()) {
-			activeShaderpack = result.metadata();
-			activePath = path;
-			activeConfig = ShaderpackConfig.loadOrCreate(path, activeShaderpack.options);
-		} else {
-			activeShaderpack = null;
-			activePath = null;
-			activeConfig = null;
-		}
-		return result;
+		return activate(path, activationSerial.incrementAndGet(), false);
 	}
 
-	public static void clearActiveShaderpack() {
-		ShaderpackShaderApplier.invalidateCaches();
-		ShaderpackComputeDispatcher.invalidateCaches();
-		ShaderpackTextureBinder.invalidateCaches();
-		invalidatePipelineLookupCache();
-		warnedProgramEnabledExpressions.clear();
-		activeShaderpack = null;
-		activePath = null;
-		activeConfig = null;
+	public static CompletableFuture<ShaderpackLoadResult> applyShaderpackAsync(Path path) {
+		return activateAsync(path, false);
 	}
 
-	private static void invalidatePipelineLookupCache() {
-		pipelineLookupWorldKey = WORLD_KEY_NONE;
-		pipelineLookupCache = new ConcurrentHashMap<>();
+	// Hot reloads keep the running pack when the edited one fails validation.
+	static CompletableFuture<ShaderpackLoadResult> reloadShaderpackAsync(Path path) {
+		return activateAsync(path, true);
+	}
+
+	private static CompletableFuture<ShaderpackLoadResult> activateAsync(Path path, boolean keepCurrentOnFailure) {
+		long serial = activationSerial.incrementAndGet();
+		activationStatus = new ActivationStatus(path.getFileName().toString(), ActivationPhase.QUEUED);
+		try {
+			return CompletableFuture.supplyAsync(() -> activate(path, serial, keepCurrentOnFailure), ACTIVATION_EXECUTOR);
+		} catch (RejectedExecutionException e) {
+			return CompletableFuture.completedFuture(activate(path, serial, keepCurrentOnFailure));
+		}
+	}
+
+	public static void clearActiveShaderpack() {
+		activationSerial.incrementAndGet();
+		activationStatus = null;
+		publish(ShaderpackRuntimeState.EMPTY, null, null);
 	}
 
 	public static ShaderpackLoadResult applySelectedShaderpack(String selectedShaderpack) {
@@ -553,48 +744,166 @@ public final class ShaderpackManager {
 		return applyShaderpack(path);
 	}
 
-	public static ShaderpackLoadResult loadShaderpack(Path path) {
-		if (Files.isDirectory(path)) {
-			return loadFromDirectory(path);
+	public static CompletableFuture<ShaderpackLoadResult> applySelectedShaderpackAsync(String selectedShaderpack) {
+		if (selectedShaderpack == null || selectedShaderpack.isBlank()) {
+			clearActiveShaderpack();
+			return CompletableFuture.completedFuture(ShaderpackLoadResult.error("No shaderpack selected."));
 		}
-		if (isZip(path)) {
-			return loadFromZip(path);
+		return applyShaderpackAsync(shaderpacksDir().resolve(selectedShaderpack));
+	}
+
+	public static CompletableFuture<ShaderpackLoadResult> beginStartupActivation(String selectedShaderpack) {
+		// Shaders requested before activation completes are served unmodified; rebuild them once the pack is published.
+		return applySelectedShaderpackAsync(selectedShaderpack).whenComplete((result, throwable) -> {
+			MinecraftClient client = MinecraftClient.getInstance();
+			if (client != null && result != null && result.isValid()) {
+				client.execute(() -> SulkanVulkanPipelineReloader.reloadShaderpackPipelines(client));
+			}
+		});
+	}
+
+	private static ShaderpackLoadResult activate(Path path, long serial, boolean keepCurrentOnFailure) {
+		String id = path.getFileName().toString();
+		ShaderpackLoadResult result;
+		ShaderpackFileSystem fileSystem = null;
+		ShaderpackRuntimeState state = ShaderpackRuntimeState.EMPTY;
+		ShaderpackShaderApplier.ApplierCache prepared = null;
+		try {
+			updateActivationStatus(serial, id, ActivationPhase.INDEXING);
+			fileSystem = openFileSystem(path);
+			String fingerprint = computePackFingerprint(path, fileSystem);
+			updateActivationStatus(serial, id, ActivationPhase.PARSING);
+			result = fileSystem == null ? loadShaderpack(path) : loadShaderpack(fileSystem);
+			recordValidation(new ShaderpackCandidate(id, path, null, null), fingerprint, result);
+			if (result.isValid()) {
+				updateActivationStatus(serial, id, ActivationPhase.CONFIG);
+				ShaderpackMetadata metadata = result.metadata();
+				state = new ShaderpackRuntimeState(metadata, path, ShaderpackConfig.loadOrCreate(path, metadata.options), fingerprint);
+				prepared = ShaderpackShaderApplier.prepareCache(metadata);
+			}
+		} catch (RuntimeException e) {
+			Sulkan.LOGGER.error("Failed to activate shaderpack {}.", id, e);
+			result = ShaderpackLoadResult.error("Failed to activate " + id + ": " + e.getMessage());
+			state = ShaderpackRuntimeState.EMPTY;
+		}
+		synchronized (ShaderpackManager.class) {
+			if (serial != activationSerial.get()) {
+				closeQuietly(fileSystem);
+				return result;
+			}
+			activationStatus = null;
+			if (!state.isActive() && keepCurrentOnFailure) {
+				closeQuietly(fileSystem);
+				return result;
+			}
+			publish(state, state.isActive() ? fileSystem : null, prepared);
+			if (!state.isActive()) {
+				closeQuietly(fileSystem);
+			}
 		}
-		return ShaderpackLoadResult.error("Unsupported shaderpack type: " + path.getFileName());
+		return result;
 	}
 
-	private static boolean isZip(Path path) {
-		String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
-		return Files.isRegularFile(path) && name.endsWith(".zip");
+	private static synchronized void publish(
+		ShaderpackRuntimeState state,
+		ShaderpackFileSystem fileSystem,
+		ShaderpackShaderApplier.ApplierCache prepared
+	) {
+		runtimeState = state;
+		ShaderpackShaderApplier.installPreparedCache(prepared);
+		if (state.isActive()) {
+			ShaderpackFileSystem.share(fileSystem);
+			ShaderpackPipelineCache.activate(state.path(), state.fingerprint());
+		} else {
+			ShaderpackFileSystem.closeShared();
+			ShaderpackPipelineCache.deactivate();
+		}
+		ShaderpackHotReloader.sync(state);
+		invalidateRuntimeCaches();
 	}
 
-	private static ShaderpackLoadResult loadFromDirectory(Path path) {
-		Path metadataPath = path.resolve(METADATA_FILENAME);
-		if (!Files.exists(metadataPath)) {
-			return ShaderpackLoadResult.error("Missing " + METADATA_FILENAME + " in " + path.getFileName());
+	static synchronized boolean publishHotReload(
+		ShaderpackRuntimeState expected,
+		ShaderpackRuntimeState state,
+		ShaderpackFileSystem fileSystem
+	) {
+		if (runtimeState != expected) {
+			return false;
+		}
+		runtimeState = state;
+		if (fileSystem != null) {
+			ShaderpackFileSystem.share(fileSystem);
 		}
-		try (Reader reader = Files.newBufferedReader(metadataPath, StandardCharsets.UTF_8)) {
-			return parseAndValidate(reader, metadataPath.toString(), path);
+		ShaderpackShaderApplier.rebaseCache(expected.metadata(), state.metadata());
+		return true;
+	}
+
+	private static void invalidateRuntimeCaches() {
+		ShaderpackShaderApplier.invalidateCaches();
+		Runnable gpuCaches = () -> {
+			ShaderpackComputeDispatcher.invalidateCaches();
+			ShaderpackTextureBinder.invalidateCaches();
+		};
+		MinecraftClient client = MinecraftClient.getInstance();
+		if (client == null || client.isOnThread()) {
+			gpuCaches.run();
+		} else {
+			client.execute(gpuCaches);
+		}
+	}
+
+	private static void updateActivationStatus(long serial, String packId, ActivationPhase phase) {
+		if (serial == activationSerial.get()) {
+			activationStatus = new ActivationStatus(packId, phase);
+		}
+	}
+
+	public static ShaderpackLoadResult loadShaderpack(Path path) {
+		if (!ShaderpackFileSystem.isSupported(path)) {
+			return ShaderpackLoadResult.error("Unsupported shaderpack type: " + path.getFileName());
+		}
+		try (ShaderpackFileSystem fileSystem = ShaderpackFileSystem.open(path)) {
+			return loadShaderpack(fileSystem);
 		} catch (IOException e) {
 			return ShaderpackLoadResult.error("Failed to read " + METADATA_FILENAME + " from " + path.getFileName());
 		}
 	}
 
-	private static ShaderpackLoadResult loadFromZip(Path path) {
-		try (ZipFile zipFile = new ZipFile(path.toFile(), StandardCharsets.UTF_8)) {
-			ZipEntry entry = zipFile.getEntry(METADATA_FILENAME);
-			if (entry == null) {
-				return ShaderpackLoadResult.error("Missing " + METADATA_FILENAME + " in " + path.getFileName());
-			}
-			try (Reader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8))) {
-				return parseAndValidate(reader, path.toString() + "!/" + METADATA_FILENAME, path);
-			}
+	private static ShaderpackLoadResult loadShaderpack(ShaderpackFileSystem fileSystem) {
+		Path path = fileSystem.root();
+		if (!fileSystem.exists(METADATA_FILENAME)) {
+			return ShaderpackLoadResult.error("Missing " + METADATA_FILENAME + " in " + path.getFileName());
+		}
+		try (Reader reader = fileSystem.openReader(METADATA_FILENAME)) {
+			return parseAndValidate(reader, fileSystem.describe(METADATA_FILENAME), fileSystem);
 		} catch (IOException e) {
 			return ShaderpackLoadResult.error("Failed to read " + METADATA_FILENAME + " from " + path.getFileName());
 		}
 	}
 
-	private static ShaderpackLoadResult parseAndValidate(Reader reader, String source, Path sourcePath) {
+	private static ShaderpackFileSystem openFileSystem(Path path) {
+		if (!ShaderpackFileSystem.isSupported(path)) {
+			return null;
+		}
+		try {
+			return ShaderpackFileSystem.open(path);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static void closeQuietly(ShaderpackFileSystem fileSystem) {
+		if (fileSystem == null) {
+			return;
+		}
+		try {
+			fileSystem.close();
+		} catch (IOException ignored) {
+		}
+	}
+
+	private static ShaderpackLoadResult parseAndValidate(Reader reader, String source, ShaderpackFileSystem fileSystem) {
+		Path sourcePath = fileSystem.root();
 		List<String> errors = new ArrayList<>();
 		List<String> warnings = new ArrayList<>();
 		TomlParseResult result;
@@ -633,7 +942,7 @@ public final class ShaderpackManager {
 		ShaderpackStages stages = parseStages(result.getTable("stages"), errors);
 		List<ShaderpackResourceDecl> resources = parseResources(result.getArray("resources"), errors);
 		ShaderpackFeatures features = parseFeatures(result.getTable("features"), errors);
-		Map<String, String> translations = loadLangMap(sourcePath, warnings);
+		Map<String, String> translations = loadLangMap(fileSystem, warnings);
 		List<ShaderpackOptionDecl> declaredOptions = parseOptions(
 			result.getTable("options"),
 			features.sulkanConfigOptions() && !features.autoExtractOptions(),
@@ -642,18 +951,24 @@ public final class ShaderpackManager {
 			warnings
 		);
 		List<ShaderpackOptionDecl> extractedOptions = features.autoExtractOptions()
-			? extractOptionsFromShaders(sourcePath, translations, errors, warnings)
+			? extractOptionsFromShaders(fileSystem, translations, errors, warnings)
 			: List.of();
 		List<ShaderpackOptionDecl> options = mergeOptions(declaredOptions, extractedOptions, warnings);
 		if (features.sulkanConfigOptions() && options.isEmpty()) {
 			errors.add("No shader options available (define [options] or enable auto extraction directives).");
 		}
+		long liveOptions = ShaderpackShaderApplier.flattenOptions(options).stream().filter(ShaderpackOptionDecl::live).count();
+		if (liveOptions > ShaderpackRuntimeUniforms.MAX_LIVE_OPTIONS) {
+			errors.add("Too many live options: " + liveOptions + " (max " + ShaderpackRuntimeUniforms.MAX_LIVE_OPTIONS + ").");
+		}
 		ShaderpackExtensions extensions = parseExtensions(result.getTable("extensions"), errors);
 		ShaderpackGlobalSettings globalSettings = parseGlobalSettings(result, errors);
 		ShaderpackTextureBindings textureBindings = parseTextureBindings(result.getTable("textures"), errors, warnings);
 		ShaderpackUiLayout uiLayout = parseUiLayout(result.getTable("ui"), errors, warnings);
 		ShaderpackIdMappings idMappings = parseIdMappings(result, errors, warnings);
-		Map<String, Map<String, List<ShaderpackPipelineProgram>>> pipelinePrograms = parsePipelinePrograms(sourcePath, stages, errors, warnings);
+		Map<String, Map<String, List<ShaderpackPipelineProgram>>> pipelinePrograms = parsePipelinePrograms(fileSystem, stages, errors, warnings);
+		validateHistoryBindings(resources, pipelinePrograms, errors);
+		validateVramBudget(resources, pipelinePrograms, textureBindings, fileSystem, errors, warnings);
 
 		if (extensions != null && !extensions.required().isEmpty()) {
 			for (String ext : extensions.required()) {
@@ -687,18 +1002,69 @@ public final class ShaderpackManager {
 		return new ShaderpackLoadResult(metadata, errors, warnings);
 	}
 
+	static ShaderpackLoadResult reloadChangedFiles(
+		ShaderpackMetadata metadata,
+		ShaderpackFileSystem fileSystem,
+		Set<String> stageFiles,
+		boolean langChanged
+	) {
+		List<String> errors = new ArrayList<>();
+		List<String> warnings = new ArrayList<>();
+		ShaderpackMetadata reloaded = metadata;
+		if (!stageFiles.isEmpty()) {
+			Map<String, Map<String, List<ShaderpackPipelineProgram>>> byWorld = new LinkedHashMap<>();
+			for (Map.Entry<String, Map<String, List<ShaderpackPipelineProgram>>> worldEntry : metadata.pipelinePrograms.entrySet()) {
+				byWorld.put(worldEntry.getKey(), new LinkedHashMap<>(worldEntry.getValue()));
+			}
+			for (String name : stageFiles) {
+				String[] segments = name.split("/");
+				if (segments.length != 3 || !segments[0].equals(PIPELINES_DIRECTORY) || !segments[2].endsWith(".toml")) {
+					continue;
+				}
+				String worldId = segments[1];
+				String stage = segments[2].substring(0, segments[2].length() - ".toml".length());
+				if (!PIPELINE_STAGE_ORDER.contains(stage)) {
+					continue;
+				}
+				Map<String, List<ShaderpackPipelineProgram>> byStage = byWorld.computeIfAbsent(worldId, ignored -> new LinkedHashMap<>());
+				byStage.remove(stage);
+				if (fileSystem.exists(name)) {
+					try (Reader reader = fileSystem.openReader(name)) {
+						List<ShaderpackPipelineProgram> programs = parsePipelineStage(worldId, stage, reader, name, errors, warnings);
+						if (!programs.isEmpty()) {
+							byStage.put(stage, programs);
+						}
+					} catch (IOException e) {
+						errors.add("Failed to read " + name + ": " + e.getMessage());
+					}
+				}
+				if (byStage.isEmpty()) {
+					byWorld.remove(worldId);
+				}
+			}
+			if (byWorld.isEmpty()) {
+				errors.add("Missing pipeline mappings under pipelines/[world_id]/[stage].toml.");
+			} else if (metadata.stages != null) {
+				validateRequiredStagesPresent(byWorld, metadata.stages, errors);
+			}
+			validateHistoryBindings(metadata.resources, byWorld, errors);
+			validateVramBudget(metadata.resources, byWorld, metadata.textureBindings, fileSystem, errors, warnings);
+			reloaded = reloaded.withPipelinePrograms(freezePipelinePrograms(byWorld));
+		}
+		if (langChanged) {
+			reloaded = reloaded.withTranslations(Map.copyOf(loadLangMap(fileSystem, warnings)));
+		}
+		return new ShaderpackLoadResult(errors.isEmpty() ? reloaded : null, errors, warnings);
+	}
+
 	private static Map<String, Map<String, List<ShaderpackPipelineProgram>>> parsePipelinePrograms(
-		Path shaderpackPath,
+		ShaderpackFileSystem fileSystem,
 		ShaderpackStages stages,
 		List<String> errors,
 		List<String> warnings
 	) {
 		Map<String, Map<String, List<ShaderpackPipelineProgram>>> byWorld = new LinkedHashMap<>();
-		if (Files.isDirectory(shaderpackPath)) {
-			parsePipelineProgramsFromDirectory(shaderpackPath, byWorld, errors, warnings);
-		} else if (isZip(shaderpackPath)) {
-			parsePipelineProgramsFromZip(shaderpackPath, byWorld, errors, warnings);
-		}
+		parsePipelineProgramFiles(fileSystem, byWorld, errors, warnings);
 
 		if (byWorld.isEmpty()) {
 			errors.add("Missing pipeline mappings under pipelines/[world_id]/[stage].toml.");
@@ -708,7 +1074,12 @@ public final class ShaderpackManager {
 		if (stages != null) {
 			validateRequiredStagesPresent(byWorld, stages, errors);
 		}
+		return freezePipelinePrograms(byWorld);
+	}
 
+	private static Map<String, Map<String, List<ShaderpackPipelineProgram>>> freezePipelinePrograms(
+		Map<String, Map<String, List<ShaderpackPipelineProgram>>> byWorld
+	) {
 		Map<String, Map<String, List<ShaderpackPipelineProgram>>> immutable = new LinkedHashMap<>();
 		for (Map.Entry<String, Map<String, List<ShaderpackPipelineProgram>>> worldEntry : byWorld.entrySet()) {
 			Map<String, List<ShaderpackPipelineProgram>> byStageImmutable = new LinkedHashMap<>();
@@ -720,90 +1091,42 @@ public final class ShaderpackManager {
 		return Map.copyOf(immutable);
 	}
 
-	private static void parsePipelineProgramsFromDirectory(
-		Path shaderpackPath,
+	private static void parsePipelineProgramFiles(
+		ShaderpackFileSystem fileSystem,
 		Map<String, Map<String, List<ShaderpackPipelineProgram>>> byWorld,
 		List<String> errors,
 		List<String> warnings
 	) {
-		Path pipelinesRoot = shaderpackPath.resolve(PIPELINES_DIRECTORY);
-		if (!Files.isDirectory(pipelinesRoot)) {
-			return;
-		}
-		try (Stream<Path> worldStream = Files.list(pipelinesRoot)) {
-			List<Path> worldDirs = worldStream
-				.filter(Files::isDirectory)
-				.sorted(Comparator.comparing(path -> path.getFileName().toString().toLowerCase(Locale.ROOT)))
-				.toList();
-			for (Path worldDir : worldDirs) {
-				String worldId = worldDir.getFileName().toString();
-				parsePipelineWorld(
-					worldId,
-					stage -> {
-						Path path = worldDir.resolve(stage + ".toml");
-						return Files.exists(path) ? path : null;
-					},
-					(path, source) -> Files.newBufferedReader(path, StandardCharsets.UTF_8),
-					byWorld,
-					errors,
-					warnings
-				);
+		Map<String, Map<String, String>> stageFilesByWorld = new LinkedHashMap<>();
+		for (String name : fileSystem.list(PIPELINES_DIRECTORY + "/")) {
+			if (!name.endsWith(".toml")) {
+				continue;
 			}
-		} catch (IOException e) {
-			errors.add("Failed to list pipeline mappings in " + pipelinesRoot + ": " + e.getMessage());
+			String[] segments = name.split("/");
+			if (segments.length != 3) {
+				continue;
+			}
+			String worldId = segments[1];
+			String file = segments[2];
+			String stage = file.substring(0, file.length() - ".toml".length());
+			if (!PIPELINE_STAGE_ORDER.contains(stage)) {
+				continue;
+			}
+			stageFilesByWorld.computeIfAbsent(worldId, ignored -> new LinkedHashMap<>()).put(stage, name);
 		}
-	}
 
-	@SuppressWarnings("null")
-	private static void parsePipelineProgramsFromZip(
-		Path shaderpackPath,
-		Map<String, Map<String, List<ShaderpackPipelineProgram>>> byWorld,
-		List<String> errors,
-		List<String> warnings
-	) {
-		try (ZipFile zipFile = new ZipFile(shaderpackPath.toFile(), StandardCharsets.UTF_8)) {
-			Map<String, Map<String, ZipEntry>> stageEntriesByWorld = new LinkedHashMap<>();
-			zipFile.stream().forEach(entry -> {
-				if (entry.isDirectory()) {
-					return;
-				}
-				String name = ShaderpackPipelineProgram.normalizePath(entry.getName());
-				if (!name.startsWith(PIPELINES_DIRECTORY + "/") || !name.endsWith(".toml")) {
-					return;
-				}
-				String[] segments = name.split("/");
-				if (segments.length != 3) {
-					return;
-				}
-				String worldId = segments[1];
-				String file = segments[2];
-				String stage = file.substring(0, file.length() - ".toml".length());
-				if (!PIPELINE_STAGE_ORDER.contains(stage)) {
-					return;
-				}
-				Map<String, ZipEntry> stageEntries = stageEntriesByWorld.computeIfAbsent(worldId, ignored -> new LinkedHashMap<>());
-				if (stageEntries.containsKey(stage)) {
-					errors.add("Duplicate pipeline file for world '" + worldId + "', stage '" + stage + "' in " + shaderpackPath.getFileName() + ".");
-					return;
-				}
-				stageEntries.put(stage, entry);
-			});
-
-			List<String> worlds = new ArrayList<>(stageEntriesByWorld.keySet());
-			worlds.sort(String::compareToIgnoreCase);
-			for (String worldId : worlds) {
-				Map<String, ZipEntry> stageEntries = stageEntriesByWorld.get(worldId);
-				parsePipelineWorld(
-					worldId,
-					stage -> stageEntries.get(stage),
-					(entry, source) -> new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8)),
-					byWorld,
-					errors,
-					warnings
-				);
-			}
-		} catch (IOException e) {
-			errors.add("Failed to read pipeline mappings from " + shaderpackPath.getFileName() + ": " + e.getMessage());
+		List<String> worlds = new ArrayList<>(stageFilesByWorld.keySet());
+		worlds.sort(String::compareToIgnoreCase);
+		for (String worldId : worlds) {
+			Map<String, String> stageFiles = stageFilesByWorld.get(worldId);
+			parsePipelineWorld(
+				worldId,
+				stageFiles::get,
+				(relative, source) -> fileSystem.openReader(relative),
+				byWorld,
+				errors,
+				warnings
+			);
 		}
 	}
 
@@ -954,8 +1277,8 @@ public final class ShaderpackManager {
 			if ((!workGroups.isEmpty() || !workGroupsRender.isEmpty()) && compute == null) {
 				errors.add(context + ".work_groups/work_groups_render requires .compute shader.");
 			}
-			List<String> imagesRead = readImageBindings(segmentTable, context, "images_read", "imagesRead", errors);
-			List<String> imagesWrite = readImageBindings(segmentTable, context, "images_write", "imagesWrite", errors);
+			List<String> imagesRead = readImageBindings(segmentTable, context, "images_read", "imagesRead", true, errors);
+			List<String> imagesWrite = readImageBindings(segmentTable, context, "images_write", "imagesWrite", false, errors);
 			String enabledExpression = readEnabledExpression(segmentTable, context, errors);
 			if ((enabledExpression == null || enabledExpression.isBlank()) && stageProgramEnabled.containsKey(segmentName)) {
 				enabledExpression = stageProgramEnabled.get(segmentName);
@@ -982,6 +1305,18 @@ public final class ShaderpackManager {
 			Map<String, String> effectiveParams = new LinkedHashMap<>(stageContext);
 			effectiveParams.putAll(resolvedLocalParams);
 			stageContext.putAll(resolvedLocalParams);
+			ShaderpackEnabledExpression enabledCondition = null;
+			if (enabledExpression != null && !enabledExpression.isBlank()) {
+				try {
+					enabledCondition = ShaderpackEnabledExpression.compile(
+						enabledExpression,
+						buildEnabledLocalVariables(worldId, stage, index, effectiveParams)
+					);
+				} catch (IllegalArgumentException e) {
+					errors.add("Invalid enabled expression at " + context + ".enabled: " + e.getMessage());
+					continue;
+				}
+			}
 
 			ShaderpackPipelineProgram segment = new ShaderpackPipelineProgram(
 				worldId,
@@ -1004,6 +1339,7 @@ public final class ShaderpackManager {
 				List.copyOf(imagesRead),
 				List.copyOf(imagesWrite),
 				enabledExpression,
+				enabledCondition,
 				alphaState.normalized(),
 				blendState.normalized(),
 				Map.copyOf(effectiveBufferSizes),
@@ -1205,7 +1541,7 @@ public final class ShaderpackManager {
 			return normalized;
 		}
 		try {
-			new ProgramEnabledExpression.Parser(normalized, Map.of()).parse();
+			ShaderpackEnabledExpression.compile(normalized, Map.of());
 		} catch (IllegalArgumentException e) {
 			errors.add("Invalid enabled expression at " + context + ": " + e.getMessage());
 			return null;
@@ -1775,7 +2111,14 @@ public final class ShaderpackManager {
 		return List.copyOf(values);
 	}
 
-	private static List<String> readImageBindings(TomlTable table, String context, String keyA, String keyB, List<String> errors) {
+	private static List<String> readImageBindings(
+		TomlTable table,
+		String context,
+		String keyA,
+		String keyB,
+		boolean allowHistory,
+		List<String> errors
+	) {
 		boolean hasA = table.contains(keyA);
 		boolean hasB = table.contains(keyB);
 		Object raw = hasA ? table.get(keyA) : (hasB ? table.get(keyB) : null);
@@ -1785,7 +2128,7 @@ public final class ShaderpackManager {
 		String fieldContext = context + "." + (hasA ? keyA : keyB);
 		LinkedHashSet<String> bindings = new LinkedHashSet<>();
 		if (raw instanceof String value) {
-			String normalized = normalizeImageBinding(value);
+			String normalized = normalizeImageBinding(value, allowHistory);
 			if (normalized == null) {
 				errors.add(fieldContext + " contains invalid image binding '" + value + "'.");
 				return List.of();
@@ -1800,7 +2143,7 @@ public final class ShaderpackManager {
 					errors.add("Invalid string in " + fieldContext + " at index " + i + ".");
 					continue;
 				}
-				String normalized = normalizeImageBinding(value);
+				String normalized = normalizeImageBinding(value, allowHistory);
 				if (normalized == null) {
 					errors.add(fieldContext + " contains invalid image binding '" + value + "' at index " + i + ".");
 					continue;
@@ -1886,6 +2229,14 @@ public final class ShaderpackManager {
 		return normalizeImageBinding(rawValue);
 	}
 
+	private static String normalizeImageBinding(String rawValue, boolean allowHistory) {
+		if (allowHistory && ShaderpackImageResources.isHistoryBinding(rawValue)) {
+			String base = normalizeImageBinding(ShaderpackImageResources.baseBinding(rawValue));
+			return base == null ? null : base + ShaderpackImageResources.HISTORY_SUFFIX;
+		}
+		return normalizeImageBinding(rawValue);
+	}
+
 	private static String normalizeImageBinding(String rawValue) {
 		if (rawValue == null) {
 			return null;
@@ -2119,6 +2470,26 @@ public final class ShaderpackManager {
 		}
 	}
 
+	public enum ActivationPhase {
+		QUEUED("queued"),
+		INDEXING("indexing"),
+		PARSING("parsing"),
+		CONFIG("config");
+
+		private final String key;
+
+		ActivationPhase(String key) {
+			this.key = key;
+		}
+
+		public String translationKey() {
+			return "sulkan.shaderpack.activation." + key;
+		}
+	}
+
+	public record ActivationStatus(String packId, ActivationPhase phase) {
+	}
+
 	public record CacheStats(long requests, long hits) {
 	}
 
@@ -2152,6 +2523,48 @@ public final class ShaderpackManager {
 		);
 	}
 
+	private static void validateHistoryBindings(
+		List<ShaderpackResourceDecl> resources,
+		Map<String, Map<String, List<ShaderpackPipelineProgram>>> byWorld,
+		List<String> errors
+	) {
+		for (Map<String, List<ShaderpackPipelineProgram>> byStage : byWorld.values()) {
+			for (List<ShaderpackPipelineProgram> programs : byStage.values()) {
+				for (ShaderpackPipelineProgram program : programs) {
+					for (String binding : program.imagesRead()) {
+						if (!ShaderpackImageResources.isHistoryBinding(binding)) {
+							continue;
+						}
+						ShaderpackResourceDecl resource = ShaderpackImageResources.find(resources, binding);
+						if (ShaderpackImageResources.lifetimeOf(resource) != ShaderpackFrameGraph.Lifetime.TEMPORAL) {
+							errors.add(
+								"pipelines/" + program.worldId() + "/" + program.stage() + ".toml segment '" + program.segmentName()
+									+ "' reads history image '" + binding + "' but '" + ShaderpackImageResources.baseBinding(binding)
+									+ "' is not declared as a temporal resource."
+							);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static void validateVramBudget(
+		List<ShaderpackResourceDecl> resources,
+		Map<String, Map<String, List<ShaderpackPipelineProgram>>> byWorld,
+		ShaderpackTextureBindings textureBindings,
+		ShaderpackFileSystem fileSystem,
+		List<String> errors,
+		List<String> warnings
+	) {
+		List<String> problems = ShaderpackVramLedger.checkEstimate(resources, byWorld, textureBindings, fileSystem);
+		if (ShaderpackVramLedger.isStrict()) {
+			errors.addAll(problems);
+		} else {
+			warnings.addAll(problems);
+		}
+	}
+
 	private static List<ShaderpackResourceDecl> parseResources(TomlArray array, List<String> errors) {
 		if (array == null) {
 			return List.of();
@@ -2628,93 +3041,27 @@ public final class ShaderpackManager {
 	}
 
 	private static List<ShaderpackOptionDecl> extractOptionsFromShaders(
-		Path shaderpackPath,
+		ShaderpackFileSystem fileSystem,
 		Map<String, String> translations,
 		List<String> errors,
 		List<String> warnings
 	) {
 		Map<String, ShaderpackOptionDecl> extracted = new LinkedHashMap<>();
-		if (Files.isDirectory(shaderpackPath)) {
-			extractOptionsFromDirectory(shaderpackPath, translations, extracted, errors, warnings);
-		} else if (isZip(shaderpackPath)) {
-			extractOptionsFromZip(shaderpackPath, translations, extracted, errors, warnings);
-		}
-		if (extracted.isEmpty()) {
-			return List.of();
-		}
-		return List.copyOf(extracted.values());
-	}
-
-	private static void extractOptionsFromDirectory(
-		Path shaderpackPath,
-		Map<String, String> translations,
-		Map<String, ShaderpackOptionDecl> extracted,
-		List<String> errors,
-		List<String> warnings
-	) {
-		Path shadersRoot = shaderpackPath.resolve("shaders");
-		if (!Files.isDirectory(shadersRoot)) {
-			return;
-		}
-		try (Stream<Path> stream = Files.walk(shadersRoot)) {
-			List<Path> shaderFiles = stream
-				.filter(Files::isRegularFile)
-				.filter(path -> isShaderTextPath(path.getFileName().toString()))
-				.sorted()
-				.toList();
-			for (Path file : shaderFiles) {
-				String relative = ShaderpackPipelineProgram.normalizePath(shaderpackPath.relativize(file).toString());
-				parseAutoOptionsFromText(
-					Files.readString(file, StandardCharsets.UTF_8),
-					relative,
-					translations,
-					extracted,
-					errors,
-					warnings
-				);
+		List<String> shaderFiles = fileSystem.list("shaders/").stream()
+			.filter(ShaderpackManager::isShaderTextPath)
+			.sorted(Comparator.comparing(name -> name.toLowerCase(Locale.ROOT)))
+			.toList();
+		try {
+			for (String relative : shaderFiles) {
+				parseAutoOptionsFromText(fileSystem.readText(relative), relative, translations, extracted, errors, warnings);
 			}
 		} catch (IOException e) {
 			errors.add("Failed to scan shader files for auto options: " + e.getMessage());
 		}
-	}
-
-	@SuppressWarnings("null")
-	private static void extractOptionsFromZip(
-		Path shaderpackPath,
-		Map<String, String> translations,
-		Map<String, ShaderpackOptionDecl> extracted,
-		List<String> errors,
-		List<String> warnings
-	) {
-		try (ZipFile zipFile = new ZipFile(shaderpackPath.toFile(), StandardCharsets.UTF_8)) {
-			List<? extends ZipEntry> entries = zipFile.stream()
-				.filter(entry -> !entry.isDirectory())
-				.filter(entry -> {
-					String name = ShaderpackPipelineProgram.normalizePath(entry.getName());
-					return name.startsWith("shaders/") && isShaderTextPath(name);
-				})
-				.sorted(Comparator.comparing(entry -> entry.getName().toLowerCase(Locale.ROOT)))
-				.toList();
-			for (ZipEntry entry : entries) {
-				String relative = ShaderpackPipelineProgram.normalizePath(entry.getName());
-				try (Reader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8))) {
-					String text = readAll(reader);
-					parseAutoOptionsFromText(text, relative, translations, extracted, errors, warnings);
-				}
-			}
-		} catch (IOException e) {
-			errors.add("Failed to scan shader zip for auto options: " + e.getMessage());
-		}
-	}
-
-	private static String readAll(Reader reader) throws IOException {
-		StringBuilder builder = new StringBuilder();
-		char[] buffer = new char[2048];
-		int read;
-		while ((read = reader.read(buffer)) >= 0) {
-			builder.append(buffer, 0, read);
+		if (extracted.isEmpty()) {
+			return List.of();
 		}
-		return builder.toString();
+		return List.copyOf(extracted.values());
 	}
 
 	private static void parseAutoOptionsFromText(
@@ -2844,6 +3191,15 @@ public final class ShaderpackManager {
 			}
 		}
 
+		String binding = normalizeOptionBinding(values.get("binding"));
+		if (!validateOptionBinding(binding, normalizedType, markerKey, context, errors)) {
+			return null;
+		}
+		boolean live = Boolean.TRUE.equals(parseBooleanLiteral(values.getOrDefault("live", "false")));
+		if (live && !validateLiveOption(binding, normalizedType, context, errors)) {
+			return null;
+		}
+
 		String normalizedPath = path.trim();
 		String id = normalizedPath;
 		int dot = normalizedPath.lastIndexOf('.');
@@ -2856,6 +3212,8 @@ public final class ShaderpackManager {
 			normalizedType,
 			ShaderpackPipelineProgram.normalizePath(target),
 			markerKey,
+			binding,
+			live,
 			renderValues,
 			defaultValue,
 			optionValues,
@@ -3033,8 +3391,12 @@ public final class ShaderpackManager {
 
 			TomlTable childrenTable = optionTable.getTable("options");
 			if (type != null && type.equalsIgnoreCase("page")) {
-				if (optionTable.contains("target") || optionTable.contains("key") || optionTable.contains("render_values")) {
-					errors.add(context + ".target/key/render_values is not allowed for page options.");
+				if (optionTable.contains("target")
+					|| optionTable.contains("key")
+					|| optionTable.contains("render_values")
+					|| optionTable.contains("binding")
+					|| optionTable.contains("live")) {
+					errors.add(context + ".target/key/render_values/binding/live is not allowed for page options.");
 				}
 				if (optionTable.contains("default")) {
 					errors.add(context + ".default is not allowed for page options.");
@@ -3053,6 +3415,8 @@ public final class ShaderpackManager {
 						type,
 						null,
 						null,
+						null,
+						false,
 						List.of(),
 						null,
 						List.of(),
@@ -3077,6 +3441,8 @@ public final class ShaderpackManager {
 					type,
 					null,
 					null,
+					null,
+					false,
 					List.of(),
 					null,
 					List.of(),
@@ -3109,13 +3475,19 @@ public final class ShaderpackManager {
 					renderValuesPresent = true;
 				}
 			}
-			if (target == null || target.isBlank()) {
+			boolean live = Boolean.TRUE.equals(readBoolean(optionTable, "live", context, errors));
+			if (!live && (target == null || target.isBlank())) {
 				errors.add("Missing " + context + ".target");
 			}
-			if (markerKey == null || markerKey.isBlank()) {
+			if (!live && (markerKey == null || markerKey.isBlank())) {
 				errors.add("Missing " + context + ".key");
 			}
+			if (live && (target == null || target.isBlank()) != (markerKey == null || markerKey.isBlank())) {
+				errors.add(context + ".target and " + context + ".key must be defined together.");
+			}
 			boolean useFileMode = "[use_file]".equals(markerKey);
+			String binding = normalizeOptionBinding(readString(optionTable, "binding", context, errors));
+			boolean specialized = ShaderpackOptionDecl.BINDING_SPEC.equals(binding);
 
 			Object defaultValue = optionTable.get("default");
 			if (defaultValue == null) {
@@ -3177,7 +3549,8 @@ public final class ShaderpackManager {
 						} else if (!valuesList.isEmpty() && !valuesList.contains(defaultValue)) {
 							errors.add(context + ".default must be one of values.");
 						}
-						if (!renderValuesPresent) {
+						boolean markerless = live && (markerKey == null || markerKey.isBlank());
+						if (!renderValuesPresent && !specialized && !markerless) {
 							errors.add("Missing " + context + ".render_values");
 						} else if (!valuesList.isEmpty() && renderValuesList.size() != valuesList.size()) {
 							errors.add(context + ".render_values must match values length.");
@@ -3192,6 +3565,12 @@ public final class ShaderpackManager {
 			if (useFileMode && (type == null || !type.equalsIgnoreCase("enum"))) {
 				errors.add(context + ".key=[use_file] is only allowed for enum options.");
 			}
+			if (type != null) {
+				validateOptionBinding(binding, type.toLowerCase(Locale.ROOT), markerKey, context, errors);
+				if (live) {
+					validateLiveOption(binding, type.toLowerCase(Locale.ROOT), context, errors);
+				}
+			}
 
 			Number min = getNumber(optionTable, "min");
 			Number max = getNumber(optionTable, "max");
@@ -3202,6 +3581,8 @@ public final class ShaderpackManager {
 				type,
 				target,
 				markerKey,
+				binding,
+				live,
 				renderValuesList,
 				defaultValue,
 				valuesList,
@@ -3218,6 +3599,44 @@ public final class ShaderpackManager {
 		return options;
 	}
 
+	private static String normalizeOptionBinding(String binding) {
+		if (binding == null || binding.isBlank()) {
+			return ShaderpackOptionDecl.BINDING_TEXT;
+		}
+		return stripOptionalQuotes(binding).trim().toLowerCase(Locale.ROOT);
+	}
+
+	private static boolean validateOptionBinding(String binding, String type, String markerKey, String context, List<String> errors) {
+		if (ShaderpackOptionDecl.BINDING_TEXT.equals(binding)) {
+			return true;
+		}
+		if (!ShaderpackOptionDecl.BINDING_SPEC.equals(binding)) {
+			errors.add(context + ".binding unsupported: " + binding);
+			return false;
+		}
+		if (!SPECIALIZABLE_OPTION_TYPES.contains(type)) {
+			errors.add(context + ".binding=spec is only allowed for bool, int, float and enum options.");
+			return false;
+		}
+		if ("[use_file]".equals(markerKey)) {
+			errors.add(context + ".binding=spec is not allowed with key=[use_file].");
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean validateLiveOption(String binding, String type, String context, List<String> errors) {
+		if (!SPECIALIZABLE_OPTION_TYPES.contains(type)) {
+			errors.add(context + ".live is only allowed for bool, int, float and enum options.");
+			return false;
+		}
+		if (ShaderpackOptionDecl.BINDING_SPEC.equals(binding)) {
+			errors.add(context + ".live cannot be combined with binding=spec.");
+			return false;
+		}
+		return true;
+	}
+
 	private static void validateNumberField(TomlTable table, String context, String field, boolean integer, List<String> errors) {
 		if (!table.contains(field)) {
 			return;
@@ -3257,46 +3676,27 @@ public final class ShaderpackManager {
 		return null;
 	}
 
-	private static Map<String, String> loadLangMap(Path shaderpackPath, List<String> warnings) {
+	private static Map<String, String> loadLangMap(ShaderpackFileSystem fileSystem, List<String> warnings) {
 		String locale = getActiveLocale();
-		Map<String, String> map = readLangFile(shaderpackPath, locale, warnings);
+		Map<String, String> map = readLangFile(fileSystem, locale, warnings);
 		if (map.isEmpty() && !locale.equals("en_us")) {
-			map = readLangFile(shaderpackPath, "en_us", warnings);
+			map = readLangFile(fileSystem, "en_us", warnings);
 		}
 		return map;
 	}
 
-	private static Map<String, String> readLangFile(Path shaderpackPath, String locale, List<String> warnings) {
+	private static Map<String, String> readLangFile(ShaderpackFileSystem fileSystem, String locale, List<String> warnings) {
 		String relative = LANG_DIRECTORY + "/" + locale + ".json";
-		if (Files.isDirectory(shaderpackPath)) {
-			Path path = shaderpackPath.resolve(relative);
-			if (!Files.exists(path)) {
-				return Map.of();
-			}
-			try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
-				Map<String, String> map = GSON.fromJson(reader, LANG_MAP_TYPE);
-				return map == null ? Map.of() : map;
-			} catch (IOException e) {
-				warnings.add("Failed to read lang file: " + relative);
-				return Map.of();
-			}
+		if (!fileSystem.exists(relative)) {
+			return Map.of();
 		}
-		if (isZip(shaderpackPath)) {
-			try (ZipFile zipFile = new ZipFile(shaderpackPath.toFile(), StandardCharsets.UTF_8)) {
-				ZipEntry entry = zipFile.getEntry(relative);
-				if (entry == null) {
-					return Map.of();
-				}
-				try (Reader reader = new BufferedReader(new InputStreamReader(zipFile.getInputStream(entry), StandardCharsets.UTF_8))) {
-					Map<String, String> map = GSON.fromJson(reader, LANG_MAP_TYPE);
-					return map == null ? Map.of() : map;
-				}
-			} catch (IOException e) {
-				warnings.add("Failed to read lang file: " + relative);
-				return Map.of();
-			}
+		try (Reader reader = fileSystem.openReader(relative)) {
+			Map<String, String> map = GSON.fromJson(reader, LANG_MAP_TYPE);
+			return map == null ? Map.of() : map;
+		} catch (IOException e) {
+			warnings.add("Failed to read lang file: " + relative);
+			return Map.of();
 		}
-		return Map.of();
 	}
 
 	private static String getActiveLocale() {
@@ -3355,260 +3755,4 @@ public final class ShaderpackManager {
 		}
 		return values;
 	}
-
-	private static final class ProgramEnabledExpression {
-		private ProgramEnabledExpression() {
-		}
-
-		private static final class Parser {
-			private final String source;
-			private final Map<String, Object> variables;
-			private int index;
-
-			private Parser(String source, Map<String, Object> variables) {
-				this.source = source == null ? "" : source;
-				this.variables = variables == null ? Map.of() : variables;
-			}
-
-			private boolean parse() {
-				Object value = parseOr();
-				skipWhitespace();
-				if (index != source.length()) {
-					throw error("Unexpected token");
-				}
-				return asBoolean(value);
-			}
-
-			private Object parseOr() {
-				Object left = parseAnd();
-				while (true) {
-					skipWhitespace();
-					if (!match("||")) {
-						return left;
-					}
-					Object right = parseAnd();
-					left = asBoolean(left) || asBoolean(right);
-				}
-			}
-
-			private Object parseAnd() {
-				Object left = parseEquality();
-				while (true) {
-					skipWhitespace();
-					if (!match("&&")) {
-						return left;
-					}
-					Object right = parseEquality();
-					left = asBoolean(left) && asBoolean(right);
-				}
-			}
-
-			private Object parseEquality() {
-				Object left = parseUnary();
-				while (true) {
-					skipWhitespace();
-					if (match("==")) {
-						Object right = parseUnary();
-						left = compare(left, right);
-						continue;
-					}
-					if (match("!=")) {
-						Object right = parseUnary();
-						left = !compare(left, right);
-						continue;
-					}
-					return left;
-				}
-			}
-
-			private Object parseUnary() {
-				skipWhitespace();
-				if (match("!")) {
-					return !asBoolean(parseUnary());
-				}
-				return parsePrimary();
-			}
-
-			private Object parsePrimary() {
-				skipWhitespace();
-				if (match("(")) {
-					Object nested = parseOr();
-					skipWhitespace();
-					if (!match(")")) {
-						throw error("Expected ')'");
-					}
-					return nested;
-				}
-				if (peek() == '"' || peek() == '\'') {
-					return parseQuotedString();
-				}
-				String token = parseToken();
-				if (token == null || token.isBlank()) {
-					throw error("Expected value");
-				}
-				String lower = token.toLowerCase(Locale.ROOT);
-				if ("true".equals(lower)) {
-					return Boolean.TRUE;
-				}
-				if ("false".equals(lower)) {
-					return Boolean.FALSE;
-				}
-				try {
-					return Double.parseDouble(token);
-				} catch (NumberFormatException ignored) {
-				}
-				Object variable = resolveVariable(token);
-				return variable == null ? Boolean.FALSE : variable;
-			}
-
-			private Object resolveVariable(String token) {
-				if (variables.containsKey(token)) {
-					return variables.get(token);
-				}
-				String lower = token.toLowerCase(Locale.ROOT);
-				if (variables.containsKey(lower)) {
-					return variables.get(lower);
-				}
-				String upper = token.toUpperCase(Locale.ROOT);
-				if (variables.containsKey(upper)) {
-					return variables.get(upper);
-				}
-				return null;
-			}
-
-			private static boolean compare(Object left, Object right) {
-				Object normalizedLeft = normalizeComparable(left);
-				Object normalizedRight = normalizeComparable(right);
-				if (normalizedLeft instanceof Number && normalizedRight instanceof Number) {
-					double a = ((Number) normalizedLeft).doubleValue();
-					double b = ((Number) normalizedRight).doubleValue();
-					return Double.compare(a, b) == 0;
-				}
-				return String.valueOf(normalizedLeft).equalsIgnoreCase(String.valueOf(normalizedRight));
-			}
-
-			private static Object normalizeComparable(Object value) {
-				if (value == null) {
-					return Boolean.FALSE;
-				}
-				if (value instanceof Boolean || value instanceof Number) {
-					return value;
-				}
-				String text = value.toString().trim();
-				if (text.isBlank()) {
-					return "";
-				}
-				String lower = text.toLowerCase(Locale.ROOT);
-				if ("true".equals(lower)) {
-					return Boolean.TRUE;
-				}
-				if ("false".equals(lower)) {
-					return Boolean.FALSE;
-				}
-				try {
-					return Double.parseDouble(text);
-				} catch (NumberFormatException ignored) {
-					return text;
-				}
-			}
-
-			private static boolean asBoolean(Object value) {
-				if (value == null) {
-					return false;
-				}
-				if (value instanceof Boolean bool) {
-					return bool;
-				}
-				if (value instanceof Number number) {
-					return number.doubleValue() != 0.0D;
-				}
-				String text = value.toString().trim();
-				if (text.isBlank()) {
-					return false;
-				}
-				String lower = text.toLowerCase(Locale.ROOT);
-				if ("true".equals(lower) || "on".equals(lower) || "yes".equals(lower)) {
-					return true;
-				}
-				if ("false".equals(lower) || "off".equals(lower) || "no".equals(lower)) {
-					return false;
-				}
-				try {
-					return Double.parseDouble(text) != 0.0D;
-				} catch (NumberFormatException ignored) {
-					return true;
-				}
-			}
-
-			private String parseQuotedString() {
-				char quote = peek();
-				if (quote != '\'' && quote != '"') {
-					throw error("Expected string");
-				}
-				index++;
-				StringBuilder builder = new StringBuilder();
-				while (index < source.length()) {
-					char c = source.charAt(index++);
-					if (c == quote) {
-						return builder.toString();
-					}
-					if (c == '\\' && index < source.length()) {
-						char escaped = source.charAt(index++);
-						builder.append(escaped);
-						continue;
-					}
-					builder.append(c);
-				}
-				throw error("Unterminated string literal");
-			}
-
-			private String parseToken() {
-				skipWhitespace();
-				if (index >= source.length()) {
-					return null;
-				}
-				int start = index;
-				while (index < source.length()) {
-					char c = source.charAt(index);
-					if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '!' || c == '&' || c == '|' || c == '=' || c == '\'') {
-						break;
-					}
-					if (c == '"') {
-						break;
-					}
-					index++;
-				}
-				if (start == index) {
-					return null;
-				}
-				return source.substring(start, index);
-			}
-
-			private void skipWhitespace() {
-				while (index < source.length() && Character.isWhitespace(source.charAt(index))) {
-					index++;
-				}
-			}
-
-			private boolean match(String token) {
-				if (token == null || token.isEmpty()) {
-					return false;
-				}
-				if (source.regionMatches(index, token, 0, token.length())) {
-					index += token.length();
-					return true;
-				}
-				return false;
-			}
-
-			private char peek() {
-				return index < source.length() ? source.charAt(index) : '\0';
-			}
-
-			private IllegalArgumentException error(String message) {
-				int position = Math.max(0, Math.min(index, source.length()));
-				return new IllegalArgumentException(message + " at position " + position);
-			}
-		}
-	}
 }
@@ -0,0 +1,152 @@
+package cn.mxst.sulkan.shaderpack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+final class ShaderpackMarkerTable {
+	static final String MARKER_PREFIX = "@SULKAN:";
+	static final String PARAM_MARKER_PREFIX = "@SULKAN_PARAM:";
+	private static final String COMMON_PREFIX = "@SULKAN";
+	private static final char MARKER_SUFFIX = '@';
+	private static final int GROWTH_SLACK = 64;
+
+	private final Map<String, Entry> options;
+	private final Map<String, String> params;
+	private final ShaderpackConfig config;
+	private final Map<String, String> paramSource;
+
+	private ShaderpackMarkerTable(Map<String, Entry> options, Map<String, String> params, ShaderpackConfig config, Map<String, String> paramSource) {
+		this.options = options;
+		this.params = params;
+		this.config = config;
+		this.paramSource = paramSource;
+	}
+
+	static Builder builder(ShaderpackConfig config, Map<String, String> params) {
+		return new Builder(config, params);
+	}
+
+	boolean matches(ShaderpackConfig config, Map<String, String> params) {
+		return this.config == config && this.paramSource == params;
+	}
+
+	boolean isEmpty() {
+		return options.isEmpty() && params.isEmpty();
+	}
+
+	Result apply(String source) {
+		if (source == null || isEmpty()) {
+			return new Result(source, List.of(), Set.of(), Set.of());
+		}
+		int at = source.indexOf(COMMON_PREFIX);
+		if (at < 0) {
+			return new Result(source, List.of(), Set.of(), options.keySet());
+		}
+		StringBuilder out = new StringBuilder(source.length() + GROWTH_SLACK);
+		Set<String> used = new LinkedHashSet<>();
+		Set<String> unknown = new LinkedHashSet<>();
+		List<String> declarations = new ArrayList<>();
+		int copied = 0;
+		while (at >= 0) {
+			boolean option = source.startsWith(MARKER_PREFIX, at);
+			boolean param = !option && source.startsWith(PARAM_MARKER_PREFIX, at);
+			int keyStart = at + (option ? MARKER_PREFIX.length() : PARAM_MARKER_PREFIX.length());
+			int keyEnd = option || param ? markerEnd(source, keyStart) : -1;
+			if (keyEnd < 0) {
+				at = source.indexOf(COMMON_PREFIX, at + 1);
+				continue;
+			}
+			String key = source.substring(keyStart, keyEnd);
+			String replacement;
+			if (option) {
+				Entry entry = options.get(key);
+				replacement = entry == null ? null : entry.replacement();
+				if (entry == null) {
+					unknown.add(MARKER_PREFIX + key + MARKER_SUFFIX);
+				} else if (used.add(key) && entry.declaration() != null) {
+					declarations.add(entry.declaration());
+				}
+			} else {
+				replacement = params.get(key);
+				if (replacement == null) {
+					unknown.add(PARAM_MARKER_PREFIX + key + MARKER_SUFFIX);
+				}
+			}
+			if (replacement == null) {
+				at = source.indexOf(COMMON_PREFIX, keyEnd);
+				continue;
+			}
+			out.append(source, copied, at).append(replacement);
+			copied = keyEnd + 1;
+			at = source.indexOf(COMMON_PREFIX, copied);
+		}
+		if (copied == 0) {
+			return new Result(source, declarations, unknown, unused(used));
+		}
+		out.append(source, copied, source.length());
+		return new Result(out.toString(), declarations, unknown, unused(used));
+	}
+
+	private Set<String> unused(Set<String> used) {
+		if (used.size() == options.size()) {
+			return Set.of();
+		}
+		Set<String> unused = new LinkedHashSet<>(options.keySet());
+		unused.removeAll(used);
+		return unused;
+	}
+
+	private static int markerEnd(String source, int keyStart) {
+		for (int i = keyStart; i < source.length(); i++) {
+			char c = source.charAt(i);
+			if (c == MARKER_SUFFIX) {
+				return i > keyStart ? i : -1;
+			}
+			if (c == '\n' || c == '\r') {
+				return -1;
+			}
+		}
+		return -1;
+	}
+
+	static final class Builder {
+		private final Map<String, Entry> options = new LinkedHashMap<>();
+		private final ShaderpackConfig config;
+		private final Map<String, String> paramSource;
+
+		private Builder(ShaderpackConfig config, Map<String, String> params) {
+			this.config = config;
+			this.paramSource = params;
+		}
+
+		Builder option(String key, String replacement, String declaration) {
+			if (key != null && !key.isBlank()) {
+				options.putIfAbsent(key, new Entry(replacement, declaration));
+			}
+			return this;
+		}
+
+		ShaderpackMarkerTable build() {
+			Map<String, String> params = new HashMap<>();
+			if (paramSource != null) {
+				for (Map.Entry<String, String> entry : paramSource.entrySet()) {
+					if (entry.getKey() != null && !entry.getKey().isBlank() && entry.getValue() != null) {
+						params.put(entry.getKey(), entry.getValue());
+					}
+				}
+			}
+			return new ShaderpackMarkerTable(options, params, config, paramSource);
+		}
+	}
+
+	private record Entry(String replacement, String declaration) {
+	}
+
+	record Result(String source, List<String> declarations, Set<String> unknownMarkers, Set<String> unusedKeys) {
+	}
+}
@@ -54,4 +54,44 @@ public final class ShaderpackMetadata {
 		this.translations = translations;
 		this.sourcePath = sourcePath;
 	}
+
+	ShaderpackMetadata withPipelinePrograms(Map<String, Map<String, List<ShaderpackPipelineProgram>>> pipelinePrograms) {
+		return new ShaderpackMetadata(
+			name,
+			version,
+			specVersion,
+			stages,
+			resources,
+			features,
+			extensions,
+			options,
+			globalSettings,
+			textureBindings,
+			uiLayout,
+			idMappings,
+			pipelinePrograms,
+			translations,
+			sourcePath
+		);
+	}
+
+	ShaderpackMetadata withTranslations(Map<String, String> translations) {
+		return new ShaderpackMetadata(
+			name,
+			version,
+			specVersion,
+			stages,
+			resources,
+			features,
+			extensions,
+			options,
+			globalSettings,
+			textureBindings,
+			uiLayout,
+			idMappings,
+			pipelinePrograms,
+			translations,
+			sourcePath
+		);
+	}
 }
@@ -8,6 +8,8 @@ public record ShaderpackOptionDecl(
 	String type,
 	String target,
 	String key,
+	String binding,
+	boolean live,
 	List<String> renderValues,
 	Object defaultValue,
 	List<String> values,
@@ -20,4 +22,10 @@ public record ShaderpackOptionDecl(
 	String description,
 	List<ShaderpackOptionDecl> children
 ) {
+	public static final String BINDING_TEXT = "text";
+	public static final String BINDING_SPEC = "spec";
+
+	public boolean isSpecialized() {
+		return BINDING_SPEC.equals(binding);
+	}
 }
@@ -0,0 +1,123 @@
+package cn.mxst.sulkan.shaderpack;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+public final class ShaderpackOptionDependencies {
+	static final ShaderpackOptionDependencies EMPTY = new ShaderpackOptionDependencies(Map.of(), Set.of(), Set.of());
+
+	private final Map<String, Set<String>> targetsByOption;
+	private final Set<String> specializedOptions;
+	private final Set<String> conditionOptions;
+
+	private ShaderpackOptionDependencies(
+		Map<String, Set<String>> targetsByOption,
+		Set<String> specializedOptions,
+		Set<String> conditionOptions
+	) {
+		this.targetsByOption = targetsByOption;
+		this.specializedOptions = specializedOptions;
+		this.conditionOptions = conditionOptions;
+	}
+
+	static ShaderpackOptionDependencies build(ShaderpackMetadata metadata) {
+		if (metadata == null) {
+			return EMPTY;
+		}
+		Map<String, Set<String>> targets = new HashMap<>();
+		Set<String> specialized = new HashSet<>();
+		Map<String, Set<String>> optionsByToken = new HashMap<>();
+		for (ShaderpackOptionDecl option : ShaderpackShaderApplier.flattenOptions(metadata.options)) {
+			if (option == null || option.path() == null || option.path().isBlank()) {
+				continue;
+			}
+			for (String token : tokenAliases(option.path())) {
+				optionsByToken.computeIfAbsent(token, ignored -> new HashSet<>()).add(option.path());
+			}
+			if (option.isSpecialized()) {
+				specialized.add(option.path());
+			}
+			if (option.target() != null && option.key() != null) {
+				targets.computeIfAbsent(option.path(), ignored -> new LinkedHashSet<>())
+					.add(ShaderpackShaderApplier.normalizeTarget(option.target()));
+			}
+		}
+
+		Set<String> conditions = new HashSet<>();
+		if (metadata.pipelinePrograms != null) {
+			for (Map<String, List<ShaderpackPipelineProgram>> byStage : metadata.pipelinePrograms.values()) {
+				for (List<ShaderpackPipelineProgram> programs : byStage.values()) {
+					for (ShaderpackPipelineProgram program : programs) {
+						ShaderpackEnabledExpression condition = program.enabledCondition();
+						if (condition == null) {
+							continue;
+						}
+						for (String variable : condition.variables()) {
+							addConditionOptions(conditions, optionsByToken, variable);
+						}
+					}
+				}
+			}
+		}
+
+		Map<String, Set<String>> immutable = new HashMap<>();
+		for (Map.Entry<String, Set<String>> entry : targets.entrySet()) {
+			immutable.put(entry.getKey(), Set.copyOf(entry.getValue()));
+		}
+		return new ShaderpackOptionDependencies(Map.copyOf(immutable), Set.copyOf(specialized), Set.copyOf(conditions));
+	}
+
+	Impact impactOf(Set<String> changedOptions) {
+		if (changedOptions == null || changedOptions.isEmpty()) {
+			return Impact.NONE;
+		}
+		boolean segments = false;
+		Set<String> targets = new LinkedHashSet<>();
+		Set<String> specializedTargets = new LinkedHashSet<>();
+		for (String option : changedOptions) {
+			segments |= conditionOptions.contains(option);
+			Set<String> reached = targetsByOption.getOrDefault(option, Set.of());
+			if (specializedOptions.contains(option)) {
+				specializedTargets.addAll(reached);
+			} else {
+				targets.addAll(reached);
+			}
+		}
+		return new Impact(Set.copyOf(changedOptions), segments, Set.copyOf(targets), Set.copyOf(specializedTargets));
+	}
+
+	private static void addConditionOptions(Set<String> output, Map<String, Set<String>> optionsByToken, String variable) {
+		for (String key : List.of(variable, variable.toLowerCase(Locale.ROOT), variable.toUpperCase(Locale.ROOT))) {
+			Set<String> options = optionsByToken.get(key);
+			if (options != null) {
+				output.addAll(options);
+			}
+		}
+	}
+
+	private static Set<String> tokenAliases(String path) {
+		String trimmed = path.trim();
+		String underscored = trimmed.replace('.', '_').replace('-', '_');
+		return Set.of(
+			trimmed,
+			trimmed.toLowerCase(Locale.ROOT),
+			trimmed.toUpperCase(Locale.ROOT),
+			underscored,
+			underscored.toLowerCase(Locale.ROOT),
+			underscored.toUpperCase(Locale.ROOT)
+		);
+	}
+
+	public record Impact(Set<String> options, boolean segments, Set<String> targets, Set<String> specializedTargets) {
+		static final Impact NONE = new Impact(Set.of(), false, Set.of(), Set.of());
+
+		public boolean isEmpty() {
+			return !segments && targets.isEmpty() && specializedTargets.isEmpty();
+		}
+	}
+}
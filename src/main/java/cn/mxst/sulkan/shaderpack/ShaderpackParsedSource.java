@@ -0,0 +1,75 @@
+package cn.mxst.sulkan.shaderpack;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+record ShaderpackParsedSource(List<Chunk> chunks, boolean pragmaOnce, int textLength) {
+	private static final Pattern INCLUDE_LINE_PATTERN = Pattern.compile("#include\\s+([\"<])([^\">]+)[\">]\\s*(?://.*)?");
+	private static final Pattern PRAGMA_ONCE_LINE_PATTERN = Pattern.compile("#pragma\\s+once\\s*(?://.*)?");
+
+	static ShaderpackParsedSource parse(String source) {
+		List<Chunk> chunks = new ArrayList<>();
+		boolean pragmaOnce = false;
+		int textLength = 0;
+		int textStart = 0;
+		int line = 1;
+		int pos = 0;
+		int length = source.length();
+		while (pos < length) {
+			int end = source.indexOf('\n', pos);
+			if (end < 0) {
+				end = length;
+			}
+			int first = pos;
+			while (first < end && Character.isWhitespace(source.charAt(first))) {
+				first++;
+			}
+			if (first < end && source.charAt(first) == '#') {
+				int directiveEnd = end > first && source.charAt(end - 1) == '\r' ? end - 1 : end;
+				String directive = source.substring(first, directiveEnd);
+				Matcher include = INCLUDE_LINE_PATTERN.matcher(directive);
+				boolean isInclude = directive.startsWith("#include") && include.matches();
+				boolean isPragmaOnce = !isInclude && directive.startsWith("#pragma") && PRAGMA_ONCE_LINE_PATTERN.matcher(directive).matches();
+				if (isInclude || isPragmaOnce) {
+					if (pos > textStart) {
+						chunks.add(new Text(source.substring(textStart, pos)));
+						textLength += pos - textStart;
+					}
+					if (isInclude) {
+						chunks.add(new Include(include.group(2), line));
+					} else {
+						pragmaOnce = true;
+					}
+					textStart = directiveEnd;
+				}
+			}
+			pos = end + 1;
+			line++;
+		}
+		if (textStart < length) {
+			chunks.add(new Text(source.substring(textStart)));
+			textLength += length - textStart;
+		}
+		return new ShaderpackParsedSource(List.copyOf(chunks), pragmaOnce, textLength);
+	}
+
+	boolean hasIncludes() {
+		for (Chunk chunk : chunks) {
+			if (chunk instanceof Include) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	sealed interface Chunk permits Text, Include {
+	}
+
+	record Text(String text) implements Chunk {
+	}
+
+	record Include(String reference, int line) implements Chunk {
+	}
+}
@@ -0,0 +1,214 @@
+package cn.mxst.sulkan.shaderpack;
+
+import cn.mxst.sulkan.Sulkan;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import net.vulkanmod.vulkan.Vulkan;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.vulkan.VK10;
+import org.lwjgl.vulkan.VkDevice;
+import org.lwjgl.vulkan.VkPhysicalDeviceProperties;
+import org.lwjgl.vulkan.VkPipelineCacheCreateInfo;
+
+public final class ShaderpackPipelineCache {
+	private static final int HEADER_UUID_OFFSET = 16;
+	private static final String FILE_SUFFIX = ".bin";
+	private static final int PACK_DIRECTORY_LENGTH = 16;
+	private static final ReentrantReadWriteLock LOCK = new ReentrantReadWriteLock();
+	private static String packFingerprint;
+	private static String packDirectory;
+	private static Path activeFile;
+	private static volatile long handle;
+
+	private ShaderpackPipelineCache() {
+	}
+
+	public static synchronized void activate(Path packPath, String fingerprint) {
+		String directory = packDirectory(packPath);
+		if (fingerprint != null && fingerprint.equals(packFingerprint) && directory.equals(packDirectory)) {
+			return;
+		}
+		destroy();
+		packFingerprint = fingerprint;
+		packDirectory = directory;
+	}
+
+	public static synchronized void deactivate() {
+		destroy();
+		packFingerprint = null;
+		packDirectory = null;
+	}
+
+	public static long acquire() {
+		ensureCreated();
+		LOCK.readLock().lock();
+		return handle;
+	}
+
+	public static void release() {
+		LOCK.readLock().unlock();
+	}
+
+	public static synchronized void save() {
+		if (handle == 0L || activeFile == null) {
+			return;
+		}
+		VkDevice device = Vulkan.getVkDevice();
+		if (device == null) {
+			return;
+		}
+		byte[] data;
+		LOCK.writeLock().lock();
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			PointerBuffer pSize = stack.mallocPointer(1);
+			if (VK10.vkGetPipelineCacheData(device, handle, pSize, null) != VK10.VK_SUCCESS || pSize.get(0) <= 0L) {
+				return;
+			}
+			ByteBuffer buffer = MemoryUtil.memAlloc((int) pSize.get(0));
+			try {
+				if (VK10.vkGetPipelineCacheData(device, handle, pSize, buffer) != VK10.VK_SUCCESS) {
+					return;
+				}
+				data = new byte[(int) pSize.get(0)];
+				buffer.get(0, data);
+			} finally {
+				MemoryUtil.memFree(buffer);
+			}
+		} finally {
+			LOCK.writeLock().unlock();
+		}
+		try {
+			ShaderpackFileSystem.writeAtomically(activeFile, data);
+		} catch (IOException e) {
+			Sulkan.LOGGER.warn("Failed to write pipeline cache {}: {}", activeFile.getFileName(), e.getMessage());
+			return;
+		}
+		deleteStaleFiles(activeFile);
+	}
+
+	// Each pack keeps only its latest cache; older fingerprints and driver UUIDs are never read again.
+	private static void deleteStaleFiles(Path current) {
+		try (Stream<Path> stream = Files.list(current.getParent())) {
+			stream
+				.filter(path -> !path.equals(current) && path.getFileName().toString().endsWith(FILE_SUFFIX))
+				.forEach(path -> {
+					try {
+						Files.deleteIfExists(path);
+					} catch (IOException e) {
+						Sulkan.LOGGER.warn("Failed to delete pipeline cache {}: {}", path.getFileName(), e.getMessage());
+					}
+				});
+		} catch (IOException e) {
+			Sulkan.LOGGER.warn("Failed to prune pipeline caches: {}", e.getMessage());
+		}
+	}
+
+	private static String packDirectory(Path packPath) {
+		String identity = packPath == null ? "" : packPath.toAbsolutePath().normalize().toString();
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(identity.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(hash).substring(0, PACK_DIRECTORY_LENGTH);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available.", e);
+		}
+	}
+
+	private static synchronized void ensureCreated() {
+		if (handle != 0L || packFingerprint == null || packDirectory == null) {
+			return;
+		}
+		VkDevice device = Vulkan.getVkDevice();
+		if (device == null) {
+			return;
+		}
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			VkPhysicalDeviceProperties properties = VkPhysicalDeviceProperties.malloc(stack);
+			VK10.vkGetPhysicalDeviceProperties(device.getPhysicalDevice(), properties);
+			byte[] uuid = new byte[VK10.VK_UUID_SIZE];
+			properties.pipelineCacheUUID().get(0, uuid);
+			String fingerprint = packFingerprint + "-" + HexFormat.of().formatHex(uuid);
+			Path file = ShaderpackManager.cacheDir().resolve("pipeline").resolve(packDirectory).resolve(fingerprint + FILE_SUFFIX);
+
+			byte[] initialData = readInitialData(file, uuid);
+			ByteBuffer initialBuffer = null;
+			if (initialData != null) {
+				initialBuffer = MemoryUtil.memAlloc(initialData.length);
+				initialBuffer.put(0, initialData);
+			}
+			VkPipelineCacheCreateInfo info = VkPipelineCacheCreateInfo.calloc(stack);
+			info.sType$Default();
+			info.pInitialData(initialBuffer);
+			LongBuffer pCache = stack.mallocLong(1);
+			int result;
+			try {
+				result = VK10.vkCreatePipelineCache(device, info, null, pCache);
+				if (result != VK10.VK_SUCCESS && initialBuffer != null) {
+					info.pInitialData(null);
+					result = VK10.vkCreatePipelineCache(device, info, null, pCache);
+				}
+			} finally {
+				MemoryUtil.memFree(initialBuffer);
+			}
+			if (result != VK10.VK_SUCCESS) {
+				Sulkan.LOGGER.warn("vkCreatePipelineCache failed: {}", result);
+				packFingerprint = null;
+				return;
+			}
+			handle = pCache.get(0);
+			activeFile = file;
+		}
+	}
+
+	private static byte[] readInitialData(Path file, byte[] deviceUuid) {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		try {
+			byte[] data = Files.readAllBytes(file);
+			if (data.length < HEADER_UUID_OFFSET + VK10.VK_UUID_SIZE) {
+				return null;
+			}
+			byte[] uuid = Arrays.copyOfRange(data, HEADER_UUID_OFFSET, HEADER_UUID_OFFSET + VK10.VK_UUID_SIZE);
+			return Arrays.equals(uuid, deviceUuid) ? data : null;
+		} catch (IOException e) {
+			Sulkan.LOGGER.warn("Failed to read pipeline cache {}: {}", file.getFileName(), e.getMessage());
+			return null;
+		}
+	}
+
+	private static void destroy() {
+		if (handle == 0L) {
+			return;
+		}
+		save();
+		long retired;
+		LOCK.writeLock().lock();
+		try {
+			retired = handle;
+			handle = 0L;
+			activeFile = null;
+		} finally {
+			LOCK.writeLock().unlock();
+		}
+		// Callers may be off the render thread; destroy once in-flight pipeline creation has drained.
+		ShaderpackRetirementQueue.retire(() -> {
+			VkDevice device = Vulkan.getVkDevice();
+			if (device != null) {
+				VK10.vkDestroyPipelineCache(device, retired, null);
+			}
+		});
+	}
+}
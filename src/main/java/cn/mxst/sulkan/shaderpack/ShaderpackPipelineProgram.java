@@ -26,6 +26,7 @@ public record ShaderpackPipelineProgram(
 	List<String> imagesRead,
 	List<String> imagesWrite,
 	String enabledExpression,
+	ShaderpackEnabledExpression enabledCondition,
 	ShaderpackPipelineAlphaState alphaState,
 	ShaderpackPipelineBlendState blendState,
 	Map<String, List<Integer>> bufferSizes,
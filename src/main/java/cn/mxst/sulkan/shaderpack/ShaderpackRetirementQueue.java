@@ -0,0 +1,50 @@
+package cn.mxst.sulkan.shaderpack;
+
+import cn.mxst.sulkan.Sulkan;
+import java.util.ArrayDeque;
+import net.vulkanmod.vulkan.Renderer;
+
+public final class ShaderpackRetirementQueue {
+	private static final ArrayDeque<Retired> QUEUE = new ArrayDeque<>();
+	private static long frame;
+
+	private ShaderpackRetirementQueue() {
+	}
+
+	public static synchronized void retire(Runnable release) {
+		if (release != null) {
+			QUEUE.addLast(new Retired(frame, release));
+		}
+	}
+
+	public static void advanceFrame() {
+		int framesInFlight = Math.max(1, Renderer.getFramesNum());
+		while (true) {
+			Retired head;
+			synchronized (ShaderpackRetirementQueue.class) {
+				if (QUEUE.isEmpty()) {
+					frame++;
+					return;
+				}
+				head = QUEUE.peekFirst();
+				if (frame - head.frame() < framesInFlight) {
+					frame++;
+					return;
+				}
+				QUEUE.pollFirst();
+			}
+			release(head);
+		}
+	}
+
+	private static void release(Retired retired) {
+		try {
+			retired.release().run();
+		} catch (RuntimeException e) {
+			Sulkan.LOGGER.warn("Failed to release retired shaderpack GPU resource: {}", e.getMessage());
+		}
+	}
+
+	private record Retired(long frame, Runnable release) {
+	}
+}
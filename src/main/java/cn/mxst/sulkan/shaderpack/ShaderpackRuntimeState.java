@@ -0,0 +1,85 @@
+package cn.mxst.sulkan.shaderpack;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+final class ShaderpackRuntimeState {
+	static final String WORLD_KEY_NONE = "__none__";
+	static final ShaderpackRuntimeState EMPTY = new ShaderpackRuntimeState(null, null, null, null);
+
+	private final ShaderpackMetadata metadata;
+	private final Path path;
+	private final ShaderpackConfig config;
+	private final String fingerprint;
+	private final ShaderpackEnabledExpression.ConfigSnapshot enabledSnapshot;
+	private final ShaderpackOptionDependencies optionDependencies;
+	private final ConcurrentMap<String, Optional<ShaderpackPipelineProgram>> pipelineLookupCache = new ConcurrentHashMap<>();
+	private volatile String pipelineLookupWorldKey = WORLD_KEY_NONE;
+
+	ShaderpackRuntimeState(ShaderpackMetadata metadata, Path path, ShaderpackConfig config, String fingerprint) {
+		this(metadata, path, config, fingerprint, ShaderpackOptionDependencies.build(metadata));
+	}
+
+	private ShaderpackRuntimeState(
+		ShaderpackMetadata metadata,
+		Path path,
+		ShaderpackConfig config,
+		String fingerprint,
+		ShaderpackOptionDependencies optionDependencies
+	) {
+		this.metadata = metadata;
+		this.path = path;
+		this.config = config;
+		this.fingerprint = fingerprint;
+		this.enabledSnapshot = config == null
+			? ShaderpackEnabledExpression.ConfigSnapshot.EMPTY
+			: ShaderpackEnabledExpression.snapshot(config.values());
+		this.optionDependencies = optionDependencies;
+	}
+
+	ShaderpackRuntimeState withConfig(ShaderpackConfig config) {
+		return new ShaderpackRuntimeState(metadata, path, config, fingerprint, optionDependencies);
+	}
+
+	ShaderpackRuntimeState withMetadata(ShaderpackMetadata metadata) {
+		return new ShaderpackRuntimeState(metadata, path, config, fingerprint);
+	}
+
+	boolean isActive() {
+		return metadata != null;
+	}
+
+	ShaderpackMetadata metadata() {
+		return metadata;
+	}
+
+	Path path() {
+		return path;
+	}
+
+	ShaderpackConfig config() {
+		return config;
+	}
+
+	String fingerprint() {
+		return fingerprint;
+	}
+
+	ShaderpackEnabledExpression.ConfigSnapshot enabledSnapshot() {
+		return enabledSnapshot;
+	}
+
+	ShaderpackOptionDependencies optionDependencies() {
+		return optionDependencies;
+	}
+
+	ConcurrentMap<String, Optional<ShaderpackPipelineProgram>> pipelineLookupCache(String worldKey) {
+		if (!worldKey.equals(pipelineLookupWorldKey)) {
+			pipelineLookupWorldKey = worldKey;
+			pipelineLookupCache.clear();
+		}
+		return pipelineLookupCache;
+	}
+}
@@ -0,0 +1,386 @@
+package cn.mxst.sulkan.shaderpack;
+
+import cn.mxst.sulkan.Sulkan;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.math.Vec3d;
+import net.vulkanmod.vulkan.Renderer;
+import net.vulkanmod.vulkan.Vulkan;
+import org.lwjgl.PointerBuffer;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.vulkan.VK10;
+import org.lwjgl.vulkan.VkBufferCreateInfo;
+import org.lwjgl.vulkan.VkDescriptorBufferInfo;
+import org.lwjgl.vulkan.VkDescriptorPoolCreateInfo;
+import org.lwjgl.vulkan.VkDescriptorPoolSize;
+import org.lwjgl.vulkan.VkDescriptorSetAllocateInfo;
+import org.lwjgl.vulkan.VkDescriptorSetLayoutBinding;
+import org.lwjgl.vulkan.VkDescriptorSetLayoutCreateInfo;
+import org.lwjgl.vulkan.VkDevice;
+import org.lwjgl.vulkan.VkMemoryAllocateInfo;
+import org.lwjgl.vulkan.VkMemoryRequirements;
+import org.lwjgl.vulkan.VkPhysicalDeviceMemoryProperties;
+import org.lwjgl.vulkan.VkWriteDescriptorSet;
+
+public final class ShaderpackRuntimeUniforms {
+	static final String INCLUDE_PATH = "sulkan/runtime.glsl";
+	static final int MAX_LIVE_OPTIONS = 32;
+	static final int DESCRIPTOR_SET = 1;
+	private static final int VEC4_SIZE = 16;
+	private static final int HEADER_VECTORS = 5;
+	private static final int BUFFER_SIZE = (HEADER_VECTORS + MAX_LIVE_OPTIONS) * VEC4_SIZE;
+	private static final String LIVE_MACRO_PREFIX = "SULKAN_LIVE_";
+	private static long descriptorSetLayout;
+	private static long descriptorPool;
+	private static Slot[] slots;
+	private static boolean failed;
+	private static long frameIndex;
+	private static long startNanos;
+	private static long lastFrameNanos;
+	private static volatile LiveLayout cachedLayout = LiveLayout.EMPTY;
+
+	private ShaderpackRuntimeUniforms() {
+	}
+
+	static boolean isInclude(String includeRef) {
+		return includeRef != null && INCLUDE_PATH.equals(ShaderpackPipelineProgram.normalizePath(includeRef.trim()));
+	}
+
+	static String includeSource(ShaderpackMetadata metadata) {
+		List<String> lines = new ArrayList<>();
+		lines.add("#ifndef SULKAN_RUNTIME_GLSL");
+		lines.add("#define SULKAN_RUNTIME_GLSL");
+		lines.add("#ifndef SULKAN_SHADER_COMPUTE");
+		lines.add("#error \"" + INCLUDE_PATH + " is only available to compute programs\"");
+		lines.add("#endif");
+		lines.add("layout(std140, set = " + DESCRIPTOR_SET + ", binding = 0) uniform SulkanRuntime {");
+		lines.add("\tuvec4 frame;");
+		lines.add("\tvec4 time;");
+		lines.add("\tvec4 resolution;");
+		lines.add("\tvec4 cameraPosition;");
+		lines.add("\tvec4 cameraRotation;");
+		lines.add("\tvec4 options[" + MAX_LIVE_OPTIONS + "];");
+		lines.add("} sulkan_runtime;");
+		lines.add("#define SULKAN_FRAME_INDEX sulkan_runtime.frame.x");
+		lines.add("#define SULKAN_FRAME_SLOT sulkan_runtime.frame.y");
+		lines.add("#define SULKAN_HISTORY_VALID (sulkan_runtime.frame.z != 0u)");
+		lines.add("#define SULKAN_TIME_SECONDS sulkan_runtime.time.x");
+		lines.add("#define SULKAN_TIME_DELTA sulkan_runtime.time.y");
+		lines.add("#define SULKAN_RESOLUTION sulkan_runtime.resolution.xy");
+		lines.add("#define SULKAN_TEXEL_SIZE sulkan_runtime.resolution.zw");
+		lines.add("#define SULKAN_CAMERA_POSITION sulkan_runtime.cameraPosition.xyz");
+		lines.add("#define SULKAN_CAMERA_YAW sulkan_runtime.cameraRotation.x");
+		lines.add("#define SULKAN_CAMERA_PITCH sulkan_runtime.cameraRotation.y");
+		List<ShaderpackOptionDecl> live = layout(metadata).options;
+		for (int i = 0; i < live.size(); i++) {
+			ShaderpackOptionDecl option = live.get(i);
+			String field = "sulkan_runtime.options[" + i + "].x";
+			String expression = switch (option.type().toLowerCase(Locale.ROOT)) {
+				case "bool" -> "(" + field + " != 0.0)";
+				case "float" -> field;
+				default -> "int(" + field + ")";
+			};
+			lines.add("#define " + LIVE_MACRO_PREFIX + ShaderpackShaderApplier.toMacroToken(option.path()) + " " + expression);
+		}
+		lines.add("#endif");
+		return String.join("\n", lines) + "\n";
+	}
+
+	static synchronized long descriptorSetLayout() {
+		if (descriptorSetLayout != 0L) {
+			return descriptorSetLayout;
+		}
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			VkDescriptorSetLayoutBinding.Buffer bindings = VkDescriptorSetLayoutBinding.calloc(2, stack);
+			bindings.get(0)
+				.binding(0)
+				.descriptorCount(1)
+				.descriptorType(VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER)
+				.stageFlags(VK10.VK_SHADER_STAGE_COMPUTE_BIT);
+			bindings.get(1)
+				.binding(ShaderpackIdLookup.BINDING)
+				.descriptorCount(1)
+				.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER)
+				.stageFlags(VK10.VK_SHADER_STAGE_COMPUTE_BIT);
+			VkDescriptorSetLayoutCreateInfo info = VkDescriptorSetLayoutCreateInfo.calloc(stack);
+			info.sType$Default();
+			info.pBindings(bindings);
+			LongBuffer pLayout = stack.mallocLong(1);
+			int result = VK10.vkCreateDescriptorSetLayout(Vulkan.getVkDevice(), info, null, pLayout);
+			if (result != VK10.VK_SUCCESS) {
+				throw new RuntimeException("vkCreateDescriptorSetLayout failed: " + result);
+			}
+			descriptorSetLayout = pLayout.get(0);
+			return descriptorSetLayout;
+		}
+	}
+
+	static synchronized long update(ShaderpackConfig config, ShaderpackMetadata metadata, int width, int height, boolean historyValid) {
+		if (failed) {
+			return 0L;
+		}
+		if (slots == null) {
+			try {
+				slots = createSlots();
+			} catch (RuntimeException e) {
+				failed = true;
+				Sulkan.LOGGER.warn("Shaderpack runtime uniforms unavailable: {}", e.getMessage());
+				return 0L;
+			}
+		}
+		int frame = Renderer.getCurrentFrame();
+		Slot slot = slots[Math.floorMod(frame, slots.length)];
+		bindIdLookup(slot, ShaderpackIdLookup.buffer(metadata));
+		long now = System.nanoTime();
+		if (startNanos == 0L) {
+			startNanos = now;
+			lastFrameNanos = now;
+		}
+		ByteBuffer data = slot.uniforms.mapped();
+		data.putInt(0, (int) frameIndex);
+		data.putInt(4, frame);
+		data.putInt(8, historyValid ? 1 : 0);
+		data.putInt(12, 0);
+		putVec4(data, 1, (now - startNanos) / 1.0e9f, (now - lastFrameNanos) / 1.0e9f, 0.0f, 0.0f);
+		putVec4(data, 2, width, height, width > 0 ? 1.0f / width : 0.0f, height > 0 ? 1.0f / height : 0.0f);
+		writeCamera(data);
+		List<ShaderpackOptionDecl> live = layout(metadata).options;
+		for (int i = 0; i < live.size(); i++) {
+			ShaderpackOptionDecl option = live.get(i);
+			putVec4(data, HEADER_VECTORS + i, liveValue(option, config == null ? null : config.getValue(option.path())), 0.0f, 0.0f, 0.0f);
+		}
+		frameIndex++;
+		lastFrameNanos = now;
+		return slot.descriptorSet;
+	}
+
+	// Called before the Vulkan device goes away; a later device re-creates everything on first use.
+	public static synchronized void destroy() {
+		VkDevice device = Vulkan.getVkDevice();
+		if (device == null) {
+			return;
+		}
+		Vulkan.waitIdle();
+		ShaderpackIdLookup.destroy();
+		if (slots != null) {
+			for (Slot slot : slots) {
+				slot.uniforms.destroy();
+			}
+			slots = null;
+		}
+		if (descriptorPool != 0L) {
+			VK10.vkDestroyDescriptorPool(device, descriptorPool, null);
+			descriptorPool = 0L;
+		}
+		if (descriptorSetLayout != 0L) {
+			VK10.vkDestroyDescriptorSetLayout(device, descriptorSetLayout, null);
+			descriptorSetLayout = 0L;
+		}
+		failed = false;
+		frameIndex = 0L;
+		startNanos = 0L;
+		lastFrameNanos = 0L;
+	}
+
+	private static LiveLayout layout(ShaderpackMetadata metadata) {
+		LiveLayout local = cachedLayout;
+		if (local.metadata == metadata) {
+			return local;
+		}
+		List<ShaderpackOptionDecl> options = new ArrayList<>();
+		if (metadata != null) {
+			for (ShaderpackOptionDecl option : ShaderpackShaderApplier.flattenOptions(metadata.options)) {
+				if (option != null && option.live() && options.size() < MAX_LIVE_OPTIONS) {
+					options.add(option);
+				}
+			}
+		}
+		LiveLayout built = new LiveLayout(metadata, List.copyOf(options));
+		cachedLayout = built;
+		return built;
+	}
+
+	private static void writeCamera(ByteBuffer data) {
+		MinecraftClient client = MinecraftClient.getInstance();
+		Entity camera = client == null ? null : client.getCameraEntity();
+		if (camera == null) {
+			putVec4(data, 3, 0.0f, 0.0f, 0.0f, 0.0f);
+			putVec4(data, 4, 0.0f, 0.0f, 0.0f, 0.0f);
+			return;
+		}
+		Vec3d eye = camera.getEyePos();
+		putVec4(data, 3, (float) eye.x, (float) eye.y, (float) eye.z, 1.0f);
+		putVec4(data, 4, camera.getYaw(), camera.getPitch(), 0.0f, 0.0f);
+	}
+
+	private static float liveValue(ShaderpackOptionDecl option, Object value) {
+		Object effective = value == null ? option.defaultValue() : value;
+		return switch (option.type().toLowerCase(Locale.ROOT)) {
+			case "bool" -> Boolean.TRUE.equals(effective) ? 1.0f : 0.0f;
+			case "enum" -> option.values() == null || effective == null ? 0.0f : Math.max(0, option.values().indexOf(effective.toString()));
+			default -> effective instanceof Number number ? number.floatValue() : 0.0f;
+		};
+	}
+
+	private static void putVec4(ByteBuffer data, int vector, float x, float y, float z, float w) {
+		int offset = vector * VEC4_SIZE;
+		data.putFloat(offset, x);
+		data.putFloat(offset + 4, y);
+		data.putFloat(offset + 8, z);
+		data.putFloat(offset + 12, w);
+	}
+
+	private static void bindIdLookup(Slot slot, HostBuffer lookup) {
+		if (lookup == null || slot.boundLookup == lookup) {
+			return;
+		}
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			VkDescriptorBufferInfo.Buffer bufferDescriptor = VkDescriptorBufferInfo.calloc(1, stack);
+			bufferDescriptor.get(0)
+				.buffer(lookup.buffer())
+				.offset(0L)
+				.range(VK10.VK_WHOLE_SIZE);
+			VkWriteDescriptorSet.Buffer write = VkWriteDescriptorSet.calloc(1, stack);
+			write.get(0)
+				.sType$Default()
+				.dstSet(slot.descriptorSet)
+				.dstBinding(ShaderpackIdLookup.BINDING)
+				.descriptorCount(1)
+				.descriptorType(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER)
+				.pBufferInfo(bufferDescriptor);
+			VK10.vkUpdateDescriptorSets(Vulkan.getVkDevice(), write, null);
+		}
+		slot.boundLookup = lookup;
+	}
+
+	private static Slot[] createSlots() {
+		int frames = Math.max(1, Renderer.getFramesNum());
+		long layout = descriptorSetLayout();
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			VkDescriptorPoolSize.Buffer poolSizes = VkDescriptorPoolSize.calloc(2, stack);
+			poolSizes.get(0)
+				.type(VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER)
+				.descriptorCount(frames);
+			poolSizes.get(1)
+				.type(VK10.VK_DESCRIPTOR_TYPE_STORAGE_BUFFER)
+				.descriptorCount(frames);
+			VkDescriptorPoolCreateInfo poolInfo = VkDescriptorPoolCreateInfo.calloc(stack);
+			poolInfo.sType$Default();
+			poolInfo.maxSets(frames);
+			poolInfo.pPoolSizes(poolSizes);
+			LongBuffer pPool = stack.mallocLong(1);
+			check(VK10.vkCreateDescriptorPool(Vulkan.getVkDevice(), poolInfo, null, pPool), "vkCreateDescriptorPool");
+			descriptorPool = pPool.get(0);
+
+			Slot[] created = new Slot[frames];
+			for (int i = 0; i < frames; i++) {
+				created[i] = createSlot(layout, stack);
+			}
+			return created;
+		}
+	}
+
+	private static Slot createSlot(long layout, MemoryStack stack) {
+		HostBuffer uniforms = createHostBuffer(BUFFER_SIZE, VK10.VK_BUFFER_USAGE_UNIFORM_BUFFER_BIT, "runtime_uniforms", stack);
+
+		VkDescriptorSetAllocateInfo setInfo = VkDescriptorSetAllocateInfo.calloc(stack);
+		setInfo.sType$Default();
+		setInfo.descriptorPool(descriptorPool);
+		setInfo.pSetLayouts(stack.longs(layout));
+		LongBuffer pSet = stack.mallocLong(1);
+		check(VK10.vkAllocateDescriptorSets(Vulkan.getVkDevice(), setInfo, pSet), "vkAllocateDescriptorSets");
+		long descriptorSet = pSet.get(0);
+
+		VkDescriptorBufferInfo.Buffer bufferDescriptor = VkDescriptorBufferInfo.calloc(1, stack);
+		bufferDescriptor.get(0)
+			.buffer(uniforms.buffer())
+			.offset(0L)
+			.range(BUFFER_SIZE);
+		VkWriteDescriptorSet.Buffer write = VkWriteDescriptorSet.calloc(1, stack);
+		write.get(0)
+			.sType$Default()
+			.dstSet(descriptorSet)
+			.dstBinding(0)
+			.descriptorCount(1)
+			.descriptorType(VK10.VK_DESCRIPTOR_TYPE_UNIFORM_BUFFER)
+			.pBufferInfo(bufferDescriptor);
+		VK10.vkUpdateDescriptorSets(Vulkan.getVkDevice(), write, null);
+		return new Slot(uniforms, descriptorSet);
+	}
+
+	static HostBuffer createHostBuffer(long size, int usage, String owner, MemoryStack stack) {
+		VkBufferCreateInfo bufferInfo = VkBufferCreateInfo.calloc(stack);
+		bufferInfo.sType$Default();
+		bufferInfo.size(size);
+		bufferInfo.usage(usage);
+		bufferInfo.sharingMode(VK10.VK_SHARING_MODE_EXCLUSIVE);
+		LongBuffer pBuffer = stack.mallocLong(1);
+		check(VK10.vkCreateBuffer(Vulkan.getVkDevice(), bufferInfo, null, pBuffer), "vkCreateBuffer");
+		long buffer = pBuffer.get(0);
+
+		VkMemoryRequirements requirements = VkMemoryRequirements.malloc(stack);
+		VK10.vkGetBufferMemoryRequirements(Vulkan.getVkDevice(), buffer, requirements);
+		VkMemoryAllocateInfo allocInfo = VkMemoryAllocateInfo.calloc(stack);
+		allocInfo.sType$Default();
+		allocInfo.allocationSize(requirements.size());
+		allocInfo.memoryTypeIndex(findHostVisibleMemoryType(requirements.memoryTypeBits(), stack));
+		LongBuffer pMemory = stack.mallocLong(1);
+		check(VK10.vkAllocateMemory(Vulkan.getVkDevice(), allocInfo, null, pMemory), "vkAllocateMemory");
+		long memory = pMemory.get(0);
+		check(VK10.vkBindBufferMemory(Vulkan.getVkDevice(), buffer, memory, 0L), "vkBindBufferMemory");
+		PointerBuffer pMapped = stack.mallocPointer(1);
+		check(VK10.vkMapMemory(Vulkan.getVkDevice(), memory, 0L, size, 0, pMapped), "vkMapMemory");
+		ByteBuffer mapped = MemoryUtil.memByteBuffer(pMapped.get(0), (int) size);
+		MemoryUtil.memSet(mapped, 0);
+		ShaderpackVramLedger.record(buffer, ShaderpackVramLedger.Category.BUFFER, owner, requirements.size());
+		return new HostBuffer(buffer, memory, mapped);
+	}
+
+	private static int findHostVisibleMemoryType(int typeBits, MemoryStack stack) {
+		VkPhysicalDeviceMemoryProperties properties = VkPhysicalDeviceMemoryProperties.malloc(stack);
+		VK10.vkGetPhysicalDeviceMemoryProperties(Vulkan.getVkDevice().getPhysicalDevice(), properties);
+		int required = VK10.VK_MEMORY_PROPERTY_HOST_VISIBLE_BIT | VK10.VK_MEMORY_PROPERTY_HOST_COHERENT_BIT;
+		for (int i = 0; i < properties.memoryTypeCount(); i++) {
+			if ((typeBits & (1 << i)) != 0 && (properties.memoryTypes(i).propertyFlags() & required) == required) {
+				return i;
+			}
+		}
+		throw new RuntimeException("No host-visible coherent memory type for shaderpack runtime buffers.");
+	}
+
+	private static void check(int result, String call) {
+		if (result != VK10.VK_SUCCESS) {
+			throw new RuntimeException(call + " failed: " + result);
+		}
+	}
+
+	record HostBuffer(long buffer, long memory, ByteBuffer mapped) {
+		void destroy() {
+			ShaderpackVramLedger.release(buffer);
+			VK10.vkUnmapMemory(Vulkan.getVkDevice(), memory);
+			VK10.vkDestroyBuffer(Vulkan.getVkDevice(), buffer, null);
+			VK10.vkFreeMemory(Vulkan.getVkDevice(), memory, null);
+		}
+	}
+
+	private static final class Slot {
+		private final HostBuffer uniforms;
+		private final long descriptorSet;
+		private HostBuffer boundLookup;
+
+		private Slot(HostBuffer uniforms, long descriptorSet) {
+			this.uniforms = uniforms;
+			this.descriptorSet = descriptorSet;
+		}
+	}
+
+	private record LiveLayout(ShaderpackMetadata metadata, List<ShaderpackOptionDecl> options) {
+		private static final LiveLayout EMPTY = new LiveLayout(null, List.of());
+	}
+}
@@ -11,8 +11,12 @@ import java.nio.file.FileSystemNotFoundException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
@@ -24,24 +28,19 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import net.minecraft.client.MinecraftClient;
 
 public final class ShaderpackShaderApplier {
 	private static final String ASSETS_ROOT = "/assets/vulkanmod/";
 	private static final String JAR_ASSETS_ROOT = "!/assets/vulkanmod/";
 	private static final String SHADERS_PREFIX = "shaders/";
-	private static final String MARKER_PREFIX = "@SULKAN:";
-	private static final String PARAM_MARKER_PREFIX = "@SULKAN_PARAM:";
-	private static final String MARKER_SUFFIX = "@";
 	private static final String USE_FILE_KEY = "[use_file]";
 	private static final int MAX_INCLUDE_DEPTH = 16;
 	private static final List<String> COMPATIBILITY_VARIANT_SUFFIXES = List.of(".sulkan", ".vulkan");
 	private static final List<String> COMPATIBILITY_VARIANT_ROOTS = List.of("shaders/sulkan/", "shaders/vulkan/");
 	private static final Pattern GLSL_VERSION_PATTERN = Pattern.compile("(?m)^\\s*#version\\s+(\\d+)(?:\\s+(\\w+))?");
-	private static final Pattern INCLUDE_DIRECTIVE_PATTERN = Pattern.compile("(?m)^\\s*#include\\s+([\"<])([^\">]+)[\">]\\s*(?://.*)?$");
-	private static final Pattern PRAGMA_ONCE_PATTERN = Pattern.compile("(?m)^\\s*#pragma\\s+once\\s*(?://.*)?$");
+	private static final Pattern EXTENSION_DIRECTIVE_PATTERN = Pattern.compile("(?m)^\\s*#extension\\b.*$");
+	private static final int LINE_DIRECTIVE_RESERVE = 32;
 	private static final Pattern NON_OPAQUE_UNIFORM_PATTERN = Pattern.compile(
 		"(?m)^\\s*uniform\\s+(?!(sampler|image|subpassInput|accelerationStructure|atomic_uint)\\b)[A-Za-z_][A-Za-z0-9_]*\\s+[A-Za-z_][A-Za-z0-9_]*(\\s*\\[[^\\]]*\\])?\\s*;"
 	);
@@ -60,6 +59,9 @@ public final class ShaderpackShaderApplier {
 	private static final Set<String> exportWriteErrors = ConcurrentHashMap.newKeySet();
 	private static final Set<String> replacementLogs = ConcurrentHashMap.newKeySet();
 	private static volatile ApplierCache cache = ApplierCache.EMPTY;
+	private static volatile ApplierCache preparedCache = ApplierCache.EMPTY;
+	private static final ConcurrentMap<String, ServedShader> servedShaders = new ConcurrentHashMap<>();
+	private static volatile boolean pipelineManagerLoading;
 
 	private ShaderpackShaderApplier() {
 	}
@@ -71,6 +73,38 @@ public final class ShaderpackShaderApplier {
 		replacementLogs.clear();
 	}
 
+	static ApplierCache prepareCache(ShaderpackMetadata metadata) {
+		if (metadata == null) {
+			return ApplierCache.EMPTY;
+		}
+		ApplierCache prepared = ApplierCache.build(metadata);
+		prepared.warmPipelineDefines();
+		return prepared;
+	}
+
+	static void installPreparedCache(ApplierCache prepared) {
+		preparedCache = prepared == null ? ApplierCache.EMPTY : prepared;
+	}
+
+	static void rebaseCache(ShaderpackMetadata previous, ShaderpackMetadata next) {
+		ApplierCache local = cache;
+		ApplierCache prepared = local.matches(previous) ? local.rebase(next) : ApplierCache.build(next);
+		prepared.warmPipelineDefines();
+		preparedCache = prepared;
+	}
+
+	static SourceImpact invalidateSources(Set<String> changedPaths) {
+		SourceImpact impact = cache.invalidate(changedPaths);
+		if (!impact.sources().isEmpty()) {
+			exportedShaderKeys.clear();
+		}
+		return impact;
+	}
+
+	static void clearExportedShaders() {
+		exportedShaderKeys.clear();
+	}
+
 	public static CacheStats getCacheStats() {
 		return cache.snapshotStats();
 	}
@@ -80,6 +114,81 @@ public final class ShaderpackShaderApplier {
 		if (relativePath == null || !relativePath.startsWith(SHADERS_PREFIX)) {
 			return null;
 		}
+		ServedResult result = resolveServedResult(uriString, relativePath);
+		boolean pipelineManager = pipelineManagerLoading;
+		servedShaders.merge(
+			uriString,
+			new ServedShader(result.hash(), pipelineManager, result.targets()),
+			(previous, current) -> new ServedShader(current.hash(), previous.pipelineManager() || current.pipelineManager(), current.targets())
+		);
+		return result.bytes() == null ? null : new ByteArrayInputStream(result.bytes());
+	}
+
+	private static ServedResult resolveServedResult(String uriString, String relativePath) {
+		ShaderpackMetadata metadata = ShaderpackManager.getActiveShaderpack();
+		if (!SulkanConfig.get().enableShaderpack || metadata == null) {
+			return ServedResult.NONE;
+		}
+		ApplierCache context = ensureCache(metadata);
+		ShaderpackPipelineProgram program = ShaderpackManager.resolveActivePipelineProgram(normalizePath(relativePath));
+		ShaderpackConfig config = ShaderpackManager.getActiveConfig();
+		List<String> worldCandidates = ShaderpackManager.getCachedWorldCandidates();
+		ServedResult cached = context.servedResults.get(uriString);
+		if (cached != null && cached.matches(program, config, worldCandidates)) {
+			context.recordServedLookup(true);
+			return cached;
+		}
+		context.recordServedLookup(false);
+		Set<String> targets = new LinkedHashSet<>();
+		String source = resolveReplacedSource(uriString, relativePath, targets);
+		ServedResult result = new ServedResult(
+			program,
+			config,
+			worldCandidates,
+			source == null ? null : source.getBytes(StandardCharsets.UTF_8),
+			sourceHash(source),
+			Set.copyOf(targets)
+		);
+		context.servedResults.put(uriString, result);
+		return result;
+	}
+
+	public static void setPipelineManagerLoading(boolean loading) {
+		pipelineManagerLoading = loading;
+	}
+
+	public static RebuildScope detectChangedShaders() {
+		return detectChangedShaders(null, Set.of());
+	}
+
+	public static RebuildScope detectChangedShaders(Set<String> optionTargets, Set<String> specializedTargets) {
+		Set<String> reach = optionTargets == null ? null : cache.expandIncluders(optionTargets);
+		Set<String> specializedReach = specializedTargets.isEmpty() ? Set.of() : cache.expandIncluders(specializedTargets);
+		RebuildScope scope = RebuildScope.NONE;
+		for (Map.Entry<String, ServedShader> entry : servedShaders.entrySet()) {
+			boolean specialized = !Collections.disjoint(entry.getValue().targets(), specializedReach);
+			if (!specialized) {
+				if (reach != null && Collections.disjoint(entry.getValue().targets(), reach)) {
+					continue;
+				}
+				String source = resolveReplacedSource(entry.getKey(), extractRelativePath(entry.getKey()), null);
+				if (sourceHash(source) == entry.getValue().hash()) {
+					continue;
+				}
+			}
+			if (!entry.getValue().pipelineManager()) {
+				return RebuildScope.RESOURCES;
+			}
+			scope = RebuildScope.PIPELINES;
+		}
+		return scope;
+	}
+
+	private static long sourceHash(String source) {
+		return source == null ? 0L : ((long) source.length() << 32) | (source.hashCode() & 0xFFFFFFFFL);
+	}
+
+	private static String resolveReplacedSource(String uriString, String relativePath, Set<String> reachedTargets) {
 		SulkanConfig config = SulkanConfig.get();
 		if (!config.enableShaderpack) {
 			return null;
@@ -109,6 +218,9 @@ public final class ShaderpackShaderApplier {
 		if (mappedPath != null) {
 			targetCandidates = withExtraCandidate(targetCandidates, mappedPath);
 		}
+		if (reachedTargets != null) {
+			reachedTargets.addAll(targetCandidates);
+		}
 		List<ShaderpackOptionDecl> matchedOptions = collectTargetOptions(context, targetCandidates);
 		ShaderpackOptionDecl fileReplacement = null;
 		List<ShaderpackOptionDecl> targetOptions = new ArrayList<>();
@@ -161,19 +273,24 @@ public final class ShaderpackShaderApplier {
 				return null;
 			}
 		}
-		source = resolveIncludes(source, sourcePath, context);
-		if (pipelineProgram != null && pipelineProgram.params() != null && !pipelineProgram.params().isEmpty()) {
-			source = applyPipelineParams(source, pipelineProgram.params());
-		}
-		if (!targetOptions.isEmpty()) {
-			source = applyMarkers(source, targetOptions, shaderConfig);
+		if (reachedTargets != null) {
+			reachedTargets.add(normalizePath(sourcePath));
 		}
+		source = resolveIncludes(source, sourcePath, context);
+		ShaderpackMarkerTable markers = context.markerTable(
+			normalizedTarget,
+			targetOptions,
+			shaderConfig,
+			pipelineProgram == null ? null : pipelineProgram.params(),
+			ShaderpackSpecialization.layout(metadata)
+		);
+		source = applyMarkers(source, sourcePath, markers, context);
 		if (pipelineProgram != null && isShaderTextPath(normalizedTarget.toLowerCase(Locale.ROOT))) {
-			source = injectPipelineInterfaceDefines(source, pipelineProgram, normalizedTarget);
+			source = injectPipelineInterfaceDefines(source, pipelineProgram, normalizedTarget, context);
 		}
 		logReplacementOnce(normalizedTarget, sourcePath, pipelineProgram);
 		maybeExportShader(normalizedTarget, sourcePath, pipelineProgram, source);
-		return new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8));
+		return source;
 	}
 
 	private static void logReplacementOnce(String requestPath, String resolvedPath, ShaderpackPipelineProgram program) {
@@ -208,7 +325,7 @@ public final class ShaderpackShaderApplier {
 		return normalizePath(relative);
 	}
 
-	private static String normalizeTarget(String target) {
+	static String normalizeTarget(String target) {
 		String normalized = normalizePath(target);
 		if (!normalized.startsWith(SHADERS_PREFIX)) {
 			normalized = SHADERS_PREFIX + normalized;
@@ -249,7 +366,9 @@ public final class ShaderpackShaderApplier {
 		if (local.matches(metadata)) {
 			return local;
 		}
-		ApplierCache rebuilt = ApplierCache.build(metadata);
+		ApplierCache prepared = preparedCache;
+		preparedCache = ApplierCache.EMPTY;
+		ApplierCache rebuilt = prepared.matches(metadata) ? prepared : ApplierCache.build(metadata);
 		cache = rebuilt;
 		return rebuilt;
 	}
@@ -338,6 +457,7 @@ public final class ShaderpackShaderApplier {
 	private static ShaderSourceCandidate resolveShaderSource(ApplierCache context, String requestedPath, String kind) {
 		String normalized = normalizePath(requestedPath);
 		for (String candidatePath : buildShaderSourceCandidates(normalized)) {
+			context.recordRoot(candidatePath, kind);
 			String candidateSource = context.readShaderpackText(candidatePath);
 			if (candidateSource == null) {
 				continue;
@@ -379,6 +499,7 @@ public final class ShaderpackShaderApplier {
 	private static ShaderSourceCandidate resolveRawShaderSource(ApplierCache context, String requestedPath, String kind) {
 		String normalized = normalizePath(requestedPath);
 		for (String candidatePath : buildShaderSourceCandidates(normalized)) {
+			context.recordRoot(candidatePath, kind);
 			String candidateSource = context.readShaderpackText(candidatePath);
 			if (candidateSource == null) {
 				continue;
@@ -405,12 +526,17 @@ public final class ShaderpackShaderApplier {
 			return null;
 		}
 		String source = resolveIncludes(candidate.source(), candidate.path(), context);
-		if (pipelineProgram.params() != null && !pipelineProgram.params().isEmpty()) {
-			source = applyPipelineParams(source, pipelineProgram.params());
-		}
+		ShaderpackMarkerTable markers = context.markerTable(
+			candidate.path(),
+			List.of(),
+			ShaderpackManager.getActiveConfig(),
+			pipelineProgram.params(),
+			ShaderpackSpecialization.layout(metadata)
+		);
+		source = applyMarkers(source, candidate.path(), markers, context);
 		String lowerPath = normalizePath(candidate.path()).toLowerCase(Locale.ROOT);
 		if (isShaderTextPath(lowerPath)) {
-			source = injectPipelineInterfaceDefines(source, pipelineProgram, candidate.path());
+			source = injectPipelineInterfaceDefines(source, pipelineProgram, candidate.path(), context);
 		}
 		maybeExportShader(candidate.path(), candidate.path(), pipelineProgram, source);
 		return new LoadedSource(candidate.path(), source);
@@ -489,83 +615,122 @@ public final class ShaderpackShaderApplier {
 		if (source == null || sourcePath == null || !source.contains("#include")) {
 			return source;
 		}
-		return resolveIncludesRecursive(source, normalizePath(sourcePath), context, 0, new LinkedHashSet<>(), new LinkedHashSet<>());
+		ShaderpackParsedSource parsed = ShaderpackParsedSource.parse(source);
+		if (!parsed.hasIncludes() && !parsed.pragmaOnce()) {
+			return source;
+		}
+		String rootPath = normalizePath(sourcePath);
+		StringBuilder out = new StringBuilder(estimateIncludedLength(parsed, rootPath, context, 0, new HashSet<>()));
+		appendIncludes(out, parsed, rootPath, 0, context, 0, new LinkedHashSet<>(), new LinkedHashSet<>(), new int[] {1});
+		return out.toString();
 	}
 
-	private static String resolveIncludesRecursive(
-		String source,
+	private static int estimateIncludedLength(
+		ShaderpackParsedSource parsed,
 		String sourcePath,
 		ApplierCache context,
 		int depth,
-		Set<String> includeStack,
-		Set<String> pragmaOnceIncludes
+		Set<String> visited
 	) {
-		if (depth > MAX_INCLUDE_DEPTH) {
-			Sulkan.LOGGER.warn("Shader include depth exceeded while processing '{}'.", sourcePath);
-			return source;
-		}
-		if (pragmaOnceIncludes.contains(sourcePath)) {
-			return "";
+		long length = parsed.textLength();
+		if (depth <= MAX_INCLUDE_DEPTH) {
+			for (ShaderpackParsedSource.Chunk chunk : parsed.chunks()) {
+				if (chunk instanceof ShaderpackParsedSource.Include include) {
+					IncludeSource included = loadIncludeSource(sourcePath, include.reference(), context);
+					if (included != null && visited.add(included.path())) {
+						length += LINE_DIRECTIVE_RESERVE + estimateIncludedLength(included.parsed(), included.path(), context, depth + 1, visited);
+					}
+				}
+			}
 		}
+		return (int) Math.min(Integer.MAX_VALUE - 8, length);
+	}
 
-		boolean hasPragmaOnce = PRAGMA_ONCE_PATTERN.matcher(source).find();
-		String sourceBody = hasPragmaOnce ? PRAGMA_ONCE_PATTERN.matcher(source).replaceAll("") : source;
-		if (hasPragmaOnce) {
+	private static void appendIncludes(
+		StringBuilder out,
+		ShaderpackParsedSource parsed,
+		String sourcePath,
+		int fileIndex,
+		ApplierCache context,
+		int depth,
+		Set<String> includeStack,
+		Set<String> pragmaOnceIncludes,
+		int[] nextFileIndex
+	) {
+		if (parsed.pragmaOnce()) {
 			pragmaOnceIncludes.add(sourcePath);
 		}
-
-		Matcher matcher = INCLUDE_DIRECTIVE_PATTERN.matcher(sourceBody);
-		StringBuffer out = new StringBuffer();
-		boolean changed = false;
-		while (matcher.find()) {
-			String includeRef = matcher.group(2);
-			IncludeSource includeSource = loadIncludeSource(sourcePath, includeRef, context);
+		for (ShaderpackParsedSource.Chunk chunk : parsed.chunks()) {
+			if (chunk instanceof ShaderpackParsedSource.Text text) {
+				out.append(text.text());
+				continue;
+			}
+			ShaderpackParsedSource.Include include = (ShaderpackParsedSource.Include) chunk;
+			IncludeSource includeSource = loadIncludeSource(sourcePath, include.reference(), context);
 			if (includeSource == null) {
-				Sulkan.LOGGER.warn("Shader include '{}' not found while processing '{}'.", includeRef, sourcePath);
-				matcher.appendReplacement(out, "");
-				changed = true;
+				Sulkan.LOGGER.warn("Shader include '{}' not found while processing '{}'.", include.reference(), sourcePath);
+				continue;
+			}
+			if (pragmaOnceIncludes.contains(includeSource.path())) {
+				continue;
+			}
+			if (depth + 1 > MAX_INCLUDE_DEPTH) {
+				Sulkan.LOGGER.warn("Shader include depth exceeded while processing '{}'.", includeSource.path());
 				continue;
 			}
 			if (!includeStack.add(includeSource.path())) {
 				Sulkan.LOGGER.warn("Shader include cycle detected for '{}'.", includeSource.path());
-				matcher.appendReplacement(out, "");
-				changed = true;
 				continue;
 			}
-			String resolved = resolveIncludesRecursive(
-				includeSource.source(),
+			int includedIndex = nextFileIndex[0]++;
+			out.append("#line 1 ").append(includedIndex).append('\n');
+			appendIncludes(
+				out,
+				includeSource.parsed(),
 				includeSource.path(),
+				includedIndex,
 				context,
 				depth + 1,
 				includeStack,
-				pragmaOnceIncludes
+				pragmaOnceIncludes,
+				nextFileIndex
 			);
 			includeStack.remove(includeSource.path());
-			matcher.appendReplacement(out, Matcher.quoteReplacement(resolved));
-			changed = true;
+			out.append("\n#line ").append(include.line() + 1).append(' ').append(fileIndex);
 		}
-		if (!changed) {
-			return sourceBody;
-		}
-		matcher.appendTail(out);
-		return out.toString();
 	}
 
 	private static IncludeSource loadIncludeSource(String sourcePath, String includeRef, ApplierCache context) {
+		if (ShaderpackRuntimeUniforms.isInclude(includeRef)) {
+			return context.runtimeInclude();
+		}
+		if (ShaderpackIdLookup.isInclude(includeRef)) {
+			return context.idsInclude();
+		}
+		String resolvedPath = context.resolveInclude(sourcePath, includeRef);
+		if (resolvedPath == null) {
+			return null;
+		}
+		ShaderpackParsedSource parsed = context.parsedInclude(resolvedPath);
+		return parsed == null ? null : new IncludeSource(resolvedPath, parsed);
+	}
+
+	private static String findIncludePath(String sourcePath, String includeRef, ApplierCache context) {
 		LinkedHashSet<String> candidates = includeCandidates(sourcePath, includeRef);
 		for (String candidate : candidates) {
-			String shaderpackSource = context.readShaderpackText(candidate);
-			if (shaderpackSource != null) {
-				return new IncludeSource(candidate, shaderpackSource);
-			}
-			String bundledSource = readBundledShaderText(candidate);
-			if (bundledSource != null) {
-				return new IncludeSource(candidate, bundledSource);
+			context.recordInclude(candidate, sourcePath);
+			if (readIncludeText(candidate, context) != null) {
+				return candidate;
 			}
 		}
 		return null;
 	}
 
+	private static String readIncludeText(String path, ApplierCache context) {
+		String shaderpackSource = context.readShaderpackText(path);
+		return shaderpackSource != null ? shaderpackSource : readBundledShaderText(path);
+	}
+
 	private static LinkedHashSet<String> includeCandidates(String sourcePath, String includeRef) {
 		LinkedHashSet<String> candidates = new LinkedHashSet<>();
 		if (includeRef == null) {
@@ -629,31 +794,54 @@ public final class ShaderpackShaderApplier {
 		}
 	}
 
-	private static String injectPipelineInterfaceDefines(String source, ShaderpackPipelineProgram program, String shaderPath) {
+	private static String injectPipelineInterfaceDefines(
+		String source,
+		ShaderpackPipelineProgram program,
+		String shaderPath,
+		ApplierCache context
+	) {
 		if (source == null || source.isBlank() || program == null) {
 			return source;
 		}
-		String block = buildPipelineInterfaceDefines(program, shaderPath);
+		String block = context.pipelineDefines(program, detectShaderKind(shaderPath));
 		if (block.isBlank()) {
 			return source;
 		}
 		Matcher versionMatcher = GLSL_VERSION_PATTERN.matcher(source);
 		if (versionMatcher.find()) {
-			int insertAt = versionMatcher.end();
-			return source.substring(0, insertAt) + "\n" + block + source.substring(insertAt);
+			return insertBlock(source, versionMatcher.end(), block);
 		}
 		return block + source;
 	}
 
-	private static String buildPipelineInterfaceDefines(ShaderpackPipelineProgram program, String shaderPath) {
-		ShaderpackMetadata metadata = ShaderpackManager.getActiveShaderpack();
+	private static String buildPackDefines(ShaderpackMetadata metadata, boolean compute) {
 		ShaderpackGlobalSettings globalSettings = metadata == null || metadata.globalSettings == null
 			? ShaderpackGlobalSettings.EMPTY
 			: metadata.globalSettings;
 		ShaderpackIdMappings idMappings = metadata == null || metadata.idMappings == null
 			? ShaderpackIdMappings.EMPTY
 			: metadata.idMappings;
+		List<String> lines = new ArrayList<>();
+		appendGlobalDefines(lines, globalSettings);
+		// Only compute programs can bind the lookup buffer, so graphics shaders keep the per-entry macros.
+		appendIdMappingDefines(lines, idMappings, compute && ShaderpackManager.isIdLookupBufferEnabled(metadata));
+		appendImageFormatDefines(lines, metadata);
+		return joinDefineLines(lines);
+	}
+
+	private static void appendImageFormatDefines(List<String> lines, ShaderpackMetadata metadata) {
+		for (String binding : ShaderpackImageResources.IMAGE_BINDINGS) {
+			ShaderpackResourceDecl resource = ShaderpackImageResources.find(metadata, binding);
+			ShaderpackImageResources.ImageFormat format = ShaderpackImageResources.formatFor(resource);
+			lines.add("#define SULKAN_IMAGE_FORMAT_" + toMacroToken(binding) + " " + format.qualifier());
+			if (ShaderpackImageResources.lifetimeOf(resource) == ShaderpackFrameGraph.Lifetime.TEMPORAL) {
+				String history = binding + ShaderpackImageResources.HISTORY_SUFFIX;
+				lines.add("#define SULKAN_IMAGE_FORMAT_" + toMacroToken(history) + " " + format.qualifier());
+			}
+		}
+	}
 
+	private static String buildPipelineInterfaceDefines(ShaderpackPipelineProgram program, String shaderKind, String packDefines) {
 		List<String> lines = new ArrayList<>();
 		lines.add("#define SULKAN_PROGRAM_ENABLED 1");
 		lines.add("#define SULKAN_STAGE_" + toMacroToken(program.stage()) + " 1");
@@ -675,9 +863,8 @@ public final class ShaderpackShaderApplier {
 		lines.add("#define SULKAN_UNIFORM_FRAME_TIME GameTime");
 		lines.add("#define SULKAN_UNIFORM_SCREEN_SIZE ScreenSize");
 		lines.add("#define SULKAN_UNIFORM_CAMERA_POSITION ChunkOffset");
-
-		appendGlobalDefines(lines, globalSettings);
-		appendIdMappingDefines(lines, idMappings);
+		String head = joinDefineLines(lines);
+		lines.clear();
 
 		List<String> targets = program.renderTargets() == null ? List.of() : program.renderTargets();
 		lines.add("#define SULKAN_RENDER_TARGET_COUNT " + targets.size());
@@ -767,7 +954,6 @@ public final class ShaderpackShaderApplier {
 			lines.add("#define SULKAN_SCALE_" + toMacroToken(target) + "_Y " + formatNumber(value.get(1)));
 		}
 
-		String shaderKind = detectShaderKind(shaderPath);
 		if ("vertex".equals(shaderKind)) {
 			lines.add("#define SULKAN_ATTR_POSITION Position");
 			lines.add("#define SULKAN_ATTR_COLOR Color");
@@ -778,13 +964,15 @@ public final class ShaderpackShaderApplier {
 			lines.add("#define SULKAN_ATTR_MC_ENTITY mc_Entity");
 			lines.add("#define SULKAN_ATTR_AT_TANGENT at_tangent");
 			lines.add("#define SULKAN_ATTR_AT_VELOCITY at_velocity");
+		} else if ("compute".equals(shaderKind)) {
+			lines.add("#define SULKAN_SHADER_COMPUTE 1");
 		}
 
-		if (lines.isEmpty()) {
-			return "";
-		}
+		return "// Sulkan pipeline interface\n" + head + packDefines + joinDefineLines(lines);
+	}
+
+	private static String joinDefineLines(List<String> lines) {
 		StringBuilder builder = new StringBuilder();
-		builder.append("// Sulkan pipeline interface\n");
 		for (String line : lines) {
 			builder.append(line).append('\n');
 		}
@@ -816,13 +1004,20 @@ public final class ShaderpackShaderApplier {
 		}
 	}
 
-	private static void appendIdMappingDefines(List<String> lines, ShaderpackIdMappings idMappings) {
+	private static void appendIdMappingDefines(List<String> lines, ShaderpackIdMappings idMappings, boolean lookupBuffer) {
 		if (lines == null || idMappings == null || idMappings.isEmpty()) {
 			return;
 		}
-		appendNamedIntDefines(lines, "BLOCK", idMappings.blocks());
-		appendNamedIntDefines(lines, "ITEM", idMappings.items());
-		appendNamedIntDefines(lines, "ENTITY", idMappings.entities());
+		if (lookupBuffer) {
+			lines.add("#define SULKAN_ID_LOOKUP_BUFFER 1");
+			lines.add("#define SULKAN_ID_BLOCK_COUNT " + idMappings.blocks().size());
+			lines.add("#define SULKAN_ID_ITEM_COUNT " + idMappings.items().size());
+			lines.add("#define SULKAN_ID_ENTITY_COUNT " + idMappings.entities().size());
+		} else {
+			appendNamedIntDefines(lines, "BLOCK", idMappings.blocks());
+			appendNamedIntDefines(lines, "ITEM", idMappings.items());
+			appendNamedIntDefines(lines, "ENTITY", idMappings.entities());
+		}
 
 		lines.add("#define SULKAN_LAYER_SOLID 1");
 		lines.add("#define SULKAN_LAYER_CUTOUT 2");
@@ -1144,7 +1339,7 @@ public final class ShaderpackShaderApplier {
 		return end <= 0 ? "0.0" : text.substring(0, Math.min(end, text.length()));
 	}
 
-	private static String toMacroToken(String value) {
+	static String toMacroToken(String value) {
 		if (value == null || value.isBlank()) {
 			return "UNKNOWN";
 		}
@@ -1171,7 +1366,7 @@ public final class ShaderpackShaderApplier {
 		return token;
 	}
 
-	private record IncludeSource(String path, String source) {
+	private record IncludeSource(String path, ShaderpackParsedSource parsed) {
 	}
 
 	private record ShaderSourceCandidate(String path, String source) {
@@ -1180,6 +1375,53 @@ public final class ShaderpackShaderApplier {
 	record LoadedSource(String path, String source) {
 	}
 
+	record SourceImpact(Set<String> sources, boolean graphics, boolean compute) {
+	}
+
+	private record ServedShader(long hash, boolean pipelineManager, Set<String> targets) {
+	}
+
+	private static final class DefinesKey {
+		private final ShaderpackPipelineProgram program;
+		private final String shaderKind;
+
+		private DefinesKey(ShaderpackPipelineProgram program, String shaderKind) {
+			this.program = program;
+			this.shaderKind = shaderKind;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof DefinesKey key && key.program == program && key.shaderKind.equals(shaderKind);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(program) + shaderKind.hashCode();
+		}
+	}
+
+	private record ServedResult(
+		ShaderpackPipelineProgram program,
+		ShaderpackConfig config,
+		List<String> worldCandidates,
+		byte[] bytes,
+		long hash,
+		Set<String> targets
+	) {
+		private static final ServedResult NONE = new ServedResult(null, null, List.of(), null, 0L, Set.of());
+
+		private boolean matches(ShaderpackPipelineProgram program, ShaderpackConfig config, List<String> worldCandidates) {
+			return this.program == program && this.config == config && this.worldCandidates == worldCandidates;
+		}
+	}
+
+	public enum RebuildScope {
+		NONE,
+		PIPELINES,
+		RESOURCES
+	}
+
 	private static boolean isLikelyVulkanCompatible(String source) {
 		if (source == null) {
 			return false;
@@ -1253,72 +1495,65 @@ public final class ShaderpackShaderApplier {
 
 	private static String readShaderpackText(Path shaderpackPath, String relativePath) {
 		String normalized = normalizePath(relativePath);
-		if (Files.isDirectory(shaderpackPath)) {
-			Path file = shaderpackPath.resolve(normalized);
-			if (!Files.exists(file)) {
-				return null;
-			}
-			try {
-				return Files.readString(file, StandardCharsets.UTF_8);
-			} catch (Exception e) {
-				Sulkan.LOGGER.warn("Failed to read shaderpack file {}", normalized, e);
-				return null;
-			}
+		try {
+			return ShaderpackFileSystem.readText(shaderpackPath, normalized);
+		} catch (Exception e) {
+			Sulkan.LOGGER.warn("Failed to read shaderpack file {}", normalized, e);
+			return null;
 		}
-		if (shaderpackPath.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip")) {
-			try (ZipFile zipFile = new ZipFile(shaderpackPath.toFile(), StandardCharsets.UTF_8)) {
-				ZipEntry entry = zipFile.getEntry(normalized);
-				if (entry == null) {
-					return null;
-				}
-				try (InputStream stream = zipFile.getInputStream(entry)) {
-					return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
-				}
-			} catch (Exception e) {
-				Sulkan.LOGGER.warn("Failed to read shaderpack zip entry {}", normalized, e);
-			}
+	}
+
+	private static String applyMarkers(String source, String sourcePath, ShaderpackMarkerTable markers, ApplierCache context) {
+		if (markers.isEmpty()) {
+			return source;
 		}
-		return null;
+		ShaderpackMarkerTable.Result result = markers.apply(source);
+		context.reportMarkers(sourcePath, result);
+		if (result.declarations().isEmpty()) {
+			return result.source();
+		}
+		return insertAfterPreamble(result.source(), String.join("\n", result.declarations()) + "\n");
 	}
 
-	private static String applyMarkers(String source, List<ShaderpackOptionDecl> options, ShaderpackConfig config) {
-		String updated = source;
+	private static ShaderpackMarkerTable buildMarkerTable(
+		List<ShaderpackOptionDecl> options,
+		ShaderpackConfig config,
+		Map<String, String> params,
+		ShaderpackSpecialization.Layout specialization
+	) {
+		ShaderpackMarkerTable.Builder builder = ShaderpackMarkerTable.builder(config, params);
 		for (ShaderpackOptionDecl option : options) {
-			String markerKey = option.key();
-			if (markerKey == null || markerKey.isBlank()) {
-				continue;
-			}
-			String replacement = resolveReplacement(option, config);
-			if (replacement == null) {
-				continue;
-			}
-			String marker = MARKER_PREFIX + markerKey + MARKER_SUFFIX;
-			if (!updated.contains(marker)) {
-				continue;
+			ShaderpackSpecialization.Constant constant = option.isSpecialized() ? specialization.constant(option.path()) : null;
+			if (constant != null) {
+				builder.option(option.key(), constant.name(), constant.declaration());
+			} else {
+				builder.option(option.key(), config == null ? null : resolveReplacement(option, config), null);
 			}
-			updated = updated.replace(marker, replacement);
 		}
-		return updated;
+		return builder.build();
 	}
 
-	private static String applyPipelineParams(String source, Map<String, String> params) {
-		String updated = source;
-		for (Map.Entry<String, String> entry : params.entrySet()) {
-			String key = entry.getKey();
-			if (key == null || key.isBlank()) {
-				continue;
-			}
-			String value = entry.getValue();
-			if (value == null) {
-				continue;
-			}
-			String marker = PARAM_MARKER_PREFIX + key + MARKER_SUFFIX;
-			if (!updated.contains(marker)) {
-				continue;
+	private static String insertAfterPreamble(String source, String block) {
+		Matcher versionMatcher = GLSL_VERSION_PATTERN.matcher(source);
+		int insertAt = versionMatcher.find() ? versionMatcher.end() : 0;
+		Matcher extensionMatcher = EXTENSION_DIRECTIVE_PATTERN.matcher(source);
+		while (extensionMatcher.find(insertAt) && source.substring(insertAt, extensionMatcher.start()).isBlank()) {
+			insertAt = extensionMatcher.end();
+		}
+		if (insertAt == 0) {
+			return block + source;
+		}
+		return insertBlock(source, insertAt, block);
+	}
+
+	private static String insertBlock(String source, int insertAt, String block) {
+		int nextLine = 2;
+		for (int i = 0; i < insertAt; i++) {
+			if (source.charAt(i) == '\n') {
+				nextLine++;
 			}
-			updated = updated.replace(marker, value);
 		}
-		return updated;
+		return source.substring(0, insertAt) + "\n" + block + "#line " + nextLine + source.substring(insertAt);
 	}
 
 	private static String resolveReplacement(ShaderpackOptionDecl option, ShaderpackConfig config) {
@@ -1365,7 +1600,7 @@ public final class ShaderpackShaderApplier {
 		return renderValues.get(index);
 	}
 
-	private static List<ShaderpackOptionDecl> flattenOptions(List<ShaderpackOptionDecl> options) {
+	static List<ShaderpackOptionDecl> flattenOptions(List<ShaderpackOptionDecl> options) {
 		if (options == null || options.isEmpty()) {
 			return List.of();
 		}
@@ -1389,30 +1624,50 @@ public final class ShaderpackShaderApplier {
 		long shaderpackReads,
 		long shaderpackHits,
 		long uriReads,
-		long uriHits
+		long uriHits,
+		long servedLookups,
+		long servedHits
 	) {
 	}
 
-	private static final class ApplierCache {
+	static final class ApplierCache {
 		private static final ApplierCache EMPTY = new ApplierCache(null, null, Map.of());
 		private final ShaderpackMetadata metadata;
 		private final Path sourcePath;
 		private final Map<String, List<ShaderpackOptionDecl>> optionsByTarget;
 		private final ConcurrentMap<String, Optional<String>> shaderpackTextCache = new ConcurrentHashMap<>();
 		private final ConcurrentMap<String, Optional<String>> uriTextCache = new ConcurrentHashMap<>();
+		private final ConcurrentMap<String, Set<String>> includers = new ConcurrentHashMap<>();
+		private final ConcurrentMap<String, Set<String>> rootKinds = new ConcurrentHashMap<>();
 		private final Set<String> warnedIncompatibleSources = ConcurrentHashMap.newKeySet();
 		private final Set<String> loggedCompatibilityFallbacks = ConcurrentHashMap.newKeySet();
+		private final ConcurrentMap<String, ShaderpackMarkerTable> markerTables = new ConcurrentHashMap<>();
+		private final ConcurrentMap<String, ServedResult> servedResults = new ConcurrentHashMap<>();
+		private final ConcurrentMap<DefinesKey, String> pipelineDefines = new ConcurrentHashMap<>();
+		private final String packDefines;
+		private final String computePackDefines;
+		private final ConcurrentMap<String, Optional<String>> includeResolutions = new ConcurrentHashMap<>();
+		private final ConcurrentMap<String, Optional<ShaderpackParsedSource>> parsedIncludes = new ConcurrentHashMap<>();
+		private volatile IncludeSource runtimeInclude;
+		private volatile IncludeSource idsInclude;
+		private final Set<String> reportedMarkers = ConcurrentHashMap.newKeySet();
 		private final LongAdder targetLookups = new LongAdder();
 		private final LongAdder targetHits = new LongAdder();
 		private final LongAdder shaderpackReads = new LongAdder();
 		private final LongAdder shaderpackHits = new LongAdder();
 		private final LongAdder uriReads = new LongAdder();
 		private final LongAdder uriHits = new LongAdder();
+		private final LongAdder servedLookups = new LongAdder();
+		private final LongAdder servedHits = new LongAdder();
 
 		private ApplierCache(ShaderpackMetadata metadata, Path sourcePath, Map<String, List<ShaderpackOptionDecl>> optionsByTarget) {
 			this.metadata = metadata;
 			this.sourcePath = sourcePath;
 			this.optionsByTarget = optionsByTarget;
+			this.packDefines = metadata == null ? "" : buildPackDefines(metadata, false);
+			this.computePackDefines = metadata == null || !ShaderpackManager.isIdLookupBufferEnabled(metadata)
+				? packDefines
+				: buildPackDefines(metadata, true);
 		}
 
 		private static ApplierCache build(ShaderpackMetadata metadata) {
@@ -1435,6 +1690,175 @@ public final class ShaderpackShaderApplier {
 			return this.metadata == metadata;
 		}
 
+		private ApplierCache rebase(ShaderpackMetadata next) {
+			ApplierCache rebased = next.options == metadata.options
+				? new ApplierCache(next, next.sourcePath, optionsByTarget)
+				: build(next);
+			rebased.shaderpackTextCache.putAll(shaderpackTextCache);
+			rebased.uriTextCache.putAll(uriTextCache);
+			rebased.parsedIncludes.putAll(parsedIncludes);
+			includers.forEach((path, from) -> rebased.includers.computeIfAbsent(path, ignored -> ConcurrentHashMap.newKeySet()).addAll(from));
+			rootKinds.forEach((path, kinds) -> rebased.rootKinds.computeIfAbsent(path, ignored -> ConcurrentHashMap.newKeySet()).addAll(kinds));
+			return rebased;
+		}
+
+		private void recordInclude(String includedPath, String includerPath) {
+			includers.computeIfAbsent(normalizePath(includedPath), ignored -> ConcurrentHashMap.newKeySet()).add(normalizePath(includerPath));
+		}
+
+		private void recordRoot(String path, String kind) {
+			rootKinds.computeIfAbsent(normalizePath(path), ignored -> ConcurrentHashMap.newKeySet()).add(kind == null ? "pipeline" : kind);
+		}
+
+		private SourceImpact invalidate(Set<String> changedPaths) {
+			for (String changed : changedPaths) {
+				shaderpackTextCache.remove(normalizePath(changed));
+				parsedIncludes.remove(normalizePath(changed));
+			}
+			includeResolutions.clear();
+			servedResults.clear();
+			Set<String> affected = expandIncluders(changedPaths);
+			boolean graphics = false;
+			boolean compute = false;
+			Set<String> sources = new LinkedHashSet<>();
+			for (String path : affected) {
+				Set<String> kinds = rootKinds.get(path);
+				if (kinds == null && !includers.containsKey(path)) {
+					continue;
+				}
+				sources.add(path);
+				if (kinds != null) {
+					compute |= kinds.contains("compute");
+					graphics |= kinds.stream().anyMatch(kind -> !"compute".equals(kind));
+				}
+			}
+			return new SourceImpact(Set.copyOf(sources), graphics, compute);
+		}
+
+		private Set<String> expandIncluders(Set<String> paths) {
+			Set<String> affected = new LinkedHashSet<>();
+			ArrayDeque<String> queue = new ArrayDeque<>();
+			for (String path : paths) {
+				String normalized = normalizePath(path);
+				if (affected.add(normalized)) {
+					queue.add(normalized);
+				}
+			}
+			while (!queue.isEmpty()) {
+				for (String includer : includers.getOrDefault(queue.poll(), Set.of())) {
+					if (affected.add(includer)) {
+						queue.add(includer);
+					}
+				}
+			}
+			return affected;
+		}
+
+		private ShaderpackMarkerTable markerTable(
+			String target,
+			List<ShaderpackOptionDecl> options,
+			ShaderpackConfig config,
+			Map<String, String> params,
+			ShaderpackSpecialization.Layout specialization
+		) {
+			ShaderpackMarkerTable cached = markerTables.get(target);
+			if (cached != null && cached.matches(config, params)) {
+				return cached;
+			}
+			ShaderpackMarkerTable built = buildMarkerTable(options, config, params, specialization);
+			markerTables.put(target, built);
+			return built;
+		}
+
+		private void reportMarkers(String sourcePath, ShaderpackMarkerTable.Result result) {
+			for (String marker : result.unknownMarkers()) {
+				if (reportedMarkers.add(sourcePath + "|" + marker)) {
+					Sulkan.LOGGER.warn("Shader '{}' references unknown marker {}.", sourcePath, marker);
+				}
+			}
+			for (String key : result.unusedKeys()) {
+				if (reportedMarkers.add(sourcePath + "|unused|" + key)) {
+					Sulkan.LOGGER.warn("Option marker '{}{}@' is never referenced by shader '{}'.", ShaderpackMarkerTable.MARKER_PREFIX, key, sourcePath);
+				}
+			}
+		}
+
+		private String resolveInclude(String sourcePath, String includeRef) {
+			String key = sourcePath + "\n" + includeRef;
+			Optional<String> cached = includeResolutions.get(key);
+			if (cached == null) {
+				cached = Optional.ofNullable(findIncludePath(sourcePath, includeRef, this));
+				includeResolutions.putIfAbsent(key, cached);
+			}
+			return cached.orElse(null);
+		}
+
+		private ShaderpackParsedSource parsedInclude(String path) {
+			return parsedIncludes.computeIfAbsent(
+				path,
+				ignored -> Optional.ofNullable(readIncludeText(path, this)).map(ShaderpackParsedSource::parse)
+			).orElse(null);
+		}
+
+		private IncludeSource runtimeInclude() {
+			IncludeSource local = runtimeInclude;
+			if (local == null) {
+				local = new IncludeSource(
+					ShaderpackRuntimeUniforms.INCLUDE_PATH,
+					ShaderpackParsedSource.parse(ShaderpackRuntimeUniforms.includeSource(metadata))
+				);
+				runtimeInclude = local;
+			}
+			return local;
+		}
+
+		private IncludeSource idsInclude() {
+			IncludeSource local = idsInclude;
+			if (local == null) {
+				local = new IncludeSource(
+					ShaderpackIdLookup.INCLUDE_PATH,
+					ShaderpackParsedSource.parse(ShaderpackIdLookup.includeSource(metadata))
+				);
+				idsInclude = local;
+			}
+			return local;
+		}
+
+		private String pipelineDefines(ShaderpackPipelineProgram program, String shaderKind) {
+			return pipelineDefines.computeIfAbsent(
+				new DefinesKey(program, shaderKind),
+				key -> buildPipelineInterfaceDefines(
+					program,
+					shaderKind,
+					"compute".equals(shaderKind) ? computePackDefines : packDefines
+				)
+			);
+		}
+
+		private void warmPipelineDefines() {
+			if (metadata.pipelinePrograms == null) {
+				return;
+			}
+			for (Map<String, List<ShaderpackPipelineProgram>> byStage : metadata.pipelinePrograms.values()) {
+				for (List<ShaderpackPipelineProgram> programs : byStage.values()) {
+					for (ShaderpackPipelineProgram program : programs) {
+						for (String path : Arrays.asList(program.vertex(), program.fragment(), program.geometry(), program.compute())) {
+							if (path != null) {
+								pipelineDefines(program, detectShaderKind(path));
+							}
+						}
+					}
+				}
+			}
+		}
+
+		private void recordServedLookup(boolean hit) {
+			servedLookups.increment();
+			if (hit) {
+				servedHits.increment();
+			}
+		}
+
 		private void recordTargetLookup(boolean hit) {
 			targetLookups.increment();
 			if (hit) {
@@ -1449,7 +1873,9 @@ public final class ShaderpackShaderApplier {
 				shaderpackReads.sum(),
 				shaderpackHits.sum(),
 				uriReads.sum(),
-				uriHits.sum()
+				uriHits.sum(),
+				servedLookups.sum(),
+				servedHits.sum()
 			);
 		}
 
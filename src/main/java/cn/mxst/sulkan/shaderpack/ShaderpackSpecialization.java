@@ -0,0 +1,139 @@
+package cn.mxst.sulkan.shaderpack;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.vulkan.VK10;
+import org.lwjgl.vulkan.VkSpecializationInfo;
+import org.lwjgl.vulkan.VkSpecializationMapEntry;
+
+public final class ShaderpackSpecialization {
+	static final int CONSTANT_ID_BASE = 1000;
+	private static final String CONSTANT_PREFIX = "SULKAN_SPEC_";
+	private static final int CONSTANT_SIZE = Integer.BYTES;
+	private static volatile Layout cachedLayout = Layout.EMPTY;
+
+	private ShaderpackSpecialization() {
+	}
+
+	static Layout layout(ShaderpackMetadata metadata) {
+		Layout local = cachedLayout;
+		if (local.metadata == metadata) {
+			return local;
+		}
+		Layout built = Layout.build(metadata);
+		cachedLayout = built;
+		return built;
+	}
+
+	public static VkSpecializationInfo activeInfo(MemoryStack stack) {
+		ShaderpackRuntimeState state = ShaderpackManager.currentState();
+		if (!state.isActive() || state.config() == null) {
+			return null;
+		}
+		Layout layout = layout(state.metadata());
+		if (layout.constants.isEmpty()) {
+			return null;
+		}
+		int count = layout.constants.size();
+		VkSpecializationMapEntry.Buffer entries = VkSpecializationMapEntry.calloc(count, stack);
+		ByteBuffer data = stack.malloc(count * CONSTANT_SIZE);
+		for (int i = 0; i < count; i++) {
+			Constant constant = layout.constants.get(i);
+			entries.get(i)
+				.constantID(constant.id())
+				.offset(i * CONSTANT_SIZE)
+				.size(CONSTANT_SIZE);
+			data.putInt(i * CONSTANT_SIZE, constant.encode(state.config().getValue(constant.option().path())));
+		}
+		return VkSpecializationInfo.calloc(stack)
+			.pMapEntries(entries)
+			.pData(data);
+	}
+
+	static final class Layout {
+		private static final Layout EMPTY = new Layout(null, List.of());
+
+		private final ShaderpackMetadata metadata;
+		private final List<Constant> constants;
+		private final Map<String, Constant> byPath;
+
+		private Layout(ShaderpackMetadata metadata, List<Constant> constants) {
+			this.metadata = metadata;
+			this.constants = constants;
+			Map<String, Constant> paths = new HashMap<>();
+			for (Constant constant : constants) {
+				paths.put(constant.option().path(), constant);
+			}
+			this.byPath = Map.copyOf(paths);
+		}
+
+		private static Layout build(ShaderpackMetadata metadata) {
+			if (metadata == null) {
+				return EMPTY;
+			}
+			List<Constant> constants = new ArrayList<>();
+			for (ShaderpackOptionDecl option : ShaderpackShaderApplier.flattenOptions(metadata.options)) {
+				if (option == null || !option.isSpecialized() || option.path() == null) {
+					continue;
+				}
+				constants.add(new Constant(option, CONSTANT_ID_BASE + constants.size()));
+			}
+			return new Layout(metadata, List.copyOf(constants));
+		}
+
+		Constant constant(String optionPath) {
+			return byPath.get(optionPath);
+		}
+	}
+
+	record Constant(ShaderpackOptionDecl option, int id) {
+		String name() {
+			return CONSTANT_PREFIX + id;
+		}
+
+		String declaration() {
+			return "layout(constant_id = " + id + ") const " + glslType() + " " + name() + " = " + literal(option.defaultValue()) + ";";
+		}
+
+		private String glslType() {
+			return switch (option.type().toLowerCase(Locale.ROOT)) {
+				case "bool" -> "bool";
+				case "float" -> "float";
+				default -> "int";
+			};
+		}
+
+		private String literal(Object value) {
+			return switch (option.type().toLowerCase(Locale.ROOT)) {
+				case "bool" -> Boolean.TRUE.equals(value) ? "true" : "false";
+				case "float" -> Float.toString(value instanceof Number number ? number.floatValue() : 0.0f);
+				case "enum" -> Integer.toString(enumIndex(value));
+				default -> Long.toString(value instanceof Number number ? number.longValue() : 0L);
+			};
+		}
+
+		private int encode(Object value) {
+			Object effective = value == null ? option.defaultValue() : value;
+			return switch (option.type().toLowerCase(Locale.ROOT)) {
+				case "bool" -> Boolean.TRUE.equals(effective) ? VK10.VK_TRUE : VK10.VK_FALSE;
+				case "float" -> Float.floatToRawIntBits(effective instanceof Number number ? number.floatValue() : 0.0f);
+				case "enum" -> enumIndex(effective);
+				default -> effective instanceof Number number ? number.intValue() : 0;
+			};
+		}
+
+		private int enumIndex(Object value) {
+			List<String> values = option.values();
+			int index = values == null || value == null ? -1 : values.indexOf(value.toString());
+			if (index < 0 && values != null && option.defaultValue() != null) {
+				index = values.indexOf(option.defaultValue().toString());
+			}
+			return Math.max(0, index);
+		}
+	}
+}
@@ -0,0 +1,275 @@
+package cn.mxst.sulkan.shaderpack;
+
+import cn.mxst.sulkan.Sulkan;
+import cn.mxst.sulkan.config.SulkanConfig;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import net.fabricmc.loader.api.FabricLoader;
+import org.lwjgl.system.MemoryStack;
+import org.lwjgl.system.MemoryUtil;
+import org.lwjgl.util.shaderc.Shaderc;
+
+public final class ShaderpackSpirvCache {
+	private static final String FILE_SUFFIX = ".spv";
+	private static final int SPIRV_MAGIC = 0x07230203;
+	private static final int CACHE_FORMAT_VERSION = 1;
+	private static final double EVICTION_TARGET_RATIO = 0.9D;
+	private static final Pattern INCLUDE_DIRECTIVE = Pattern.compile("^[ \\t]*#[ \\t]*include\\b", Pattern.MULTILINE);
+	private static final Map<String, Entry> ENTRIES = new ConcurrentHashMap<>();
+	private static final AtomicLong totalBytes = new AtomicLong();
+	private static final LongAdder requests = new LongAdder();
+	private static final LongAdder hits = new LongAdder();
+	private static volatile boolean indexed;
+	private static volatile String compilerTag;
+
+	private ShaderpackSpirvCache() {
+	}
+
+	public static boolean isEnabled() {
+		SulkanConfig config = SulkanConfig.get();
+		return config != null
+			&& config.enableShaderpack
+			&& Boolean.TRUE.equals(config.spirvCacheEnabled)
+			&& ShaderpackManager.getActiveShaderpack() != null;
+	}
+
+	// Includes left in the source are resolved by shaderc at compile time and may be served with
+	// pack- or option-dependent content, so only fully expanded sources are keyed by their text.
+	public static boolean isCacheable(String source) {
+		return source != null && !INCLUDE_DIRECTIVE.matcher(source).find();
+	}
+
+	// VulkanMod's compile options are fixed per build, so the compiler tag covers them.
+	public static String buildKey(String source, String kind) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(kind.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(compilerTag().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			digest.update(source.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is not available.", e);
+		}
+	}
+
+	public static ByteBuffer load(String key) {
+		requests.increment();
+		ensureIndexed();
+		Entry entry = ENTRIES.get(key);
+		if (entry == null) {
+			return null;
+		}
+		Path path = entryPath(key);
+		byte[] bytes;
+		try {
+			bytes = Files.readAllBytes(path);
+		} catch (IOException e) {
+			forget(key);
+			return null;
+		}
+		if (!isValidSpirv(bytes)) {
+			Sulkan.LOGGER.warn("Discarding corrupt SPIR-V cache entry {}.", path.getFileName());
+			delete(key);
+			return null;
+		}
+		entry.touch();
+		try {
+			Files.setLastModifiedTime(path, FileTime.fromMillis(entry.lastAccess()));
+		} catch (IOException ignored) {
+		}
+		hits.increment();
+		ByteBuffer buffer = MemoryUtil.memAlloc(bytes.length);
+		buffer.put(bytes).flip();
+		return buffer;
+	}
+
+	public static void store(String key, ByteBuffer bytecode) {
+		if (key == null || bytecode == null || bytecode.remaining() < 4) {
+			return;
+		}
+		ensureIndexed();
+		if (ENTRIES.containsKey(key)) {
+			return;
+		}
+		byte[] bytes = new byte[bytecode.remaining()];
+		bytecode.duplicate().get(bytes);
+		if (!isValidSpirv(bytes)) {
+			return;
+		}
+		Path path = entryPath(key);
+		try {
+			ShaderpackFileSystem.writeAtomically(path, bytes);
+		} catch (IOException e) {
+			Sulkan.LOGGER.warn("Failed to write SPIR-V cache entry {}: {}", path.getFileName(), e.getMessage());
+			return;
+		}
+		if (ENTRIES.putIfAbsent(key, new Entry(bytes.length, System.currentTimeMillis())) == null) {
+			totalBytes.addAndGet(bytes.length);
+		}
+		evictIfNeeded();
+	}
+
+	public static ShaderpackManager.CacheStats getStats() {
+		return new ShaderpackManager.CacheStats(requests.sum(), hits.sum());
+	}
+
+	private static void ensureIndexed() {
+		if (indexed) {
+			return;
+		}
+		synchronized (ShaderpackSpirvCache.class) {
+			if (indexed) {
+				return;
+			}
+			Path dir = cacheDir();
+			if (Files.isDirectory(dir)) {
+				try (Stream<Path> stream = Files.walk(dir, 2)) {
+					stream
+						.filter(path -> path.getFileName().toString().endsWith(FILE_SUFFIX))
+						.forEach(ShaderpackSpirvCache::indexFile);
+				} catch (IOException e) {
+					Sulkan.LOGGER.warn("Failed to index SPIR-V cache: {}", e.getMessage());
+				}
+			}
+			indexed = true;
+		}
+		evictIfNeeded();
+	}
+
+	private static void indexFile(Path path) {
+		String name = path.getFileName().toString();
+		String key = name.substring(0, name.length() - FILE_SUFFIX.length());
+		if (key.length() < 2) {
+			return;
+		}
+		try {
+			long size = Files.size(path);
+			long lastAccess = Files.getLastModifiedTime(path).toMillis();
+			if (ENTRIES.putIfAbsent(key, new Entry(size, lastAccess)) == null) {
+				totalBytes.addAndGet(size);
+			}
+		} catch (IOException ignored) {
+		}
+	}
+
+	private static synchronized void evictIfNeeded() {
+		long limit = maxBytes();
+		if (totalBytes.get() <= limit) {
+			return;
+		}
+		long target = (long) (limit * EVICTION_TARGET_RATIO);
+		List<Map.Entry<String, Entry>> byAge = new ArrayList<>(ENTRIES.entrySet());
+		byAge.sort(Comparator.comparingLong(entry -> entry.getValue().lastAccess()));
+		for (Map.Entry<String, Entry> entry : byAge) {
+			if (totalBytes.get() <= target) {
+				break;
+			}
+			delete(entry.getKey());
+		}
+	}
+
+	private static void delete(String key) {
+		try {
+			Files.deleteIfExists(entryPath(key));
+		} catch (IOException e) {
+			Sulkan.LOGGER.warn("Failed to delete SPIR-V cache entry {}: {}", key, e.getMessage());
+		}
+		forget(key);
+	}
+
+	private static void forget(String key) {
+		Entry removed = ENTRIES.remove(key);
+		if (removed != null) {
+			totalBytes.addAndGet(-removed.size());
+		}
+	}
+
+	private static long maxBytes() {
+		SulkanConfig config = SulkanConfig.get();
+		int megabytes = config == null || config.spirvCacheMaxMegabytes == null ? 256 : config.spirvCacheMaxMegabytes;
+		return Math.max(1L, megabytes) * 1024L * 1024L;
+	}
+
+	private static boolean isValidSpirv(byte[] bytes) {
+		if (bytes.length < 20 || (bytes.length & 3) != 0) {
+			return false;
+		}
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).getInt(0) == SPIRV_MAGIC;
+	}
+
+	private static Path cacheDir() {
+		return ShaderpackManager.cacheDir().resolve("spirv");
+	}
+
+	private static Path entryPath(String key) {
+		return cacheDir().resolve(key.substring(0, 2)).resolve(key + FILE_SUFFIX);
+	}
+
+	private static String compilerTag() {
+		String tag = compilerTag;
+		if (tag != null) {
+			return tag;
+		}
+		String spirvVersion = "unknown";
+		try (MemoryStack stack = MemoryStack.stackPush()) {
+			IntBuffer version = stack.mallocInt(1);
+			IntBuffer revision = stack.mallocInt(1);
+			Shaderc.shaderc_get_spv_version(version, revision);
+			spirvVersion = Integer.toHexString(version.get(0)) + "." + revision.get(0);
+		} catch (Throwable ignored) {
+		}
+		String vulkanModVersion = FabricLoader.getInstance()
+			.getModContainer("vulkanmod")
+			.map(container -> container.getMetadata().getVersion().getFriendlyString())
+			.orElse("unknown");
+		tag = "format=" + CACHE_FORMAT_VERSION
+			+ ";lwjgl=" + org.lwjgl.Version.getVersion()
+			+ ";spirv=" + spirvVersion
+			+ ";vulkanmod=" + vulkanModVersion;
+		compilerTag = tag;
+		return tag;
+	}
+
+	private static final class Entry {
+		private final long size;
+		private volatile long lastAccess;
+
+		private Entry(long size, long lastAccess) {
+			this.size = size;
+			this.lastAccess = lastAccess;
+		}
+
+		private long size() {
+			return size;
+		}
+
+		private long lastAccess() {
+			return lastAccess;
+		}
+
+		private void touch() {
+			lastAccess = System.currentTimeMillis();
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package cn.mxst.sulkan.shaderpack;
+
+import java.util.List;
+
+public record ShaderpackSummary(
+	List<String> errors,
+	List<String> warnings,
+	int optionCount,
+	boolean configOptions
+) {
+	public ShaderpackSummary {
+		errors = errors == null ? List.of() : List.copyOf(errors);
+		warnings = warnings == null ? List.of() : List.copyOf(warnings);
+	}
+
+	public boolean isValid() {
+		return errors.isEmpty();
+	}
+}
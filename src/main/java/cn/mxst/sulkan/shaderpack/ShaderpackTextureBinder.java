@@ -4,17 +4,12 @@ import cn.mxst.sulkan.Sulkan;
 import cn.mxst.sulkan.config.SulkanConfig;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.texture.AbstractTexture;
 import net.minecraft.client.texture.NativeImage;
@@ -29,6 +24,7 @@ public final class ShaderpackTextureBinder {
 	private static final ConcurrentMap<String, Identifier> cachedShaderpackTextures = new ConcurrentHashMap<>();
 	private static final Set<Identifier> registeredTextures = ConcurrentHashMap.newKeySet();
 	private static final Set<String> warnedBindings = ConcurrentHashMap.newKeySet();
+	private static final Set<String> refusedTextures = ConcurrentHashMap.newKeySet();
 
 	private ShaderpackTextureBinder() {
 	}
@@ -44,6 +40,7 @@ public final class ShaderpackTextureBinder {
 		}
 		if (textureManager != null) {
 			for (Identifier id : registeredTextures) {
+				ShaderpackVramLedger.release(id);
 				try {
 					textureManager.destroyTexture(id);
 				} catch (Exception ignored) {
@@ -53,6 +50,8 @@ public final class ShaderpackTextureBinder {
 		registeredTextures.clear();
 		cachedShaderpackTextures.clear();
 		warnedBindings.clear();
+		refusedTextures.clear();
+		ShaderpackVramLedger.resetWarnings();
 	}
 
 	public static void applyBindings(Pipeline pipeline) {
@@ -81,7 +80,7 @@ public final class ShaderpackTextureBinder {
 			if (bindingSource == null || bindingSource.isBlank()) {
 				continue;
 			}
-			Identifier textureId = resolveTextureIdentifier(bindingSource, metadata);
+			Identifier textureId = resolveTextureIdentifier(bindingSource, metadata, stage + ":" + sampler);
 			if (textureId == null) {
 				warnBindingOnce(stage, sampler, bindingSource);
 				continue;
@@ -96,7 +95,7 @@ public final class ShaderpackTextureBinder {
 		}
 	}
 
-	private static Identifier resolveTextureIdentifier(String source, ShaderpackMetadata metadata) {
+	private static Identifier resolveTextureIdentifier(String source, ShaderpackMetadata metadata, String owner) {
 		String trimmed = source == null ? "" : source.trim();
 		if (trimmed.isBlank()) {
 			return null;
@@ -108,7 +107,7 @@ public final class ShaderpackTextureBinder {
 			return parseIdentifier(trimmed.substring("dynamic:".length()));
 		}
 		if (trimmed.startsWith("shaderpack:")) {
-			return loadShaderpackTexture(metadata.sourcePath, trimmed.substring("shaderpack:".length()));
+			return loadShaderpackTexture(metadata.sourcePath, trimmed.substring("shaderpack:".length()), owner);
 		}
 		if (trimmed.startsWith("raw:")) {
 			warnBindingOnce("any", "raw", trimmed + " (raw textures are not enabled yet)");
@@ -118,10 +117,10 @@ public final class ShaderpackTextureBinder {
 		if (parsed != null) {
 			return parsed;
 		}
-		return loadShaderpackTexture(metadata.sourcePath, trimmed);
+		return loadShaderpackTexture(metadata.sourcePath, trimmed, owner);
 	}
 
-	private static Identifier loadShaderpackTexture(Path shaderpackPath, String relativePath) {
+	private static Identifier loadShaderpackTexture(Path shaderpackPath, String relativePath, String owner) {
 		if (shaderpackPath == null || relativePath == null || relativePath.isBlank()) {
 			return null;
 		}
@@ -134,11 +133,14 @@ public final class ShaderpackTextureBinder {
 		if (cached != null) {
 			return cached;
 		}
+		if (refusedTextures.contains(cacheKey)) {
+			return null;
+		}
 		byte[] bytes = readShaderpackBytes(shaderpackPath, normalized);
 		if (bytes == null || bytes.length == 0) {
 			return null;
 		}
-		Identifier textureId = registerDynamicTexture(shaderpackPath, normalized, bytes);
+		Identifier textureId = registerDynamicTexture(shaderpackPath, normalized, bytes, owner);
 		if (textureId == null) {
 			return null;
 		}
@@ -146,7 +148,7 @@ public final class ShaderpackTextureBinder {
 		return textureId;
 	}
 
-	private static Identifier registerDynamicTexture(Path shaderpackPath, String relativePath, byte[] bytes) {
+	private static Identifier registerDynamicTexture(Path shaderpackPath, String relativePath, byte[] bytes, String owner) {
 		MinecraftClient client = MinecraftClient.getInstance();
 		if (client == null) {
 			return null;
@@ -166,9 +168,16 @@ public final class ShaderpackTextureBinder {
 		);
 		try {
 			NativeImage image = NativeImage.read(new ByteArrayInputStream(bytes));
+			long imageBytes = (long) image.getWidth() * image.getHeight() * 4L;
+			if (!ShaderpackVramLedger.admit(ShaderpackVramLedger.Category.TEXTURE, owner, imageBytes)) {
+				image.close();
+				refusedTextures.add(shaderpackPath.toAbsolutePath().normalize() + "|" + relativePath);
+				return null;
+			}
 			NativeImageBackedTexture texture = new NativeImageBackedTexture(() -> textureId.toString(), image);
 			textureManager.registerTexture(textureId, texture);
 			registeredTextures.add(textureId);
+			ShaderpackVramLedger.record(textureId, ShaderpackVramLedger.Category.TEXTURE, owner, imageBytes);
 			return textureId;
 		} catch (Exception e) {
 			String warningKey = "register:" + relativePath;
@@ -180,32 +189,8 @@ public final class ShaderpackTextureBinder {
 	}
 
 	private static byte[] readShaderpackBytes(Path shaderpackPath, String relativePath) {
-		String normalized = ShaderpackPipelineProgram.normalizePath(relativePath);
-		if (Files.isDirectory(shaderpackPath)) {
-			Path file = shaderpackPath.resolve(normalized);
-			if (!Files.exists(file)) {
-				return null;
-			}
-			try {
-				return Files.readAllBytes(file);
-			} catch (IOException e) {
-				return null;
-			}
-		}
-		String fileName = shaderpackPath.getFileName() == null
-			? ""
-			: shaderpackPath.getFileName().toString().toLowerCase(Locale.ROOT);
-		if (!fileName.endsWith(".zip")) {
-			return null;
-		}
-		try (ZipFile zipFile = new ZipFile(shaderpackPath.toFile(), StandardCharsets.UTF_8)) {
-			ZipEntry entry = zipFile.getEntry(normalized);
-			if (entry == null) {
-				return null;
-			}
-			try (InputStream stream = zipFile.getInputStream(entry)) {
-				return stream.readAllBytes();
-			}
+		try {
+			return ShaderpackFileSystem.readBytes(shaderpackPath, relativePath);
 		} catch (IOException e) {
 			return null;
 		}
@@ -0,0 +1,346 @@
+package cn.mxst.sulkan.shaderpack;
+
+import cn.mxst.sulkan.Sulkan;
+import cn.mxst.sulkan.config.SulkanConfig;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public final class ShaderpackVramLedger {
+	// Pre-flight estimates assume this output size; larger windows are caught by the runtime check.
+	static final int REFERENCE_WIDTH = 1920;
+	static final int REFERENCE_HEIGHT = 1080;
+	private static final long MEGABYTE = 1024L * 1024L;
+	private static final int DIAGNOSTIC_OWNERS = 3;
+	private static final int PNG_HEADER_LENGTH = 24;
+	private static final String SHADERPACK_TEXTURE_PREFIX = "shaderpack:";
+	private static final ConcurrentMap<Object, Allocation> ALLOCATIONS = new ConcurrentHashMap<>();
+	private static final Set<String> WARNED_OWNERS = ConcurrentHashMap.newKeySet();
+
+	private ShaderpackVramLedger() {
+	}
+
+	static synchronized boolean admit(Category category, String owner, long bytes) {
+		long budget = budgetBytes(category);
+		if (budget <= 0L || bytes <= 0L) {
+			return true;
+		}
+		long used = usedBytes(category);
+		if (used + bytes <= budget) {
+			return true;
+		}
+		boolean strict = isStrict();
+		if (WARNED_OWNERS.add(category + "|" + owner)) {
+			Sulkan.LOGGER.warn(
+				"{} shaderpack {} allocation for '{}' ({}): {} of the {} budget already in use. Largest owners: {}.",
+				strict ? "Refusing" : "Over budget with",
+				category.label(),
+				owner,
+				formatBytes(bytes),
+				formatBytes(used),
+				formatBytes(budget),
+				String.join(", ", largestOwners(category))
+			);
+		}
+		return !strict;
+	}
+
+	static void record(Object handle, Category category, String owner, long bytes) {
+		if (handle == null || bytes <= 0L) {
+			return;
+		}
+		ShaderpackMetadata metadata = ShaderpackManager.getActiveShaderpack();
+		String pack = metadata == null || metadata.name == null ? "" : metadata.name;
+		ALLOCATIONS.put(handle, new Allocation(category, pack, owner, bytes));
+	}
+
+	static void release(Object handle) {
+		if (handle != null) {
+			ALLOCATIONS.remove(handle);
+		}
+	}
+
+	static void resetWarnings() {
+		WARNED_OWNERS.clear();
+	}
+
+	public static Usage getUsage() {
+		long images = 0L;
+		long buffers = 0L;
+		long textures = 0L;
+		Map<String, Long> byOwner = new LinkedHashMap<>();
+		for (Allocation allocation : ALLOCATIONS.values()) {
+			switch (allocation.category()) {
+				case IMAGE -> images += allocation.bytes();
+				case BUFFER -> buffers += allocation.bytes();
+				case TEXTURE -> textures += allocation.bytes();
+			}
+			byOwner.merge(allocation.owner(), allocation.bytes(), Long::sum);
+		}
+		String largestOwner = "";
+		long largestBytes = 0L;
+		for (Map.Entry<String, Long> entry : byOwner.entrySet()) {
+			if (entry.getValue() > largestBytes) {
+				largestOwner = entry.getKey();
+				largestBytes = entry.getValue();
+			}
+		}
+		return new Usage(
+			images,
+			budgetBytes(Category.IMAGE),
+			textures,
+			budgetBytes(Category.TEXTURE),
+			buffers,
+			largestOwner,
+			largestBytes
+		);
+	}
+
+	public static String formatBytes(long bytes) {
+		if (bytes < MEGABYTE) {
+			return (bytes + 1023L) / 1024L + " KiB";
+		}
+		return String.format(Locale.ROOT, "%.1f MiB", bytes / (double) MEGABYTE);
+	}
+
+	// Validation results depend on these settings, so cached results must be keyed by them.
+	static String budgetTag() {
+		return "images=" + budgetBytes(Category.IMAGE)
+			+ ";textures=" + budgetBytes(Category.TEXTURE)
+			+ ";strict=" + isStrict();
+	}
+
+	static boolean isStrict() {
+		SulkanConfig config = SulkanConfig.get();
+		return config == null || !Boolean.FALSE.equals(config.vramBudgetStrict);
+	}
+
+	static long budgetBytes(Category category) {
+		SulkanConfig config = SulkanConfig.get();
+		Integer megabytes = switch (category) {
+			case IMAGE -> config == null ? null : config.vramImageBudgetMegabytes;
+			case TEXTURE -> config == null ? null : config.vramTextureBudgetMegabytes;
+			case BUFFER -> 0;
+		};
+		return megabytes == null ? 0L : Math.max(0L, megabytes) * MEGABYTE;
+	}
+
+	static List<String> checkEstimate(
+		List<ShaderpackResourceDecl> resources,
+		Map<String, Map<String, List<ShaderpackPipelineProgram>>> byWorld,
+		ShaderpackTextureBindings textureBindings,
+		ShaderpackFileSystem fileSystem
+	) {
+		List<String> problems = new ArrayList<>();
+		long imageBudget = budgetBytes(Category.IMAGE);
+		if (imageBudget > 0L && byWorld != null) {
+			for (Map.Entry<String, Map<String, List<ShaderpackPipelineProgram>>> world : byWorld.entrySet()) {
+				Map<String, Long> owners = estimateImages(resources, world.getValue());
+				long total = sum(owners);
+				if (total > imageBudget) {
+					problems.add(
+						"Compute images for world '" + world.getKey() + "' need an estimated " + formatBytes(total)
+							+ " at " + REFERENCE_WIDTH + "x" + REFERENCE_HEIGHT + ", over the " + formatBytes(imageBudget)
+							+ " image budget (" + String.join(", ", describeLargest(owners)) + ")."
+					);
+				}
+			}
+		}
+		long textureBudget = budgetBytes(Category.TEXTURE);
+		if (textureBudget > 0L && fileSystem != null) {
+			Map<String, Long> owners = estimateTextures(textureBindings, fileSystem);
+			long total = sum(owners);
+			if (total > textureBudget) {
+				problems.add(
+					"Custom textures need an estimated " + formatBytes(total) + ", over the " + formatBytes(textureBudget)
+						+ " texture budget (" + String.join(", ", describeLargest(owners)) + ")."
+				);
+			}
+		}
+		return problems;
+	}
+
+	private static Map<String, Long> estimateImages(
+		List<ShaderpackResourceDecl> resources,
+		Map<String, List<ShaderpackPipelineProgram>> byStage
+	) {
+		// Sized per render target like the dispatcher's pool, before transient aliasing, so this is an upper bound.
+		Map<String, Long> bytesByTarget = new LinkedHashMap<>();
+		Map<String, String> ownerByTarget = new LinkedHashMap<>();
+		Set<String> alternating = new HashSet<>();
+		Set<String> temporal = new HashSet<>();
+		for (List<ShaderpackPipelineProgram> programs : byStage.values()) {
+			for (ShaderpackPipelineProgram program : programs) {
+				if (program.compute() == null || program.compute().isBlank()) {
+					continue;
+				}
+				boolean alt = "alt".equalsIgnoreCase(program.pingPong());
+				for (Map.Entry<String, Boolean> flip : program.flips().entrySet()) {
+					if (Boolean.TRUE.equals(flip.getValue())) {
+						alternating.add(ShaderpackImageResources.renderTargetFor(flip.getKey()));
+					}
+				}
+				List<String> bindings = new ArrayList<>(program.imagesRead());
+				bindings.addAll(program.imagesWrite());
+				for (String binding : bindings) {
+					if (binding == null || binding.isBlank()) {
+						continue;
+					}
+					String name = ShaderpackImageResources.baseBinding(binding);
+					String target = ShaderpackImageResources.renderTargetFor(name);
+					if (ShaderpackImageResources.isHistoryBinding(binding)) {
+						temporal.add(target);
+					}
+					if (alt) {
+						alternating.add(target);
+					}
+					ShaderpackComputeDispatcher.ImageExtent extent = ShaderpackComputeDispatcher.resolveImageExtent(
+						program,
+						name,
+						REFERENCE_WIDTH,
+						REFERENCE_HEIGHT
+					);
+					ShaderpackResourceDecl declaration = ShaderpackImageResources.find(resources, name);
+					long bytes = (long) extent.width() * extent.height() * ShaderpackImageResources.estimatedBytesPerPixel(declaration);
+					if (bytes > bytesByTarget.getOrDefault(target, 0L)) {
+						bytesByTarget.put(target, bytes);
+					}
+					ownerByTarget.putIfAbsent(target, program.stage() + ":" + program.segmentName());
+				}
+			}
+		}
+		Map<String, Long> owners = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> entry : bytesByTarget.entrySet()) {
+			String target = entry.getKey();
+			int copies = (alternating.contains(target) ? 2 : 1) * (temporal.contains(target) ? 2 : 1);
+			owners.merge(ownerByTarget.get(target), entry.getValue() * copies, Long::sum);
+		}
+		return owners;
+	}
+
+	private static Map<String, Long> estimateTextures(ShaderpackTextureBindings textureBindings, ShaderpackFileSystem fileSystem) {
+		Map<String, Long> owners = new LinkedHashMap<>();
+		if (textureBindings == null || textureBindings.isEmpty()) {
+			return owners;
+		}
+		Set<String> seen = new HashSet<>();
+		for (Map.Entry<String, Map<String, String>> stage : textureBindings.byStage().entrySet()) {
+			for (Map.Entry<String, String> sampler : stage.getValue().entrySet()) {
+				String source = sampler.getValue() == null ? "" : sampler.getValue().trim();
+				if (!source.startsWith(SHADERPACK_TEXTURE_PREFIX)) {
+					continue;
+				}
+				String path = ShaderpackPipelineProgram.normalizePath(source.substring(SHADERPACK_TEXTURE_PREFIX.length()));
+				if (path.isBlank() || !seen.add(path)) {
+					continue;
+				}
+				long bytes = pngBytes(fileSystem, path);
+				if (bytes > 0L) {
+					owners.merge(stage.getKey() + ":" + sampler.getKey(), bytes, Long::sum);
+				}
+			}
+		}
+		return owners;
+	}
+
+	private static long pngBytes(ShaderpackFileSystem fileSystem, String path) {
+		byte[] bytes;
+		try {
+			bytes = fileSystem.exists(path) ? fileSystem.readPrefix(path, PNG_HEADER_LENGTH) : null;
+		} catch (IOException e) {
+			return 0L;
+		}
+		// The IHDR chunk always follows the 8-byte signature: big-endian width at 16, height at 20.
+		if (bytes == null || bytes.length < PNG_HEADER_LENGTH || (bytes[0] & 0xFF) != 0x89 || bytes[1] != 'P' || bytes[2] != 'N' || bytes[3] != 'G') {
+			return 0L;
+		}
+		long width = readUnsignedInt(bytes, 16);
+		long height = readUnsignedInt(bytes, 20);
+		return width * height * 4L;
+	}
+
+	private static long readUnsignedInt(byte[] bytes, int offset) {
+		return ((long) (bytes[offset] & 0xFF) << 24)
+			| ((bytes[offset + 1] & 0xFF) << 16)
+			| ((bytes[offset + 2] & 0xFF) << 8)
+			| (bytes[offset + 3] & 0xFF);
+	}
+
+	private static long usedBytes(Category category) {
+		long used = 0L;
+		for (Allocation allocation : ALLOCATIONS.values()) {
+			if (allocation.category() == category) {
+				used += allocation.bytes();
+			}
+		}
+		return used;
+	}
+
+	private static List<String> largestOwners(Category category) {
+		Map<String, Long> owners = new LinkedHashMap<>();
+		for (Allocation allocation : ALLOCATIONS.values()) {
+			if (allocation.category() == category) {
+				owners.merge(allocation.pack() + "/" + allocation.owner(), allocation.bytes(), Long::sum);
+			}
+		}
+		return describeLargest(owners);
+	}
+
+	private static List<String> describeLargest(Map<String, Long> owners) {
+		List<Map.Entry<String, Long>> sorted = new ArrayList<>(owners.entrySet());
+		sorted.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+		List<String> described = new ArrayList<>(Math.min(DIAGNOSTIC_OWNERS, sorted.size()));
+		for (int i = 0; i < sorted.size() && i < DIAGNOSTIC_OWNERS; i++) {
+			described.add(sorted.get(i).getKey() + " " + formatBytes(sorted.get(i).getValue()));
+		}
+		if (described.isEmpty()) {
+			described.add("none");
+		}
+		return described;
+	}
+
+	private static long sum(Map<String, Long> owners) {
+		long total = 0L;
+		for (long bytes : owners.values()) {
+			total += bytes;
+		}
+		return total;
+	}
+
+	enum Category {
+		IMAGE("image"),
+		BUFFER("buffer"),
+		TEXTURE("texture");
+
+		private final String label;
+
+		Category(String label) {
+			this.label = label;
+		}
+
+		String label() {
+			return label;
+		}
+	}
+
+	public record Usage(
+		long imageBytes,
+		long imageBudget,
+		long textureBytes,
+		long textureBudget,
+		long bufferBytes,
+		String largestOwner,
+		long largestBytes
+	) {
+	}
+
+	private record Allocation(Category category, String pack, String owner, long bytes) {
+	}
+}